@@ -24,12 +24,21 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Creates actions through the {@link NotificationActionRegistry}.  An action of a class that is
+ * unknown or not allowed deserializes to <code>null</code>, and {@link NotificationEntry} drops it;
+ * the rest of the payload is unaffected.
+ */
 public class JsonNotificationActionDeserializer extends JsonDeserializer<NotificationAction> {
 
     private static final String CLAZZ_FILDNAME = "clazz";
     private static final String LABEL_FILDNAME = "label";
 
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     @Override
     public NotificationAction deserialize(final JsonParser parser, final DeserializationContext ctx) 
             throws IOException {
@@ -55,11 +64,10 @@ public class JsonNotificationActionDeserializer extends JsonDeserializer<Notific
             throw new IllegalArgumentException(msg);
         }
 
-        NotificationAction rslt;
-        try {
-            rslt = (NotificationAction) Class.forName(clazz).newInstance();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to instantiate a NotificationAction of concrete class:  " + clazz);
+        final NotificationAction rslt = NotificationActionRegistry.create(clazz);
+        if (rslt == null) {
+            logger.debug("Skipping a NotificationAction of class {} with label {}", clazz, label);
+            return null;
         }
 
         if (label != null) {
@@ -0,0 +1,221 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates {@link NotificationAction} objects from the names of their classes, as stored by data
+ * sources and sent in JSON.  The constructor of each class is looked up once and cached, along
+ * with the classes that can't be used, so creating an action costs one allocation.  Only
+ * subclasses of {@link NotificationAction} in allowed packages (by default, this project's) or
+ * registered explicitly are instantiated;  class names come from remote payloads, and loading a
+ * class runs its static initializers.
+ *
+ * <p>Settings and cached classes belong to the context class loader of the caller:  when this
+ * library is shared by several webapps, each has its own, and none keeps another in memory.
+ *
+ * @since 4.8
+ */
+public final class NotificationActionRegistry {
+
+    public static final String DEFAULT_ALLOWED_PACKAGE = "org.jasig.portlet.notice.";
+
+    /**
+     * At most this many rejected class names (the most recent) are remembered, so that payloads
+     * can't fill memory with made-up names.
+     */
+    private static final int MAX_CACHED_CLASSES = 1000;
+
+    /**
+     * Weak keys;  the registries refer to classes only weakly, so they don't keep their keys alive.
+     */
+    private static final Map<ClassLoader,Registry> registries = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Stored with each class, which (unlike a map) doesn't keep its class loader in memory.
+     */
+    private static final ClassValue<Constructor<? extends NotificationAction>> constructors =
+            new ClassValue<Constructor<? extends NotificationAction>>() {
+                @Override
+                protected Constructor<? extends NotificationAction> computeValue(Class<?> type) {
+                    return getConstructor(type.asSubclass(NotificationAction.class));
+                }
+            };
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationActionRegistry.class);
+
+    private NotificationActionRegistry() {}
+
+    /**
+     * Allows the classes in the specified packages (and their subpackages), in addition to the
+     * ones already allowed.
+     */
+    public static void allowPackages(Collection<String> packageNames) {
+        final Registry registry = getRegistry();
+        for (String packageName : packageNames) {
+            registry.allowedPackages.add(packageName.endsWith(".") ? packageName : packageName + ".");
+        }
+        registry.rejectedClasses.clear();  // Some may be allowed now
+    }
+
+    /**
+     * Allows the specified class, whatever its package.
+     */
+    public static void register(Class<? extends NotificationAction> clazz) {
+        constructors.get(clazz);  // Fails if it has no suitable constructor
+        final Registry registry = getRegistry();
+        registry.classes.put(clazz.getName(), new WeakReference<>(clazz));
+        registry.rejectedClasses.remove(clazz.getName());
+    }
+
+    /**
+     * @return A new instance of the specified class, or <code>null</code> if the class is unknown,
+     * not allowed, or not a {@link NotificationAction}
+     */
+    public static NotificationAction create(String className) {
+        if (className == null) {
+            return null;
+        }
+        final Registry registry = getRegistry();
+        final WeakReference<Class<? extends NotificationAction>> ref = registry.classes.get(className);
+        Class<? extends NotificationAction> clazz = ref != null ? ref.get() : null;
+        if (clazz == null) {
+            if (registry.rejectedClasses.contains(className)) {
+                return null;
+            }
+            clazz = lookUp(registry, className);
+            if (clazz == null) {
+                registry.rejectedClasses.add(className);
+                return null;
+            }
+            registry.classes.put(className, new WeakReference<>(clazz));
+        }
+        try {
+            return constructors.get(clazz).newInstance();
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Failed to instantiate a NotificationAction of class {}", className, e);
+            return null;
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * @return The registry of the context class loader (the webapp's, when this library is shared
+     * by several), or of the one that loaded this class
+     */
+    private static Registry getRegistry() {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final ClassLoader classLoader = contextClassLoader != null
+                ? contextClassLoader
+                : NotificationActionRegistry.class.getClassLoader();
+        return registries.computeIfAbsent(classLoader, Registry::new);
+    }
+
+    private static Class<? extends NotificationAction> lookUp(Registry registry, String className) {
+        if (registry.allowedPackages.stream().noneMatch(className::startsWith)) {
+            logger.warn("Ignoring a NotificationAction of class {}, which is not in an allowed package", className);
+            return null;
+        }
+        try {
+            final Class<?> clazz = loadClass(registry, className);
+            if (!NotificationAction.class.isAssignableFrom(clazz) || Modifier.isAbstract(clazz.getModifiers())) {
+                logger.warn("Ignoring class {}, which is not a concrete NotificationAction", className);
+                return null;
+            }
+            final Class<? extends NotificationAction> rslt = clazz.asSubclass(NotificationAction.class);
+            constructors.get(rslt);  // Fails if it has no suitable constructor
+            return rslt;
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            logger.warn("Ignoring a NotificationAction of unknown or unusable class {}", className, e);
+            return null;
+        }
+    }
+
+    /**
+     * Prefers the class loader of the registry, and falls back to the one that loaded this class.
+     * Doesn't initialize the class until we know what it is.
+     */
+    private static Class<?> loadClass(Registry registry, String className) throws ClassNotFoundException {
+        final ClassLoader classLoader = registry.classLoader.get();
+        if (classLoader != null) {
+            try {
+                return Class.forName(className, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                logger.debug("Class {} is not visible to the context class loader", className);
+            }
+        }
+        return Class.forName(className, false, NotificationActionRegistry.class.getClassLoader());
+    }
+
+    private static Constructor<? extends NotificationAction> getConstructor(Class<? extends NotificationAction> clazz) {
+        try {
+            return clazz.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("A NotificationAction must have a public, no-arg constructor:  "
+                    + clazz.getName(), e);
+        }
+    }
+
+    /*
+     * Nested Types
+     */
+
+    /**
+     * The settings and cached classes of one class loader.
+     */
+    private static final class Registry {
+
+        private final WeakReference<ClassLoader> classLoader;
+        private final Set<String> allowedPackages = new CopyOnWriteArraySet<>(
+                Collections.singleton(DEFAULT_ALLOWED_PACKAGE));
+        private final ConcurrentMap<String,WeakReference<Class<? extends NotificationAction>>> classes =
+                new ConcurrentHashMap<>();
+        private final Set<String> rejectedClasses = Collections.newSetFromMap(Collections.synchronizedMap(
+                new LinkedHashMap<String,Boolean>() {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String,Boolean> eldest) {
+                        return size() > MAX_CACHED_CLASSES;
+                    }
+                }));
+
+        private Registry(ClassLoader classLoader) {
+            this.classLoader = new WeakReference<>(classLoader);
+        }
+
+    }
+
+}
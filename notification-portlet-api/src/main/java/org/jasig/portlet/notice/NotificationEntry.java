@@ -239,9 +239,15 @@ public class NotificationEntry implements Serializable, Cloneable {
         return Collections.unmodifiableList(availableActions);
     }
 
+    /**
+     * Null elements (e.g. actions of unknown classes in JSON) are dropped.
+     */
     public void setAvailableActions(List<NotificationAction> availableActions) {
         this.availableActions = new ArrayList<>();  // defensive copy
         for (NotificationAction action : availableActions) {
+            if (action == null) {
+                continue;
+            }
             // We must make ourself the target of any 
             // action at the time it becomes attached
             action.setTarget(this);
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.rest;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summarizes the outcome of a bulk create operation:  the ids of the entries that were created,
+ * how many events were issued to recipients, and how long it took.
+ *
+ * @since 4.8
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonIgnoreProperties(ignoreUnknown = true) // entryCount & eventsPerSecond are derived
+public class BulkResultDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<Long> entryIds = new ArrayList<>();
+    private long eventCount;
+    private long elapsedMillis;
+
+    public List<Long> getEntryIds() {
+        return entryIds;
+    }
+
+    public void setEntryIds(List<Long> entryIds) {
+        this.entryIds = entryIds;
+    }
+
+    public int getEntryCount() {
+        return entryIds.size();
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Throughput of the operation, measured in events (rows in the transaction log) per second.
+     */
+    public double getEventsPerSecond() {
+        return elapsedMillis > 0L
+                ? eventCount * 1000.0 / elapsedMillis
+                : eventCount;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResultDTO{" +
+                "entryIds=" + entryIds +
+                ", eventCount=" + eventCount +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
@@ -43,6 +43,7 @@ public class EntryDTO implements Serializable {
     private Timestamp dueDate;
     private String image;
     private String body;
+    private String summary;
     private Set<AttributeDTO> attributes = new HashSet<>();
     private Set<ActionDTO> actions = new HashSet<>();
     private Set<AddresseeDTO> addressees = new HashSet<>();
@@ -119,6 +120,20 @@ public class EntryDTO implements Serializable {
         this.body = body;
     }
 
+    /**
+     * Short, plain-text form of the body, generated by the server;  listings provide the summary
+     * instead of the body.
+     *
+     * @since 4.8
+     */
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
     public Set<AttributeDTO> getAttributes() {
         return attributes;
     }
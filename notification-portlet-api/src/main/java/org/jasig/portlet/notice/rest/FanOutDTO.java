@@ -0,0 +1,131 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.rest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Reports the progress of issuing a notification to the members of a group addressee.
+ *
+ * @since 4.8
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class FanOutDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long id;
+    private long addresseeId;
+    private String groupName;
+    private FanOutStatus status;
+    private long processedCount;
+    private long eventCount;
+    private String lastError;
+    private Timestamp created;
+    private Timestamp updated;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getAddresseeId() {
+        return addresseeId;
+    }
+
+    public void setAddresseeId(long addresseeId) {
+        this.addresseeId = addresseeId;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public FanOutStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(FanOutStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Number of group members processed so far.
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public void setProcessedCount(long processedCount) {
+        this.processedCount = processedCount;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Timestamp getCreated() {
+        return created;
+    }
+
+    public void setCreated(Timestamp created) {
+        this.created = created;
+    }
+
+    public Timestamp getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Timestamp updated) {
+        this.updated = updated;
+    }
+
+    @Override
+    public String toString() {
+        return "FanOutDTO{" +
+                "id=" + id +
+                ", addresseeId=" + addresseeId +
+                ", groupName='" + groupName + '\'' +
+                ", status=" + status +
+                ", processedCount=" + processedCount +
+                ", eventCount=" + eventCount +
+                '}';
+    }
+}
@@ -16,14 +16,35 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-package org.jasig.portlet.notice.service.jpa;
+package org.jasig.portlet.notice.rest;
 
 /**
- * Handle custom dozer post processing.
+ * Lifecycle of the work involved in issuing a notification to the members of a group.
  *
- * @author Josh Helmer, jhelmer.unicon.net
- * @since 3.0
-*/
-public interface IMappedClassPostProcessor<DEST, SRC> {
-    void process(DEST mappedObject, SRC srcObject);
+ * @since 4.8
+ */
+public enum FanOutStatus {
+
+    /**
+     * Waiting for a worker.
+     */
+    PENDING,
+
+    /**
+     * A worker is resolving group members and issuing events;  some recipients may have the
+     * notification already.
+     */
+    IN_PROGRESS,
+
+    /**
+     * Every member of the group has been issued the notification.
+     */
+    COMPLETED,
+
+    /**
+     * Processing stopped because of an error.  Members processed before the error have the
+     * notification.
+     */
+    FAILED
+
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.rest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.jasig.portlet.notice.NotificationEntry;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The difference between the notifications a client has (identified by the token it received last
+ * time) and the current ones:  entries that were added or changed, the ids of entries that were
+ * removed, and a token for the current notifications.  When <code>full</code> is true, the client's
+ * token was unknown (or expired) and <code>added</code> contains every entry;  the client should
+ * discard what it has.
+ *
+ * @since 4.8
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NotificationDeltaDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String token;
+    private boolean full;
+    private List<NotificationEntry> added = new ArrayList<>();
+    private List<NotificationEntry> changed = new ArrayList<>();
+    private List<String> removed = new ArrayList<>();
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<NotificationEntry> getAdded() {
+        return added;
+    }
+
+    public void setAdded(List<NotificationEntry> added) {
+        this.added = added;
+    }
+
+    public List<NotificationEntry> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<NotificationEntry> changed) {
+        this.changed = changed;
+    }
+
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(List<String> removed) {
+        this.removed = removed;
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationDeltaDTO{" +
+                "token='" + token + '\'' +
+                ", full=" + full +
+                ", added=" + added.size() +
+                ", changed=" + changed.size() +
+                ", removed=" + removed +
+                '}';
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Implementing this interface in a concrete {@link INotificationService} indicates that the bean
+ * can count the notifications of a user much more cheaply than it can fetch them (e.g. with a
+ * <code>COUNT</code> query).  The count must equal the number of entries that <code>fetch</code>
+ * would return after filtering by the specified criteria.
+ *
+ * @since 4.8
+ */
+public interface ICountable {
+
+    /**
+     * @param request The REST request
+     * @param criteria Describes the entries to count
+     * @return The number of matching entries, or <code>null</code> if it can't be determined
+     * cheaply (in which case callers must fetch them)
+     */
+    Integer count(HttpServletRequest request, NotificationCountCriteria criteria);
+
+}
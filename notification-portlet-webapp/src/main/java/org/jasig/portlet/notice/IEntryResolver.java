@@ -0,0 +1,49 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Implementing this interface in a concrete {@link INotificationService} indicates that the bean
+ * recognizes the ids of its own entries (e.g. by a prefix) and can provide one of them without
+ * fetching the others.  Callers that need a single entry (e.g. to invoke one of its actions) use
+ * it in place of <code>fetch</code>.
+ *
+ * @since 4.8
+ */
+public interface IEntryResolver {
+
+    /**
+     * @param notificationId The id of a {@link NotificationEntry}
+     * @return <code>true</code> if the entry (if it exists) comes from this bean and no other
+     */
+    boolean owns(String notificationId);
+
+    /**
+     * Provide the specified entry, exactly as <code>fetch</code> would provide it to the same
+     * user, in a response by itself.
+     *
+     * @param request The REST request
+     * @param notificationId The id of an entry this bean owns
+     * @return A response containing the entry, or no entries if the user does not have it
+     */
+    NotificationResponse resolve(HttpServletRequest request, String notificationId);
+
+}
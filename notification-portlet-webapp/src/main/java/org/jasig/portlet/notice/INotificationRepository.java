@@ -18,9 +18,15 @@
  */
 package org.jasig.portlet.notice;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.http.MediaType;
+
 /**
  * Entry point (in the post-Portlet API world) for fetching notifications from data sources.
  *
@@ -37,6 +43,20 @@ public interface INotificationRepository {
      */
     void refresh(HttpServletRequest request, HttpServletResponse response);
 
+    /**
+     * Reset only what depends on the specified notifications:  the cached responses of the data
+     * sources that own them (see {@link IEntryResolver}), and the counts of the user.  If no data
+     * source claims one of the ids, this method behaves like
+     * <code>refresh(request, response)</code>.
+     *
+     * @param request The REST request
+     * @param response The REST response
+     * @param notificationIds The ids of notifications that changed (e.g. one of their actions was
+     * invoked)
+     * @since 4.8
+     */
+    void refresh(HttpServletRequest request, HttpServletResponse response, Collection<String> notificationIds);
+
     /**
      * Provide the current collection of Notifications information for the specified user.
      *
@@ -45,4 +65,55 @@ public interface INotificationRepository {
      */
     NotificationResponse fetch(HttpServletRequest request);
 
+    /**
+     * Provide the current notifications of the user in serialized form (e.g. JSON).  The result
+     * may be reused:  the serializer is called only if the notifications, or anything the filters
+     * depend on (see {@link INotificationServiceFilter#describeState(HttpServletRequest, List)}),
+     * changed since the same request was last made.
+     *
+     * @param request The REST request
+     * @param contentType The format the serializer produces (e.g. JSON or Smile)
+     * @param serializer Converts the (filtered) notifications;  must depend on nothing but the
+     * notifications, the content type and the query string of the request
+     * @return The serialized notifications
+     * @since 4.8
+     */
+    byte[] fetch(HttpServletRequest request, MediaType contentType, ResponseSerializer serializer) throws IOException;
+
+    /**
+     * Provide the specified notification of the user, as <code>fetch</code> would provide it.
+     * The request goes only to the data source that owns the id, if one does (see
+     * {@link IEntryResolver});  otherwise every data source is fetched.
+     *
+     * @param request The REST request
+     * @param notificationId The id of a notification
+     * @return The (filtered) notification, or <code>null</code> if the user does not have it
+     * @since 4.8
+     */
+    NotificationEntry resolve(HttpServletRequest request, String notificationId);
+
+    /**
+     * Provide the number of notifications that <code>fetch</code> would return for the same
+     * request.  Counts may be up to a few seconds old.
+     *
+     * @param request The REST request
+     * @return The number of entries in the user's (filtered) notifications
+     * @since 4.8
+     */
+    int count(HttpServletRequest request);
+
+    /*
+     * Nested Types
+     */
+
+    /**
+     * @since 4.8
+     */
+    @FunctionalInterface
+    interface ResponseSerializer {
+
+        byte[] serialize(NotificationResponse response) throws IOException;
+
+    }
+
 }
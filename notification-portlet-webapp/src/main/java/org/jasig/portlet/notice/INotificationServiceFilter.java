@@ -18,6 +18,8 @@
  */
 package org.jasig.portlet.notice;
 
+import java.util.List;
+
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -36,4 +38,37 @@ public interface INotificationServiceFilter extends Comparable<INotificationServ
 
     NotificationResponse doFilter(HttpServletRequest request, INotificationServiceFilterChain chain);
 
+    /**
+     * Describes which entries this filter would remove for the specified request, so that
+     * notifications can be counted without fetching and filtering them.  Filters that never
+     * remove entries (e.g. those that only decorate them) return <code>true</code> without
+     * changing the criteria.
+     *
+     * @param request The REST request
+     * @param criteria To be narrowed by the criteria of this filter
+     * @return <code>false</code> if the effect of this filter can't be expressed as
+     * {@link NotificationCountCriteria}, in which case counts are computed from filtered
+     * responses
+     * @since 4.8
+     */
+    default boolean describeCount(HttpServletRequest request, NotificationCountCriteria criteria) {
+        return false;
+    }
+
+    /**
+     * Describes what the output of this filter depends on, other than the responses of the
+     * services, the query string of the request, and the versions of {@link IVersioned} services,
+     * so that serialized responses can be reused while it stays the same.  Filters that depend on
+     * nothing else return <code>true</code> without adding to the state.
+     *
+     * @param request The REST request
+     * @param state To receive values (e.g. tokens from the session) that must be equal for the
+     * output of this filter to be the same
+     * @return <code>false</code> if the output of this filter can't be reused
+     * @since 4.8
+     */
+    default boolean describeState(HttpServletRequest request, List<Object> state) {
+        return false;
+    }
+
 }
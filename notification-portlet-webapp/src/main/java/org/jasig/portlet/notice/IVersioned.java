@@ -0,0 +1,68 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import javax.portlet.PortletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Implementing this interface in a concrete {@link INotificationService} indicates that the bean
+ * can describe the state of a user's notifications with a version token that is much cheaper to
+ * obtain than the notifications themselves (e.g. a counter read with a single-row query).  The
+ * token changes whenever the response of <code>fetch</code> would change, so callers that cache
+ * responses may reuse a cached response for as long as the token they cached it with is current.
+ *
+ * @since 4.8
+ */
+public interface IVersioned {
+
+    /**
+     * @param request The REST request
+     * @return The current version of the user's notifications, or <code>null</code> if it can't be
+     * determined (in which case callers must fetch them)
+     */
+    Object getVersion(HttpServletRequest request);
+
+    /**
+     * @param req The portlet request
+     * @return The current version of the user's notifications, or <code>null</code> if it can't be
+     * determined (in which case callers must fetch them)
+     */
+    Object getVersion(PortletRequest req);
+
+    /**
+     * Same as <code>fetch(request)</code>, for callers that have just obtained the version;
+     * implementations that compare it with that of a cached response need not obtain it again.
+     *
+     * @param request The REST request
+     * @param version The (non-null) result of {@link #getVersion(HttpServletRequest)} for this
+     * request
+     */
+    NotificationResponse fetch(HttpServletRequest request, Object version);
+
+    /**
+     * Same as <code>fetch(req)</code>, for callers that have just obtained the version;
+     * implementations that compare it with that of a cached response need not obtain it again.
+     *
+     * @param req The portlet request
+     * @param version The (non-null) result of {@link #getVersion(PortletRequest)} for this request
+     */
+    NotificationResponse fetch(PortletRequest req, Object version);
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Adds the packages in <code>NotificationActionRegistry.allowedPackages</code> (comma-separated)
+ * to the ones from which the {@link NotificationActionRegistry} will instantiate actions (for this
+ * webapp, whose class loader is the context class loader during startup).
+ *
+ * @since 4.8
+ */
+@Configuration
+public class NotificationActionRegistryConfiguration {
+
+    @Value("${NotificationActionRegistry.allowedPackages:}")
+    private String allowedPackages;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        final List<String> packageNames = Arrays.stream(allowedPackages.split(","))
+                .map(String::trim)
+                .filter(packageName -> !packageName.isEmpty())
+                .collect(Collectors.toList());
+        if (!packageNames.isEmpty()) {
+            logger.info("Allowing NotificationActions from packages {}", packageNames);
+            NotificationActionRegistry.allowPackages(packageNames);
+        }
+    }
+
+}
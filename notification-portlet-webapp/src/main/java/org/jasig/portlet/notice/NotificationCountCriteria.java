@@ -0,0 +1,97 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+/**
+ * Describes the entries that remain in a response after the {@link INotificationServiceFilter}
+ * beans have processed it, in terms that {@link ICountable} data sources can evaluate without
+ * fetching the entries.  Each filter contributes its part;  see
+ * {@link INotificationServiceFilter#describeCount(javax.servlet.http.HttpServletRequest, NotificationCountCriteria)}.
+ *
+ * @since 4.8
+ */
+public final class NotificationCountCriteria {
+
+    private Integer minPriority;
+    private Integer maxPriority;
+    private Boolean read;
+
+    /**
+     * @return Entries with a priority higher than this number (i.e. less important) are excluded,
+     * or <code>null</code> for no limit
+     */
+    public Integer getMinPriority() {
+        return minPriority;
+    }
+
+    public void setMinPriority(Integer minPriority) {
+        this.minPriority = minPriority;
+    }
+
+    /**
+     * @return Entries with a priority lower than this number (i.e. more important) are excluded,
+     * except those with {@link NotificationEntry#PRIORITY_UNSPECIFIED}, or <code>null</code> for no
+     * limit
+     */
+    public Integer getMaxPriority() {
+        return maxPriority;
+    }
+
+    public void setMaxPriority(Integer maxPriority) {
+        this.maxPriority = maxPriority;
+    }
+
+    /**
+     * @return <code>true</code> to count only entries the user has read (at any time),
+     * <code>false</code> to count only unread entries, or <code>null</code> to count both
+     */
+    public Boolean getRead() {
+        return read;
+    }
+
+    public void setRead(Boolean read) {
+        this.read = read;
+    }
+
+    /**
+     * @return Whether the priority range is empty, so that nothing is counted
+     */
+    public boolean isEmpty() {
+        return minPriority != null && maxPriority != null && maxPriority > minPriority;
+    }
+
+    /**
+     * Evaluates the priority range for an entry that has already been fetched.
+     */
+    public boolean matchesPriority(NotificationEntry entry) {
+        final int priority = entry.getPriority();
+        if (minPriority != null && priority > minPriority) {
+            return false;
+        }
+        return priority == NotificationEntry.PRIORITY_UNSPECIFIED
+                || maxPriority == null || priority >= maxPriority;
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationCountCriteria [minPriority=" + minPriority + ", maxPriority=" + maxPriority
+                + ", read=" + read + "]";
+    }
+
+}
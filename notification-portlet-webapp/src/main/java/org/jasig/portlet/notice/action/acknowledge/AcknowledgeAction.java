@@ -41,7 +41,7 @@ import org.jasig.portlet.notice.filter.ReadStateAction;
 @Slf4j
 public class AcknowledgeAction extends ReadStateAction {
 
-    private static final String SESSION_ATTR_PREFIX = AcknowledgeAction.class.getName() + ".";
+    public static final String SESSION_ATTR_PREFIX = AcknowledgeAction.class.getName() + ".";
 
     @Override
     public void invoke(ActionRequest req, ActionResponse res) throws IOException {
@@ -34,6 +34,9 @@ import javax.portlet.EventResponse;
 import javax.portlet.PortletPreferences;
 import javax.portlet.ResourceRequest;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jasig.portlet.notice.INotificationService;
@@ -44,10 +47,13 @@ import org.jasig.portlet.notice.NotificationConstants;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.NotificationResult;
+import org.jasig.portlet.notice.util.IJpaServices;
+import org.jasig.portlet.notice.util.NotificationFields;
 import org.jasig.portlet.notice.util.NotificationResponseFlattener;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.jasig.portlet.notice.util.sort.Sorting;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.portlet.ModelAndView;
@@ -81,6 +87,12 @@ public class NotificationLifecycleController {
 
     private static final String SUCCESS_PATH = "/scripts/success.json";
 
+    /**
+     * Same configuration as the mapper of the JSON view, plus support for the <code>fields</code>
+     * parameter.
+     */
+    private final ObjectMapper objectMapper = NotificationFields.configure(Jackson2ObjectMapperBuilder.json().build());
+
     private final Log log = LogFactory.getLog(getClass());
 
     @Autowired
@@ -89,6 +101,9 @@ public class NotificationLifecycleController {
     @Autowired
     private NotificationResponseFlattener notificationResponseFlattener;
 
+    @Autowired
+    private IJpaServices jpaServices;
+
     @Resource(name="rootNotificationService")
     private INotificationService notificationService;
 
@@ -111,8 +126,11 @@ public class NotificationLifecycleController {
         // Apply specified sorting (if any)...
         allEntries = Sorting.sort(req, allEntries);
 
+        // Only the requested properties of each entry (if specified)
+        final NotificationFields fields = NotificationFields.fromRequest(req);
+
         final Map<String,Object> model = new HashMap<>();
-        model.put("feed", allEntries);
+        model.put("feed", fields.isAll() ? allEntries : project(allEntries, fields));
         model.put("errors", notifications.getErrors());
         return new ModelAndView("json", model);
 
@@ -184,9 +202,15 @@ public class NotificationLifecycleController {
         // We must have a target to proceed
         if (target != null) {
             target.invoke(req, res);
-            // It's reasonable to assume we need to purge
-            // caches for this user after invoking his action 
-            notificationService.invoke(req, res, true);
+            /*
+             * It's reasonable to assume we need to purge caches for this user after invoking his
+             * action -- except when the entry belongs to the JPA service.  Its changes advance
+             * the version of the user, and the cached response of the JPA service (alone) is
+             * refreshed on the next fetch.
+             */
+            if (!jpaServices.contains(entry)) {
+                notificationService.invoke(req, res, true);
+            }
         } else {
             String msg = "Target action not found for notificationId='"
                     + notificationId + "' and actionId='" + actionId + "'";
@@ -223,6 +247,16 @@ public class NotificationLifecycleController {
      * Implementation
      */
 
+    /**
+     * Serializes the requested properties of the entries into a tree, which the JSON view then
+     * writes as-is.
+     */
+    private JsonNode project(List<NotificationEntry> entries, NotificationFields fields) throws IOException {
+        final TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+        fields.writer(objectMapper).writeValue(buffer, entries);
+        return objectMapper.readTree(buffer.asParser());
+    }
+
     private String evaluateRedirectUri(ActionRequest req) {
 
         // Default response -- specify a relative URI, allowing the protocol to be inferred
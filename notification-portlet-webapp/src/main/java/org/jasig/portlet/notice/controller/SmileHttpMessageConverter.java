@@ -0,0 +1,54 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Reads and writes <a href="https://github.com/FasterXML/smile-format-specification">Smile</a>, a
+ * binary encoding of JSON, for REST clients that ask for it (<code>Accept:
+ * application/x-jackson-smile</code>).  Payloads are smaller and cheaper to parse;  the Jackson
+ * configuration (and custom serializers, like <code>JsonDateSerializer</code>) are the same as
+ * for JSON.  JSON remains the default.
+ *
+ * @since 4.8
+ */
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    public SmileHttpMessageConverter() {
+        super(createObjectMapper(), APPLICATION_SMILE);
+    }
+
+    /**
+     * @return An <code>ObjectMapper</code> configured like the one Spring MVC uses for JSON, but
+     * which reads and writes Smile
+     */
+    public static ObjectMapper createObjectMapper() {
+        final ObjectMapper rslt = new ObjectMapper(new SmileFactory());
+        Jackson2ObjectMapperBuilder.json().configure(rslt);
+        return rslt;
+    }
+
+}
@@ -18,8 +18,15 @@
  */
 package org.jasig.portlet.notice.controller;
 
+import java.util.List;
+
+import org.jasig.portlet.notice.controller.rest.NotificationRestV2Controller;
+import org.jasig.portlet.notice.controller.rest.RequestThrottleInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
@@ -32,9 +39,27 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter
 @EnableWebMvc
 public class WebMvcConfiguration extends WebMvcConfigurerAdapter {
 
+    @Autowired
+    private RequestThrottleInterceptor requestThrottleInterceptor;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/**").addResourceLocations("/");
     }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestThrottleInterceptor)
+                .addPathPatterns(NotificationRestV2Controller.API_ROOT + "/**");
+    }
+
+    /**
+     * Smile for REST clients that ask for it;  it follows the defaults, so JSON still wins when
+     * the client accepts either.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new SmileHttpMessageConverter());
+    }
+
 }
@@ -27,8 +27,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.BulkResultDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.FanOutDTO;
 import org.jasig.portlet.notice.service.jpa.IJpaNotificationRESTService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -97,6 +99,20 @@ public class JPANotificationRESTController {
         return persisted;
     }
 
+    /**
+     * Create many notifications in one request.  Use this method (instead of POSTing to the root
+     * URI several times) for notifications that are addressed to very large numbers of recipients.
+     *
+     * @param entries The Entries
+     * @return A summary of the operation, including the ids of the new entries and throughput
+     */
+    @RequestMapping(value = "/bulk", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.CREATED)
+    @ResponseBody
+    public BulkResultDTO createNotifications(@RequestBody List<EntryDTO> entries) {
+        return restService.createNotifications(entries);
+    }
+
     /**
      * Get 1 notification by id.
      *
@@ -115,6 +131,9 @@ public class JPANotificationRESTController {
             return null;
         }
 
+        // Listings provide only the summary
+        notification.setBody(restService.getBody(id));
+
         return notification;
     }
 
@@ -239,6 +258,18 @@ public class JPANotificationRESTController {
         return dto;
     }
 
+    /**
+     * Get the progress of issuing a notification to the members of its GROUP addressees.
+     *
+     * @param id the notification id
+     * @return one item per group recipient
+     */
+    @RequestMapping(value = "/{notificationId}/fanout", method = RequestMethod.GET)
+    @ResponseBody
+    public List<FanOutDTO> getFanOuts(@PathVariable("notificationId") long id) {
+        return restService.getFanOuts(id);
+    }
+
     /**
      * Build the URL for a specific notification.
      *
@@ -18,33 +18,59 @@
  */
 package org.jasig.portlet.notice.controller.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apereo.portal.soffit.Headers;
 import org.jasig.portlet.notice.INotificationRepository;
 import org.jasig.portlet.notice.NotificationAction;
+import org.jasig.portlet.notice.NotificationCategory;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.controller.SmileHttpMessageConverter;
 import org.jasig.portlet.notice.filter.ApiUrlSupportFilter;
+import org.jasig.portlet.notice.rest.ActionInvocationDTO;
+import org.jasig.portlet.notice.rest.NotificationDeltaDTO;
+import org.jasig.portlet.notice.util.IJpaServices;
+import org.jasig.portlet.notice.util.NotificationChangeBroadcaster;
+import org.jasig.portlet.notice.util.NotificationDeltaCalculator;
+import org.jasig.portlet.notice.util.NotificationFields;
 import org.jasig.portlet.notice.util.NotificationResponseFlattener;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.jasig.portlet.notice.util.sort.Sorting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 /**
@@ -60,6 +86,13 @@ public class NotificationRestV2Controller {
 
     public static final String API_ROOT = "/api/v2";
 
+    /**
+     * Requests to invoke more actions than this at once are refused (400 Bad Request).
+     *
+     * @since 4.8
+     */
+    public static final int MAX_ACTIONS_PER_REQUEST = 400;
+
     @Autowired
     private INotificationRepository repository;
 
@@ -69,15 +102,134 @@ public class NotificationRestV2Controller {
     @Autowired
     private UsernameFinder usernameFinder;
 
+    @Autowired
+    private IJpaServices jpaServices;
+
+    @Autowired
+    private NotificationChangeBroadcaster notificationChangeBroadcaster;
+
+    @Autowired
+    private NotificationDeltaCalculator notificationDeltaCalculator;
+
+    /**
+     * Same configuration as the mapper Spring MVC uses for the other endpoints, plus support for
+     * the <code>fields</code> parameter.
+     */
+    private final ObjectMapper objectMapper = NotificationFields.configure(Jackson2ObjectMapperBuilder.json().build());
+
+    /**
+     * Same configuration (and serializers) again, for Smile.
+     */
+    private final ObjectMapper smileObjectMapper = NotificationFields.configure(SmileHttpMessageConverter.createObjectMapper());
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * Provides the notifications of the current user as a flat list.  The response carries a
+     * strong <code>ETag</code> (a hash of the serialized list);  if it matches the
+     * <code>If-None-Match</code> header of the request, the response is <code>304 Not
+     * Modified</code> and the body is not sent.  Clients that poll this endpoint should send the
+     * ETag of their previous response.
+     *
+     * <p>With the <code>since</code> parameter, the response is a {@link NotificationDeltaDTO}
+     * instead:  only the entries that were added, changed or removed since the client received the
+     * specified token (or every entry, if the parameter is blank or the token is unknown).
+     *
+     * <p>With the <code>fields</code> parameter (e.g. <code>fields=title,priority,dueDate</code>),
+     * entries contain only the specified properties (and the <code>id</code>).
+     *
+     * <p>The response is JSON, unless the <code>Accept</code> header prefers
+     * Smile (see {@link SmileHttpMessageConverter}).
+     */
     @RequestMapping(value = "/notifications", method = RequestMethod.GET)
-    public List<NotificationEntry> fetchNotifications(HttpServletRequest request) {
-        final NotificationResponse response = repository.fetch(request);
-        final List<NotificationEntry> rslt = notificationResponseFlattener.flatten(response);
-        logger.debug("result count = {}", rslt.size());
-        logger.debug("result = {}", rslt);
-        return Sorting.sort(request, rslt);
+    public ResponseEntity<byte[]> fetchNotifications(HttpServletRequest request, WebRequest webRequest,
+            @RequestParam(value = "since", required = false) String since) throws IOException {
+        final MediaType contentType = negotiateContentType(request);
+        final ObjectWriter writer = NotificationFields.fromRequest(request)
+                .writer(SmileHttpMessageConverter.APPLICATION_SMILE.equals(contentType) ? smileObjectMapper : objectMapper);
+
+        if (since != null) {
+            final List<NotificationEntry> rslt = flatten(repository.fetch(request));
+            final NotificationDeltaDTO delta = notificationDeltaCalculator.calculate(
+                    usernameFinder.findUsername(request), since, Sorting.sort(request, rslt), writer);
+            return ResponseEntity.ok()
+                    .contentType(contentType)
+                    .cacheControl(CacheControl.noStore())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(writer.writeValueAsBytes(delta));
+        }
+
+        /*
+         * Serialize once, both to compute the ETag and (if necessary) to send;  the repository
+         * reuses the bytes for as long as the notifications are the same.
+         */
+        final byte[] body = repository.fetch(request, contentType,
+                response -> writer.writeValueAsBytes(Sorting.sort(request, flatten(response))));
+        final String etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            logger.debug("Notifications not modified;  etag={}", etag);
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    /**
+     * Provides the number of notifications that <code>/notifications</code> would return for the
+     * same filtering parameters (e.g. <code>read=false</code>), as <code>{"count": n}</code>.  Data
+     * sources that can count notifications do so without fetching them, and counts are cached
+     * briefly;  suitable for a badge that appears on every page.
+     *
+     * @since 4.8
+     */
+    @RequestMapping(value = "/notifications/count", method = RequestMethod.GET)
+    public Map<String,Integer> countNotifications(HttpServletRequest request) {
+        return Collections.singletonMap("count", repository.count(request));
+    }
+
+    /**
+     * Opens a stream of server-sent events on which the client is told when the notifications of
+     * the current user change (a <code>changed</code> event), so that it need not poll
+     * <code>/notifications</code>.  Clients should fetch once after connecting, since changes made
+     * before the connection opened are not reported.
+     *
+     * @since 4.8
+     */
+    @RequestMapping(value = "/notifications/changes", method = RequestMethod.GET,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToChanges(HttpServletRequest request) {
+        return notificationChangeBroadcaster.subscribe(usernameFinder.findUsername(request));
+    }
+
+    /**
+     * Provides a single notification of the current user, including the full body.  (Listings of
+     * JPA notifications may provide only a summary of the body.)
+     *
+     * @since 4.8
+     */
+    @RequestMapping(value = "/notifications/{notificationId}", method = RequestMethod.GET)
+    public NotificationEntry fetchNotification(HttpServletRequest request, HttpServletResponse response,
+                            @PathVariable("notificationId") String notificationId) {
+        final NotificationEntry entry = repository.resolve(request, notificationId);
+        if (entry == null) {
+            logger.warn("Notification not found for notificationId='{}'", notificationId);
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return null;
+        }
+
+        // Don't modify the (possibly cached) original
+        final NotificationEntry rslt;
+        try {
+            rslt = (NotificationEntry) entry.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException("Failed to clone notification:  " + notificationId, e);
+        }
+        rslt.setBody(jpaServices.getBody(entry));
+        return rslt;
     }
 
     @RequestMapping(value = "/action/{actionId}/{notificationId}", method = RequestMethod.POST)
@@ -92,12 +244,11 @@ public class NotificationRestV2Controller {
          */
         final HttpServletRequest decoratedRequest = decorateWithAuthorizationIfPresent(request);
 
-        // Obtain the collection
-        final NotificationResponse notifications = repository.fetch(decoratedRequest);
+        // Obtain the entry (from the data source that owns it, if possible)
+        final NotificationEntry entry = repository.resolve(decoratedRequest, notificationId);
 
         // Find the relevant action
         NotificationAction target = null;
-        final NotificationEntry entry = notifications.findNotificationEntryById(notificationId);
         if (entry != null) {
             for (NotificationAction a : entry.getAvailableActions()) {
                 if (actionId.equals(a.getId())) {
@@ -122,9 +273,9 @@ public class NotificationRestV2Controller {
                 response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
                 return null;
             }
-            // It's reasonable to assume we need to purge
-            // caches for this user after invoking his action
-            repository.refresh(decoratedRequest, response);
+            // It's reasonable to assume we need to purge caches for this user after invoking his
+            // action;  but only those that depend on this entry
+            repository.refresh(decoratedRequest, response, Collections.singleton(notificationId));
         } else {
             logger.warn("Target action not found for notificationId='{}' and actionId='{}'",
                     notificationId, actionId);
@@ -136,6 +287,141 @@ public class NotificationRestV2Controller {
 
     }
 
+    /**
+     * Invokes several actions at once (e.g. "mark all as read").  The request body is a list of
+     * <code>{"actionId": "...", "notificationId": "..."}</code> objects;  the response is the same
+     * list, with <code>"success": true</code> for each action that was found and invoked.  The
+     * notifications are fetched once, the events that record the actions are written together,
+     * and caches are refreshed once.  Actions that redirect (e.g.
+     * <code>MarkAsReadAndRedirectAction</code>) don't redirect here.  At most
+     * {@link #MAX_ACTIONS_PER_REQUEST} actions may be invoked per request.
+     *
+     * @since 4.8
+     */
+    @RequestMapping(value = "/actions", method = RequestMethod.POST)
+    public List<ActionInvocationDTO> invokeActions(HttpServletRequest request, HttpServletResponse response,
+                            @RequestBody List<ActionInvocationDTO> invocations) {
+
+        if (invocations.size() > MAX_ACTIONS_PER_REQUEST) {
+            logger.warn("Refusing a request to invoke {} actions;  the limit is {}",
+                    invocations.size(), MAX_ACTIONS_PER_REQUEST);
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return null;
+        }
+
+        final HttpServletRequest decoratedRequest = decorateWithAuthorizationIfPresent(request);
+        final HttpServletResponse nonRedirectingResponse = new HttpServletResponseWrapper(response) {
+            @Override
+            public void sendRedirect(String location) {
+                logger.debug("Ignoring redirect to '{}' within a bulk action request", location);
+            }
+        };
+
+        // Obtain the collection (once)
+        final Map<String,NotificationEntry> entries = new HashMap<>();
+        for (NotificationCategory category : repository.fetch(decoratedRequest).getCategories()) {
+            for (NotificationEntry entry : category.getEntries()) {
+                entries.putIfAbsent(entry.getId(), entry);
+            }
+        }
+
+        final List<ActionInvocationDTO> rslt = new ArrayList<>();
+        final Set<String> changed = new HashSet<>();
+        jpaServices.applyStates(() -> {
+            for (ActionInvocationDTO invocation : invocations) {
+                final ActionInvocationDTO outcome = new ActionInvocationDTO();
+                outcome.setActionId(invocation.getActionId());
+                outcome.setNotificationId(invocation.getNotificationId());
+                outcome.setSuccess(false);
+                rslt.add(outcome);
+
+                // Find the relevant action
+                final NotificationEntry entry = invocation.getNotificationId() != null
+                        ? entries.get(invocation.getNotificationId())
+                        : null;
+                final NotificationAction target = entry != null
+                        ? entry.getAvailableActions().stream()
+                                .filter(a -> a.getId() != null && a.getId().equals(invocation.getActionId()))
+                                .findFirst().orElse(null)
+                        : null;
+                if (target == null) {
+                    logger.warn("Target action not found for notificationId='{}' and actionId='{}'",
+                            invocation.getNotificationId(), invocation.getActionId());
+                    continue;
+                }
+
+                try {
+                    target.invoke(decoratedRequest, nonRedirectingResponse);
+                    outcome.setSuccess(true);
+                    changed.add(entry.getId());
+                } catch (IOException e) {
+                    final String username = usernameFinder.findUsername(decoratedRequest);
+                    logger.error("Failed to invoke action '{}' on entry '{}' for user '{}'",
+                            target.getLabel(), entry.getId(), username, e);
+                }
+            }
+        });
+
+        // Purge caches (once) that depend on the entries that changed
+        if (!changed.isEmpty()) {
+            repository.refresh(decoratedRequest, response, changed);
+        }
+
+        return rslt;
+
+    }
+
+    /**
+     * JSON, unless the client prefers Smile or refuses JSON (<code>q=0</code>) but accepts Smile.
+     * (Other endpoints leave this decision to the <code>HttpMessageConverter</code> beans of Spring
+     * MVC.)
+     */
+    private MediaType negotiateContentType(HttpServletRequest request) {
+        final String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (StringUtils.hasText(accept)) {
+            try {
+                final List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+                MediaType.sortBySpecificityAndQuality(mediaTypes);
+                for (MediaType mediaType : mediaTypes) {
+                    if (mediaType.getQualityValue() == 0.0) {
+                        continue;  // Not acceptable
+                    }
+                    if (mediaType.includes(MediaType.APPLICATION_JSON)
+                            && isAcceptable(mediaTypes, MediaType.APPLICATION_JSON)) {
+                        break;
+                    }
+                    if (mediaType.includes(SmileHttpMessageConverter.APPLICATION_SMILE)
+                            && isAcceptable(mediaTypes, SmileHttpMessageConverter.APPLICATION_SMILE)) {
+                        return SmileHttpMessageConverter.APPLICATION_SMILE;
+                    }
+                }
+            } catch (InvalidMediaTypeException e) {
+                logger.debug("Ignoring invalid Accept header:  {}", accept);
+            }
+        }
+        return MediaType.APPLICATION_JSON_UTF8;
+    }
+
+    /**
+     * The most specific of the (sorted) media types that includes the specified one decides,
+     * e.g. <code>*&#47;*, application/json;q=0</code> refuses JSON.
+     */
+    private boolean isAcceptable(List<MediaType> sortedMediaTypes, MediaType mediaType) {
+        for (MediaType candidate : sortedMediaTypes) {
+            if (candidate.includes(mediaType)) {
+                return candidate.getQualityValue() > 0.0;
+            }
+        }
+        return false;
+    }
+
+    private List<NotificationEntry> flatten(NotificationResponse response) {
+        final List<NotificationEntry> rslt = notificationResponseFlattener.flatten(response);
+        logger.debug("result count = {}", rslt.size());
+        logger.debug("result = {}", rslt);
+        return rslt;
+    }
+
     private HttpServletRequest decorateWithAuthorizationIfPresent(HttpServletRequest request) {
         return new HttpServletRequestWrapper(request) {
             @Override
@@ -0,0 +1,67 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.controller.rest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jasig.portlet.notice.util.RequestThrottle;
+import org.jasig.portlet.notice.util.UsernameFinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Applies the {@link RequestThrottle} to the endpoints of {@link NotificationRestV2Controller}
+ * (each handler method is an endpoint).  Requests beyond the budget of the user receive
+ * <code>429 Too Many Requests</code> and a <code>Retry-After</code> header.
+ *
+ * @since 4.8
+ */
+@Component
+public class RequestThrottleInterceptor extends HandlerInterceptorAdapter {
+
+    @Autowired
+    private RequestThrottle requestThrottle;
+
+    @Autowired
+    private UsernameFinder usernameFinder;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)
+                || !NotificationRestV2Controller.class.isAssignableFrom(((HandlerMethod) handler).getBeanType())
+                || !usernameFinder.isAuthenticated(request)) {
+            return true;
+        }
+
+        final String endpoint = ((HandlerMethod) handler).getMethod().getName();
+        if (requestThrottle.tryAcquire(usernameFinder.findUsername(request), endpoint)) {
+            return true;
+        }
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(requestThrottle.getRetryAfterSeconds()));
+        return false;
+    }
+
+}
@@ -19,6 +19,8 @@
 package org.jasig.portlet.notice.filter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -30,6 +32,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.NotificationAction;
 import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationCountCriteria;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.action.acknowledge.AcknowledgeAction;
@@ -106,6 +109,38 @@ public class AcknowledgePerSessionFilter extends AbstractNotificationServiceFilt
         return removeAckActionsWhenAck(response, session);
     }
 
+    /**
+     * Entries are filtered only when the request specifies the {@code ack} parameter;  their
+     * acknowledgements live in the session, where a data source can't count them.
+     */
+    @Override
+    public boolean describeCount(HttpServletRequest request, NotificationCountCriteria criteria) {
+        return request.getParameter(REQ_ACK_PARAM) == null;
+    }
+
+    /**
+     * Acknowledgements live in the session.
+     */
+    @Override
+    public boolean describeState(HttpServletRequest request, List<Object> state) {
+        final HttpSession session = request.getSession(false);
+        if (session != null) {
+            final List<String> acknowledged = new ArrayList<>();
+            for (Enumeration<?> names = session.getAttributeNames(); names.hasMoreElements();) {
+                final String name = (String) names.nextElement();
+                if (name.startsWith(AcknowledgeAction.SESSION_ATTR_PREFIX)) {
+                    acknowledged.add(name);
+                }
+            }
+            // No session (e.g. the first request) and no acknowledgements are the same state
+            if (!acknowledged.isEmpty()) {
+                Collections.sort(acknowledged);
+                state.add(acknowledged);
+            }
+        }
+        return true;
+    }
+
     /**
      * Remove {@code AcknowledgeAction} actions from entries in returned {@code NotificationResponse}.
      *
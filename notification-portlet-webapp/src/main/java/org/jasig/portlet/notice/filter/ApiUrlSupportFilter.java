@@ -29,8 +29,10 @@ import org.jasig.portlet.notice.INotificationServiceFilter;
 import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.NotificationAction;
 import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationCountCriteria;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.util.NotificationFields;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.stereotype.Component;
@@ -47,16 +49,16 @@ public class ApiUrlSupportFilter extends AbstractNotificationServiceFilter {
     public static final String AUTHORIZATION_PARAMETER_NAME = "_authorization";
 
     /**
-     * The format strings are as follows:
+     * URLs are as follows:
      * <ul>
      *   <li>protocol, host, port (if applicable), and context</li>
+     *   <li>{@link #REST_API_ACTION_PATH}</li>
      *   <li>action id</li>
      *   <li>notification id</li>
-     *   <li>Spring CSRF token</li>
+     *   <li>Spring CSRF token and bearer token (the same for every action)</li>
      * </ul>
      */
-    private static final String REST_API_URL_FORMAT =
-            "%s/api/v2/action/%s/%s?_csrf=%s&" + AUTHORIZATION_PARAMETER_NAME + "=%s";
+    private static final String REST_API_ACTION_PATH = "/api/v2/action/";
 
     /**
      * This {@link INotificationServiceFilter} must do its work late in the chain because filters
@@ -72,8 +74,17 @@ public class ApiUrlSupportFilter extends AbstractNotificationServiceFilter {
 
         final NotificationResponse response = chain.doFilter();
 
+        // Nothing to do if the client won't receive the actions
+        if (!NotificationFields.fromRequest(request).includes(NotificationFields.AVAILABLE_ACTIONS)) {
+            return response;
+        }
+
         final NotificationResponse rslt = response.cloneIfNotCloned();
 
+        // Only ids vary by action
+        final String urlBase = getUrlBase(request);
+        final String queryString = getQueryString(request);
+
         // Add apiUrl values to actions with our copy
         for (NotificationCategory category : rslt.getCategories()) {
 
@@ -84,19 +95,12 @@ public class ApiUrlSupportFilter extends AbstractNotificationServiceFilter {
                             if (StringUtils.isNotBlank(action.getId())
                                     && action.getTarget() != null
                                     && StringUtils.isNotBlank(action.getTarget().getId())) {
-                                // Pick up scheme, host[, port,] and context from the request
-                                final String requestUrl = request.getRequestURL().toString();
-                                final String contextPath = request.getContextPath();
-                                final String urlBase = requestUrl.substring(0,
-                                        requestUrl.indexOf(contextPath)) + contextPath;
-                                final CsrfToken csrf =
-                                        (CsrfToken) request.getAttribute(CsrfToken.class.getName());
-                                final String apiUrl = String.format(REST_API_URL_FORMAT,
-                                        urlBase,
-                                        action.getId(),
-                                        action.getTarget().getId(),
-                                        csrf != null ? csrf.getToken() : null,
-                                        getBearerToken(request));
+                                final String apiUrl = new StringBuilder(urlBase)
+                                        .append(action.getId())
+                                        .append('/')
+                                        .append(action.getTarget().getId())
+                                        .append(queryString)
+                                        .toString();
                                 action.setApiUrl(apiUrl);
                             }
                         })
@@ -111,6 +115,41 @@ public class ApiUrlSupportFilter extends AbstractNotificationServiceFilter {
 
     }
 
+    /**
+     * Only decorates entries.
+     */
+    @Override
+    public boolean describeCount(HttpServletRequest request, NotificationCountCriteria criteria) {
+        return true;
+    }
+
+    /**
+     * URLs depend on the request and the tokens of the user.
+     */
+    @Override
+    public boolean describeState(HttpServletRequest request, List<Object> state) {
+        if (NotificationFields.fromRequest(request).includes(NotificationFields.AVAILABLE_ACTIONS)) {
+            state.add(getUrlBase(request));
+            state.add(getQueryString(request));
+        }
+        return true;
+    }
+
+    /**
+     * Picks up scheme, host[, port,] and context from the request.
+     */
+    private String getUrlBase(HttpServletRequest request) {
+        final String requestUrl = request.getRequestURL().toString();
+        final String contextPath = request.getContextPath();
+        return requestUrl.substring(0, requestUrl.indexOf(contextPath)) + contextPath + REST_API_ACTION_PATH;
+    }
+
+    private String getQueryString(HttpServletRequest request) {
+        final CsrfToken csrf = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+        return "?_csrf=" + (csrf != null ? csrf.getToken() : null)
+                + "&" + AUTHORIZATION_PARAMETER_NAME + "=" + getBearerToken(request);
+    }
+
     private String getBearerToken(HttpServletRequest request) {
         String rslt = ""; // default
         final String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
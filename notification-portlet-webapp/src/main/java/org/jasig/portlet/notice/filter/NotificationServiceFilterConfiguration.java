@@ -18,25 +18,48 @@
  */
 package org.jasig.portlet.notice.filter;
 
+import com.google.common.collect.MapMaker;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jasig.portlet.notice.ICountable;
+import org.jasig.portlet.notice.IEntryResolver;
 import org.jasig.portlet.notice.INotificationRepository;
 import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.INotificationServiceFilter;
 import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.IRefreshable;
+import org.jasig.portlet.notice.IVersioned;
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationCountCriteria;
+import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.util.NotificationChangeBroadcaster;
+import org.jasig.portlet.notice.util.RequestThrottle;
+import org.jasig.portlet.notice.util.ResponseInvalidationWheel;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
 
+import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Configuration of {@link INotificationServiceFilter} and {@link INotificationServiceFilterChain}
@@ -56,24 +79,84 @@ public class NotificationServiceFilterConfiguration {
     @Autowired
     private UsernameFinder usernameFinder;
 
+    @Resource(name="NotificationRepository.responseCache")
+    private Cache responseCache;
+
+    @Resource(name="NotificationRepository.countCache")
+    private Cache countCache;
+
+    @Resource(name="NotificationRepository.serializedResponseCache")
+    private Cache serializedResponseCache;
+
+    /**
+     * Reuse the serialized form of a user's notifications (e.g. JSON) for as long as the responses
+     * of the services are the same objects;  see fetch(HttpServletRequest, MediaType, ResponseSerializer).
+     */
+    @Value("${NotificationRepository.cacheSerializedResponses:false}")
+    private boolean cacheSerializedResponses;
+
+    @Autowired
+    private ResponseInvalidationWheel responseInvalidationWheel;
+
+    @Autowired
+    private NotificationChangeBroadcaster notificationChangeBroadcaster;
+
+    @Autowired
+    private RequestThrottle requestThrottle;
+
+    /**
+     * Distinct queries (and tokens) for which a user's serialized responses are kept.
+     */
+    private static final int MAX_SERIALIZED_RESPONSES_PER_USER = 16;
+
     private static final Logger logger = LoggerFactory.getLogger(NotificationServiceFilterConfiguration.class);
 
     @Bean("notificationRepository")
     public INotificationRepository notificationRepository() {
-        return new NotificationRepositoryImpl(filters, services, usernameFinder);
+        return new NotificationRepositoryImpl(filters, services, usernameFinder, responseCache,
+                countCache, cacheSerializedResponses ? serializedResponseCache : null,
+                responseInvalidationWheel, notificationChangeBroadcaster, requestThrottle);
     }
 
     /*
      * Nested Types
      */
 
+    /**
+     * Caches the responses of services that implement {@link IVersioned}, which are reused for as
+     * long as their version is current and no due date has passed.  (Filters run on every
+     * request.)  Counts are computed by {@link ICountable} services, or from unfiltered responses,
+     * whenever the filters can describe their effect;  they're cached briefly, by user.  Requests
+     * for (and changes to) a single entry go to the {@link IEntryResolver} service that owns it.
+     * Serialized responses are reused while the categories of the services are the same objects,
+     * the versions are the same, and the filters describe the same state.  Refreshing every
+     * service is subject to the {@link RequestThrottle};  beyond it, only the filters (and the
+     * caches that depend on them) are refreshed.
+     */
     private static class NotificationRepositoryImpl implements INotificationRepository {
 
         private final List<INotificationServiceFilter> sortedFilters;
         private final Set<INotificationService> services;
         private final UsernameFinder usernameFinder;
+        private final Cache responseCache;
+        private final Cache countCache;
+        private final Cache serializedResponseCache;  // May be null
+        private final ResponseInvalidationWheel responseInvalidationWheel;
+        private final NotificationChangeBroadcaster notificationChangeBroadcaster;
+        private final RequestThrottle requestThrottle;
+
+        /**
+         * Numbers the category objects that services have provided, so that fingerprints of
+         * serialized responses can tell whether they're the same objects without holding on to
+         * them.  Weak keys compare by identity.
+         */
+        private final ConcurrentMap<NotificationCategory,Long> generations = new MapMaker().weakKeys().makeMap();
+        private final AtomicLong lastGeneration = new AtomicLong();
 
-        /* package-private */ NotificationRepositoryImpl(List<INotificationServiceFilter> filters, Set<INotificationService> services, UsernameFinder usernameFinder) {
+        /* package-private */ NotificationRepositoryImpl(List<INotificationServiceFilter> filters, Set<INotificationService> services,
+                UsernameFinder usernameFinder, Cache responseCache, Cache countCache,
+                Cache serializedResponseCache, ResponseInvalidationWheel responseInvalidationWheel,
+                NotificationChangeBroadcaster notificationChangeBroadcaster, RequestThrottle requestThrottle) {
 
             // Prep the filters collection
             List<INotificationServiceFilter> filtersCopy = new ArrayList<>(filters);
@@ -88,15 +171,67 @@ public class NotificationServiceFilterConfiguration {
 
             // Etc.
             this.usernameFinder = usernameFinder;
+            this.responseCache = responseCache;
+            this.countCache = countCache;
+            this.serializedResponseCache = serializedResponseCache;
+            this.responseInvalidationWheel = responseInvalidationWheel;
+            this.notificationChangeBroadcaster = notificationChangeBroadcaster;
+            this.requestThrottle = requestThrottle;
 
         }
 
         @Override
         public void refresh(HttpServletRequest request, HttpServletResponse response) {
-            for (INotificationService service : services) {
-                if (IRefreshable.class.isInstance(service)) {
-                    logger.debug("Refreshing INotificationService bean '{}'", service.getName());
-                    ((IRefreshable) service).refresh(request, response);
+            final String username = usernameFinder.findUsername(request);
+            countCache.remove(username);
+            if (serializedResponseCache != null) {
+                serializedResponseCache.remove(username);
+            }
+            if (requestThrottle.tryAcquireRefresh(username)) {
+                for (INotificationService service : services) {
+                    responseCache.remove(Pair.of(service.getName(), username));
+                    if (IRefreshable.class.isInstance(service)) {
+                        logger.debug("Refreshing INotificationService bean '{}'", service.getName());
+                        ((IRefreshable) service).refresh(request, response);
+                    }
+                }
+            } else {
+                // Too many refreshes;  the data sources keep their (cached) responses
+                logger.debug("Refreshing only the filters for user '{}'", username);
+            }
+            for (INotificationServiceFilter filter : sortedFilters) {
+                if (IRefreshable.class.isInstance(filter)) {
+                    logger.debug("Refreshing INotificationServiceFilter bean '{}'", filter);
+                    ((IRefreshable) filter).refresh(request, response);
+                }
+            }
+            // The user's other clients (e.g. browser tabs) may be showing stale notifications
+            notificationChangeBroadcaster.publish(username);
+        }
+
+        @Override
+        public void refresh(HttpServletRequest request, HttpServletResponse response, Collection<String> notificationIds) {
+            final Set<INotificationService> owners = new HashSet<>();
+            for (String notificationId : notificationIds) {
+                final INotificationService owner = findOwner(notificationId);
+                if (owner == null) {
+                    logger.debug("No INotificationService bean owns notificationId='{}';  refreshing all of them", notificationId);
+                    refresh(request, response);
+                    return;
+                }
+                owners.add(owner);
+            }
+
+            final String username = usernameFinder.findUsername(request);
+            countCache.remove(username);
+            if (serializedResponseCache != null) {
+                serializedResponseCache.remove(username);
+            }
+            for (INotificationService owner : owners) {
+                responseCache.remove(Pair.of(owner.getName(), username));
+                if (IRefreshable.class.isInstance(owner)) {
+                    logger.debug("Refreshing INotificationService bean '{}'", owner.getName());
+                    ((IRefreshable) owner).refresh(request, response);
                 }
             }
             for (INotificationServiceFilter filter : sortedFilters) {
@@ -105,6 +240,7 @@ public class NotificationServiceFilterConfiguration {
                     ((IRefreshable) filter).refresh(request, response);
                 }
             }
+            notificationChangeBroadcaster.publish(username);
         }
 
         @Override
@@ -113,29 +249,262 @@ public class NotificationServiceFilterConfiguration {
             final String username = usernameFinder.findUsername(request);
             logger.debug("Fetching notifications on behalf of user '{}'", username);
 
+            return fetch(request, username, services);
+
+        }
+
+        @Override
+        public byte[] fetch(HttpServletRequest request, MediaType contentType, ResponseSerializer serializer)
+                throws IOException {
+
+            final String username = usernameFinder.findUsername(request);
+            logger.debug("Fetching serialized notifications on behalf of user '{}'", username);
+
+            // Versioned and feed-based services provide the same objects while nothing has changed
+            final List<Object> fingerprint = new ArrayList<>();
+            final List<NotificationResponse> responses = fetchEach(request, username, services, fingerprint);
+            final INotificationServiceFilterChain source = () -> combine(responses);
+            if (serializedResponseCache == null) {
+                return serializer.serialize(filter(request, source));
+            }
+
+            // What else does the output depend on?
+            final List<Object> key = new ArrayList<>();
+            key.add(contentType);
+            key.add(request.getQueryString());
+            for (INotificationServiceFilter filter : sortedFilters) {
+                if (!filter.describeState(request, key)) {
+                    logger.debug("INotificationServiceFilter bean '{}' can't describe its state;  serializing", filter);
+                    return serializer.serialize(filter(request, source));
+                }
+            }
+
+            final Element m = serializedResponseCache.get(username);
+            @SuppressWarnings("unchecked")
+            final Map<List<Object>,SerializedResponse> serialized = m != null
+                    ? (Map<List<Object>,SerializedResponse>) m.getObjectValue()
+                    : new ConcurrentHashMap<>();
+            final SerializedResponse cached = serialized.get(key);
+            if (cached != null && cached.getFingerprint().equals(fingerprint)) {
+                logger.debug("Reusing the serialized response for user '{}' and query '{}'", username, request.getQueryString());
+                return cached.getBody();
+            }
+
+            final byte[] rslt = serializer.serialize(filter(request, source));
+            if (serialized.size() >= MAX_SERIALIZED_RESPONSES_PER_USER) {
+                // Probably old tokens (e.g. CSRF);  start over
+                serialized.clear();
+            }
+            serialized.put(key, new SerializedResponse(fingerprint, rslt));
+            if (m == null) {
+                serializedResponseCache.put(new Element(username, serialized));
+            }
+            return rslt;
+
+        }
+
+        @Override
+        public NotificationEntry resolve(HttpServletRequest request, String notificationId) {
+            final INotificationService owner = findOwner(notificationId);
+            if (owner == null) {
+                logger.debug("No INotificationService bean owns notificationId='{}';  fetching all of them", notificationId);
+                return fetch(request).findNotificationEntryById(notificationId);
+            }
+
+            logger.debug("Resolving notificationId='{}' with INotificationService bean '{}'", notificationId, owner.getName());
+            final NotificationResponse rslt = filter(request,
+                    () -> ((IEntryResolver) owner).resolve(request, notificationId));
+            return rslt.findNotificationEntryById(notificationId);
+        }
+
+        @Override
+        public int count(HttpServletRequest request) {
+
+            final String username = usernameFinder.findUsername(request);
+            final String countKey = String.valueOf(request.getQueryString());
+
+            final Element m = countCache.get(username);
+            @SuppressWarnings("unchecked")
+            final Map<String,Integer> counts = m != null
+                    ? (Map<String,Integer>) m.getObjectValue()
+                    : new ConcurrentHashMap<>();
+            final Integer cached = counts.get(countKey);
+            if (cached != null) {
+                return cached;
+            }
+
+            final int rslt = count(request, username);
+            logger.debug("Counted {} notifications for user '{}' and query '{}'", rslt, username, countKey);
+            counts.put(countKey, rslt);
+            if (m == null) {
+                countCache.put(new Element(username, counts));
+            }
+            return rslt;
+
+        }
+
+        private NotificationResponse fetch(HttpServletRequest request, String username,
+                Collection<INotificationService> services) {
+
             /*
              * The end of the line:  the INotificationServiceFilterChain that wraps the collection
              * of INotificationService beans.
              */
-            INotificationServiceFilterChain chain = () -> {
-                NotificationResponse rslt = new NotificationResponse();
-                for (INotificationService service : services) {
-                    NotificationResponse response = service.fetch(request);
-                    rslt = rslt.combine(response);
-                    logger.debug("Processed INotificationService bean '{}';  size={}", service.getName(), rslt.size());
+            return filter(request, () -> combine(fetchEach(request, username, services, null)));
+
+        }
+
+        /**
+         * @param fingerprint If not <code>null</code>, receives the versions of the services
+         * (where available) and the generations of the categories in their responses
+         */
+        private List<NotificationResponse> fetchEach(HttpServletRequest request, String username,
+                Collection<INotificationService> services, List<Object> fingerprint) {
+            final List<NotificationResponse> rslt = new ArrayList<>(services.size());
+            for (INotificationService service : services) {
+                final NotificationResponse response = fetch(service, request, username, fingerprint);
+                rslt.add(response);
+                if (fingerprint != null) {
+                    response.getCategories().forEach(category -> fingerprint.add(generationOf(category)));
                 }
-                return rslt;
-            };
+                logger.debug("Processed INotificationService bean '{}';  size={}", service.getName(), response.size());
+            }
+            return rslt;
+        }
 
-            /*
-             * Build the rest of the INotificationServiceFilterChain.
-             */
+        private Long generationOf(NotificationCategory category) {
+            return generations.computeIfAbsent(category, k -> lastGeneration.incrementAndGet());
+        }
+
+        private NotificationResponse combine(List<NotificationResponse> responses) {
+            NotificationResponse rslt = new NotificationResponse();
+            for (NotificationResponse response : responses) {
+                rslt = rslt.combine(response);
+            }
+            return rslt;
+        }
+
+        /**
+         * Builds the rest of the INotificationServiceFilterChain in front of the specified source
+         * and runs it.
+         */
+        private NotificationResponse filter(HttpServletRequest request, INotificationServiceFilterChain source) {
+            INotificationServiceFilterChain chain = source;
             for (INotificationServiceFilter filter : sortedFilters) {
                 chain = new NotificationServiceFilterChainImpl(filter, request, chain);
             }
-
             return chain.doFilter();
+        }
+
+        /**
+         * @return The {@link IEntryResolver} service that owns the specified id, or
+         * <code>null</code>
+         */
+        private INotificationService findOwner(String notificationId) {
+            for (INotificationService service : services) {
+                if (IEntryResolver.class.isInstance(service) && ((IEntryResolver) service).owns(notificationId)) {
+                    return service;
+                }
+            }
+            return null;
+        }
+
+        private int count(HttpServletRequest request, String username) {
+
+            // Can every filter describe what it does?
+            final NotificationCountCriteria criteria = new NotificationCountCriteria();
+            for (INotificationServiceFilter filter : sortedFilters) {
+                if (!filter.describeCount(request, criteria)) {
+                    logger.debug("INotificationServiceFilter bean '{}' can't describe its effect;  counting filtered notifications", filter);
+                    return fetch(request, username, services).size();
+                }
+            }
+            if (criteria.isEmpty()) {
+                return 0;
+            }
+
+            int rslt = 0;
+            final Set<INotificationService> uncounted = new HashSet<>();
+            for (INotificationService service : services) {
+                Integer count = ICountable.class.isInstance(service)
+                        ? ((ICountable) service).count(request, criteria)
+                        : null;
+                if (count == null && criteria.getRead() == null) {
+                    // Priority is a property of the entry;  this is cheap for services that cache
+                    count = fetch(service, request, username, null).filter(criteria::matchesPriority).size();
+                }
+                if (count != null) {
+                    rslt += count;
+                } else {
+                    uncounted.add(service);
+                }
+            }
+
+            // Read states come from the filters
+            if (!uncounted.isEmpty()) {
+                rslt += fetch(request, username, uncounted).size();
+            }
+
+            return rslt;
+
+        }
+
+        private NotificationResponse fetch(INotificationService service, HttpServletRequest request, String username,
+                List<Object> fingerprint) {
+            final Object version = IVersioned.class.isInstance(service)
+                    ? ((IVersioned) service).getVersion(request)
+                    : null;
+            if (fingerprint != null) {
+                fingerprint.add(version);
+            }
+            if (version == null) {
+                return service.fetch(request);
+            }
+
+            // The response is not modified;  combine() copies it
+            final Pair<String,String> cacheKey = Pair.of(service.getName(), username);
+            final Element m = responseCache.get(cacheKey);
+            if (m != null) {
+                @SuppressWarnings("unchecked")
+                final Pair<Object,NotificationResponse> cached = (Pair<Object,NotificationResponse>) m.getObjectValue();
+                if (version.equals(cached.getLeft())) {
+                    logger.debug("Reusing the response of INotificationService bean '{}' at version {}", service.getName(), version);
+                    return cached.getRight();
+                }
+            }
+            // The service needn't obtain the version again
+            final NotificationResponse rslt = ((IVersioned) service).fetch(request, version);
+            if (rslt.getErrors().isEmpty()) {
+                responseCache.put(new Element(cacheKey, Pair.of(version, rslt)));
+                responseInvalidationWheel.schedule(Pair.of(responseCache.getName(), cacheKey), rslt,
+                        () -> responseCache.remove(cacheKey));
+            }
+            return rslt;
+        }
+
+    }
+
+    /**
+     * A serialized response and what it was made from.  The fingerprint holds the versions of the
+     * services and the generations of their categories (see generationOf), never the categories
+     * themselves, so cached bodies don't keep old responses in memory.
+     */
+    private static final class SerializedResponse {
+
+        private final List<Object> fingerprint;
+        private final byte[] body;
+
+        /* package-private */ SerializedResponse(List<Object> fingerprint, byte[] body) {
+            this.fingerprint = fingerprint;
+            this.body = body;
+        }
+
+        public List<Object> getFingerprint() {
+            return fingerprint;
+        }
 
+        public byte[] getBody() {
+            return body;
         }
 
     }
@@ -3,6 +3,7 @@ package org.jasig.portlet.notice.filter;
 import org.apache.commons.lang3.StringUtils;
 import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.INotificationServiceFilterChain;
+import org.jasig.portlet.notice.NotificationCountCriteria;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.slf4j.Logger;
@@ -10,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 
 /**
  * Filters the output of {@link INotificationService} beans based on priority.
@@ -82,4 +84,25 @@ public class PriorityNotificationServiceFilter extends AbstractNotificationServi
 
     }
 
+    @Override
+    public boolean describeCount(HttpServletRequest request, NotificationCountCriteria criteria) {
+        final String minPriorityParameter = request.getParameter(MIN_PRIORITY_PARAMETER_NAME);
+        if (StringUtils.isNotBlank(minPriorityParameter)) {
+            criteria.setMinPriority(Integer.valueOf(minPriorityParameter));
+        }
+        final String maxPriorityParameter = request.getParameter(MAX_PRIORITY_PARAMETER_NAME);
+        if (StringUtils.isNotBlank(maxPriorityParameter)) {
+            criteria.setMaxPriority(Integer.valueOf(maxPriorityParameter));
+        }
+        return true;
+    }
+
+    /**
+     * Depends only on the query string.
+     */
+    @Override
+    public boolean describeState(HttpServletRequest request, List<Object> state) {
+        return true;
+    }
+
 }
@@ -26,6 +26,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jasig.portlet.notice.*;
 import org.jasig.portlet.notice.rest.EventDTO;
 import org.jasig.portlet.notice.util.IJpaServices;
+import org.jasig.portlet.notice.util.NotificationFields;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +55,11 @@ public class ReadActionFilter extends AbstractNotificationServiceFilter {
             HttpServletRequest request, INotificationServiceFilterChain chain) {
         final NotificationResponse response = chain.doFilter();
 
+        // Nothing to do if the client won't receive the actions
+        if (!NotificationFields.fromRequest(request).includes(NotificationFields.AVAILABLE_ACTIONS)) {
+            return response;
+        }
+
         final NotificationResponse rslt = response.cloneIfNotCloned();
 
         for (NotificationCategory category : rslt.getCategories()) {
@@ -92,4 +98,20 @@ public class ReadActionFilter extends AbstractNotificationServiceFilter {
 
         return rslt;
     }
+
+    /**
+     * Only removes actions.
+     */
+    @Override
+    public boolean describeCount(HttpServletRequest request, NotificationCountCriteria criteria) {
+        return true;
+    }
+
+    /**
+     * Read states are events of the user, which change the version of the JPA service.
+     */
+    @Override
+    public boolean describeState(HttpServletRequest request, List<Object> state) {
+        return true;
+    }
 }
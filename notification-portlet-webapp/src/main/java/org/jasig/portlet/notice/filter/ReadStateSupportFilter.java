@@ -29,12 +29,14 @@ import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.NotificationAction;
 import org.jasig.portlet.notice.NotificationAttribute;
 import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationCountCriteria;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.NotificationState;
 import org.jasig.portlet.notice.action.read.MarkAsReadAndRedirectAction;
 import org.jasig.portlet.notice.rest.EventDTO;
 import org.jasig.portlet.notice.util.IJpaServices;
+import org.jasig.portlet.notice.util.NotificationFields;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,7 +84,16 @@ public class ReadStateSupportFilter extends AbstractNotificationServiceFilter {
 
         final NotificationResponse rslt = response.cloneIfNotCloned();
 
-        if (!disableDefaultAction) {
+        /*
+         * The READ attribute and the MarkAsReadAndRedirectAction require the history of each
+         * entry;  skip them if the client won't receive them and doesn't filter on them.
+         */
+        final NotificationFields fields = NotificationFields.fromRequest(request);
+        final boolean decorate = fields.includes(NotificationFields.ATTRIBUTES)
+                || fields.includes(NotificationFields.AVAILABLE_ACTIONS)
+                || StringUtils.isNotBlank(readFilterParameter);
+
+        if (!disableDefaultAction && decorate) {
             // Add and implement the read behavior with our copy
             for (NotificationCategory category : rslt.getCategories()) {
 
@@ -145,4 +156,26 @@ public class ReadStateSupportFilter extends AbstractNotificationServiceFilter {
 
         return rslt;
     }
+
+    @Override
+    public boolean describeCount(HttpServletRequest request, NotificationCountCriteria criteria) {
+        final String readFilterParameter = request.getParameter(READ_PARAMETER_NAME);
+        if (StringUtils.isBlank(readFilterParameter)) {
+            return true;
+        }
+        if (disableDefaultAction) {
+            // No entry has the READ attribute;  not worth describing
+            return false;
+        }
+        criteria.setRead(Boolean.parseBoolean(readFilterParameter));
+        return true;
+    }
+
+    /**
+     * Read states are events of the user, which change the version of the JPA service.
+     */
+    @Override
+    public boolean describeState(HttpServletRequest request, List<Object> state) {
+        return true;
+    }
 }
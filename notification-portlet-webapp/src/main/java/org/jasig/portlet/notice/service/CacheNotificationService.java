@@ -37,10 +37,13 @@ import net.sf.ehcache.Element;
 
 import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.IRefreshable;
+import org.jasig.portlet.notice.IVersioned;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.service.filter.FilteringNotificationServiceDecorator;
 import org.jasig.portlet.notice.service.jdbc.AbstractJdbcNotificationService;
+import org.apache.commons.lang3.tuple.Pair;
 import org.jasig.portlet.notice.util.PortletXmlRoleService;
+import org.jasig.portlet.notice.util.ResponseInvalidationWheel;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +55,10 @@ import org.springframework.context.ApplicationContext;
 /**
  * This class decorates and aggregates all the notification service providers. It also provides
  * caching via EHCache. Each child context (e.g. portlet) has it's own instance of this class.
+ * Cached responses of services that implement {@link IVersioned} are reused only while their
+ * version is current;  the others are reused if the service considers them valid.  Cached
+ * responses are also invalidated when the due date of one of their entries passes (see
+ * {@link ResponseInvalidationWheel}).
  */
 public final class CacheNotificationService extends AbstractNotificationService implements IRefreshable {
 
@@ -59,6 +66,7 @@ public final class CacheNotificationService extends AbstractNotificationService
     private ApplicationContext applicationContext;
     private List<INotificationService> embeddedServices;
     private Cache cache;
+    private ResponseInvalidationWheel responseInvalidationWheel;
 
     // Some portlets want to ONLY use explicit services, e.g. Emergency Alerts
     private boolean useDiscoverable = true;
@@ -87,6 +95,11 @@ public final class CacheNotificationService extends AbstractNotificationService
         this.cache = cache;
     }
 
+    @Autowired
+    public void setResponseInvalidationWheel(ResponseInvalidationWheel responseInvalidationWheel) {
+        this.responseInvalidationWheel = responseInvalidationWheel;
+    }
+
     @PostConstruct
     public void init() {
         servicesMap.clear();  // reset the Map
@@ -168,6 +181,7 @@ public final class CacheNotificationService extends AbstractNotificationService
         logger.debug("Notifications requested for user='{}' and windowId={}", username, req.getWindowID());
 
         CacheTuple tuple;  // Existing or new?
+        boolean modified = false;
         final String cacheKey = createServiceUserWindowSpecificCacheKey(req);
         final Element m = cache.get(cacheKey);
         if (m != null) {
@@ -185,12 +199,20 @@ public final class CacheNotificationService extends AbstractNotificationService
                     logger.warn("Unmatched NotificationResponse in CacheTuple;  " +
                             "service.name()='{}' and user='{}'", entry.getKey(), username);
                     tuple.getResponses().remove(entry.getKey());
+                    tuple.getVersions().remove(entry.getKey());
+                    modified = true;
                     continue;
                 }
                 // Refresh if needed
-                if (!service.isValid(req, entry.getValue())) {
-                    final NotificationResponse freshResponse = getResponseFromService(req, service);
-                    tuple.getResponses().put(entry.getKey(), freshResponse);
+                final Object version = getVersion(req, service);
+                final boolean valid = version != null
+                        ? version.equals(tuple.getVersions().get(entry.getKey()))
+                        : service.isValid(req, entry.getValue());
+                if (!valid) {
+                    logger.debug("Refreshing the response of service '{}' for user='{}'", entry.getKey(), username);
+                    final NotificationResponse freshResponse = getResponseFromService(req, service, version);
+                    tuple.put(entry.getKey(), freshResponse, version);
+                    modified = true;
                 }
             }
         } else {
@@ -200,10 +222,13 @@ public final class CacheNotificationService extends AbstractNotificationService
             // the underlying data sources, then cache what we receive
             tuple = new CacheTuple();
             for(INotificationService service : servicesMap.values()) {
-                final NotificationResponse nr = getResponseFromService(req, service);
-                tuple.getResponses().put(service.getName(), nr);
+                // Obtain the version first;  a change made in the meantime must not go unnoticed
+                final Object version = getVersion(req, service);
+                final NotificationResponse nr = getResponseFromService(req, service, version);
+                tuple.put(service.getName(), nr, version);
             }
             cache.put(new Element(cacheKey, tuple));
+            modified = true;
         }
 
         // Construct a new NotificationResponse from constituent parts...
@@ -212,6 +237,11 @@ public final class CacheNotificationService extends AbstractNotificationService
             rslt = rslt.combine(entry.getValue());
         }
 
+        if (modified) {
+            responseInvalidationWheel.schedule(Pair.of(cache.getName(), cacheKey), rslt,
+                    () -> cache.remove(cacheKey));
+        }
+
         return rslt;
 
     }
@@ -220,10 +250,17 @@ public final class CacheNotificationService extends AbstractNotificationService
      * Implementation
      */
 
-    private NotificationResponse getResponseFromService(PortletRequest req, INotificationService service) {
+    /**
+     * @param version The version of the service's response, obtained just before, or null;  the
+     * service needn't obtain it again
+     */
+    private NotificationResponse getResponseFromService(PortletRequest req, INotificationService service,
+            Object version) {
         NotificationResponse rslt;
         try {
-            rslt = service.fetch(req);
+            rslt = version != null
+                    ? ((IVersioned) service).fetch(req, version)
+                    : service.fetch(req);
         } catch (Exception e) {
             final String msg = "Failed to invoke the specified service:  " + service.getName();
             logger.error(msg, e);
@@ -232,6 +269,21 @@ public final class CacheNotificationService extends AbstractNotificationService
         return rslt;
     }
 
+    /**
+     * @return The version of the service's response, or null if it doesn't have one
+     */
+    private Object getVersion(PortletRequest req, INotificationService service) {
+        if (!IVersioned.class.isInstance(service)) {
+            return null;
+        }
+        try {
+            return ((IVersioned) service).getVersion(req);
+        } catch (Exception e) {
+            logger.warn("Failed to obtain the version of service '{}'", service.getName(), e);
+            return null;
+        }
+    }
+
     @Override
     public void refresh(HttpServletRequest request, HttpServletResponse response) {
         for (INotificationService service : this.embeddedServices) {
@@ -251,11 +303,24 @@ public final class CacheNotificationService extends AbstractNotificationService
 
         // Instance members
         private final Map<String,NotificationResponse> responses = new HashMap<>();
+        private final Map<String,Object> versions = new HashMap<>();
 
         public Map<String,NotificationResponse> getResponses() {
             return this.responses;
         }
 
+        public Map<String,Object> getVersions() {
+            return this.versions;
+        }
+
+        /**
+         * Error responses are stored without a version, so that they aren't reused.
+         */
+        public void put(String serviceName, NotificationResponse response, Object version) {
+            responses.put(serviceName, response);
+            versions.put(serviceName, response.getErrors().isEmpty() ? version : null);
+        }
+
     }
 
 }
@@ -29,8 +29,10 @@ import javax.portlet.ActionResponse;
 import javax.portlet.EventRequest;
 import javax.portlet.EventResponse;
 import javax.portlet.PortletRequest;
+import javax.servlet.http.HttpServletRequest;
 
 import org.jasig.portlet.notice.INotificationService;
+import org.jasig.portlet.notice.IVersioned;
 import org.jasig.portlet.notice.NotificationCategory;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
@@ -48,7 +50,7 @@ import org.springframework.beans.factory.annotation.Autowired;
  * @since 3.1
  * @deprecated The entire notion of Portlet API-based decorators is deprecated
  */
-public class FilteringNotificationServiceDecorator extends AbstractNotificationServiceDecorator {
+public class FilteringNotificationServiceDecorator extends AbstractNotificationServiceDecorator implements IVersioned {
 
     private static final String[] EMPTY_STRING_ARRAY = new String[0];
     private static final String PORTLET_XML_ROLE_SERVICE_ATTRIBUTE =
@@ -188,8 +190,57 @@ public class FilteringNotificationServiceDecorator extends AbstractNotificationS
 
     @Override
     public NotificationResponse fetch(PortletRequest req) {
+        return filter(req, enclosedNotificationService.fetch(req));
+    }
+
+    /**
+     * The version is that of the enclosed service (see {@link #getVersion(PortletRequest)}).
+     */
+    @Override
+    public NotificationResponse fetch(PortletRequest req, Object version) {
+        final NotificationResponse unfilteredResponse = enclosedNotificationService instanceof IVersioned
+                ? ((IVersioned) enclosedNotificationService).fetch(req, version)
+                : enclosedNotificationService.fetch(req);
+        return filter(req, unfilteredResponse);
+    }
+
+    @Override
+    public boolean isValid(PortletRequest req, NotificationResponse previousResponse) {
+        return enclosedNotificationService.isValid(req, previousResponse);
+    }
+
+    /**
+     * Decorators work only in portlets, so there is never a version for REST requests.
+     */
+    @Override
+    public NotificationResponse fetch(HttpServletRequest request, Object version) {
+        return fetch(request);
+    }
 
-        final NotificationResponse unfilteredResponse = enclosedNotificationService.fetch(req);
+    /**
+     * Decorators work only in portlets, so there is no version for REST requests;  callers fetch.
+     */
+    @Override
+    public Object getVersion(HttpServletRequest request) {
+        return null;
+    }
+
+    /**
+     * The filters come from portlet preferences, not the data, so the version is that of the
+     * enclosed service (if it has one).
+     */
+    @Override
+    public Object getVersion(PortletRequest req) {
+        return enclosedNotificationService instanceof IVersioned
+                ? ((IVersioned) enclosedNotificationService).getVersion(req)
+                : null;
+    }
+
+    /*
+     * Implementation
+     */
+
+    private NotificationResponse filter(PortletRequest req, NotificationResponse unfilteredResponse) {
 
         // Gather the filters...
         final Set<INotificationFilter> filters = new HashSet<>();
@@ -243,9 +294,4 @@ public class FilteringNotificationServiceDecorator extends AbstractNotificationS
 
     }
 
-    @Override
-    public boolean isValid(PortletRequest req, NotificationResponse previousResponse) {
-        return enclosedNotificationService.isValid(req, previousResponse);
-    }
-
 }
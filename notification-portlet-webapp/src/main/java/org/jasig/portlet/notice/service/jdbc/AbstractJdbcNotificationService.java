@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -44,13 +45,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apereo.portal.soffit.Headers;
 import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.IRefreshable;
+import org.jasig.portlet.notice.IVersioned;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.service.AbstractNotificationService;
+import org.jasig.portlet.notice.util.ResponseInvalidationWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
@@ -65,11 +70,14 @@ import static org.apereo.portal.soffit.service.AbstractJwtService.SIGNATURE_KEY_
 
 /**
  * Base class for {@link INotificationService} implementations that pull notifications from JDBC
- * data sources using common patterns.
+ * data sources using common patterns.  Responses are cached;  if the (optional)
+ * <code>versionSql</code> is specified, a cached response is used only while the result of that
+ * query is unchanged.  A cached response is discarded when the due date of one of its entries
+ * passes, since the query may select entries by due date.
  *
  * @since 3.2
  */
-public abstract class AbstractJdbcNotificationService extends AbstractNotificationService implements IRefreshable {
+public abstract class AbstractJdbcNotificationService extends AbstractNotificationService implements IRefreshable, IVersioned {
 
     @Value("${" + SIGNATURE_KEY_PROPERTY + ":" + DEFAULT_SIGNATURE_KEY + "}")
     private String signatureKey;
@@ -77,7 +85,9 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
     // These items are provided by Spring and/or the subclass
     private DataSource dataSource;
     private String sql;
+    private String versionSql;
     private Cache cache;
+    private ResponseInvalidationWheel responseInvalidationWheel;
 
     // These items are managed internally
     private NamedParameterJdbcTemplate jdbcTemplate;
@@ -94,11 +104,27 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
         this.sql = sql;
     }
 
+    /**
+     * Optional query, much cheaper than <code>sql</code>, whose result changes whenever the result
+     * of <code>sql</code> would change (e.g. <code>SELECT MAX(LAST_UPDATED) FROM ...</code>).  It
+     * receives the same parameters.
+     *
+     * @since 4.8
+     */
+    public void setVersionSql(String versionSql) {
+        this.versionSql = versionSql;
+    }
+
     @Resource(name="AbstractJdbcNotificationService.responseCache")
     public void setCache(Cache cache) {
         this.cache = cache;
     }
 
+    @Autowired
+    public void setResponseInvalidationWheel(ResponseInvalidationWheel responseInvalidationWheel) {
+        this.responseInvalidationWheel = responseInvalidationWheel;
+    }
+
     /**
      * Implementors <em>may</em> may call this method to specify parameters that must be present in
      * the {@link SqlParameterSource}.
@@ -134,9 +160,14 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
 
     @Override
     public NotificationResponse fetch(PortletRequest req) {
+        return fetch(req, getVersion(req));
+    }
+
+    @Override
+    public NotificationResponse fetch(PortletRequest req, Object version) {
 
         final String username = usernameFinder.findUsername(req);
-        return fetchFromCacheOrSupplier(username, () -> {
+        return fetchFromCacheOrSupplier(username, () -> version, () -> {
             final SqlParameterSource sqlParameterSource = getSqlParameterSource(req);
             final ResultSetExtractor<NotificationResponse> resultSetExtractor = getResultSetExtractor(req);
             return executeQuery(username, sqlParameterSource, resultSetExtractor);
@@ -146,9 +177,14 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
 
     @Override
     public NotificationResponse fetch(HttpServletRequest request) {
+        return fetch(request, getVersion(request));
+    }
+
+    @Override
+    public NotificationResponse fetch(HttpServletRequest request, Object version) {
 
         final String username = usernameFinder.findUsername(request);
-        return fetchFromCacheOrSupplier(username, () -> {
+        return fetchFromCacheOrSupplier(username, () -> version, () -> {
             final SqlParameterSource sqlParameterSource = getSqlParameterSource(request);
             final ResultSetExtractor<NotificationResponse> resultSetExtractor = getResultSetExtractor(request);
             return executeQuery(username, sqlParameterSource, resultSetExtractor);
@@ -156,6 +192,26 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
 
     }
 
+    /**
+     * @return The rows returned by <code>versionSql</code>, or null if it isn't specified
+     */
+    @Override
+    public Object getVersion(PortletRequest req) {
+        return versionSql != null
+                ? executeVersionQuery(usernameFinder.findUsername(req), getSqlParameterSource(req))
+                : null;
+    }
+
+    /**
+     * @return The rows returned by <code>versionSql</code>, or null if it isn't specified
+     */
+    @Override
+    public Object getVersion(HttpServletRequest request) {
+        return versionSql != null
+                ? executeVersionQuery(usernameFinder.findUsername(request), getSqlParameterSource(request))
+                : null;
+    }
+
     @Override
     public void refresh(HttpServletRequest request, HttpServletResponse response) {
         final String username = usernameFinder.findUsername(request);
@@ -232,22 +288,37 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
      */
 
     public NotificationResponse fetchFromCacheOrSupplier(String username, Supplier<NotificationResponse> supplier) {
+        return fetchFromCacheOrSupplier(username, () -> null, supplier);
+    }
+
+    /**
+     * @param versionSupplier Provides the current version;  a cached response obtained with a
+     * different version is not used
+     * @since 4.8
+     */
+    public NotificationResponse fetchFromCacheOrSupplier(String username, Supplier<Object> versionSupplier,
+            Supplier<NotificationResponse> supplier) {
 
         NotificationResponse rslt;
         final CacheKey cacheKey = new CacheKey(getName(), username, sql);
 
         logger.debug("cache ttl = {}", cache.getCacheConfiguration().getTimeToLiveSeconds());
+        // Obtain the version first;  a change made in the meantime must not go unnoticed
+        final Object version = versionSupplier.get();
         final Element m = cache.get(cacheKey);
-        if (m != null) {
+        final CachedResponse cached = m != null ? (CachedResponse) m.getObjectValue() : null;
+        if (cached != null && Objects.equals(version, cached.version)) {
             // Cache hit
             logger.debug("cache hit for {}", cacheKey);
-            rslt = (NotificationResponse) m.getObjectValue();
+            rslt = cached.response;
             logger.debug("Found the following response for user='{}' from cache:  {}", username, rslt);
         } else {
-            // Cache miss
+            // Cache miss (or the cached response is out of date)
             logger.debug("cache miss for {}", cacheKey);
             rslt = supplier.get();
-            cache.put(new Element(cacheKey, rslt));
+            cache.put(new Element(cacheKey, new CachedResponse(rslt, version)));
+            responseInvalidationWheel.schedule(Pair.of(cache.getName(), cacheKey), rslt,
+                    () -> cache.remove(cacheKey));
             logger.debug("Notification service '{}' generated the following response" +
                     "for user='{}':  {}", getName(), username, rslt);
         }
@@ -258,29 +329,45 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
 
     public NotificationResponse executeQuery(String username, SqlParameterSource sqlParameterSource,
             ResultSetExtractor<NotificationResponse> resultSetExtractor) {
+        return hasAllParameters(username, sqlParameterSource)
+                ? jdbcTemplate.query(sql, sqlParameterSource, resultSetExtractor)
+                : NotificationResponse.EMPTY_RESPONSE;
+    }
+
+    private Object executeVersionQuery(String username, SqlParameterSource sqlParameterSource) {
+        return hasAllParameters(username, sqlParameterSource)
+                ? jdbcTemplate.queryForList(versionSql, sqlParameterSource)
+                : Collections.emptyList();  // The response is always empty
+    }
 
-        // Do we have what we need?
-        boolean hasAllParameters = true;
+    private boolean hasAllParameters(String username, SqlParameterSource sqlParameterSource) {
         for (String parameter : requiredParameters) {
             if (!sqlParameterSource.hasValue(parameter)) {
                 logger.debug("Skipping notification service='{}' for user='{}' because " +
                                 "required parameter '{}' was not present",
                         getName(), username, parameter);
-                hasAllParameters = false;
-                break;
+                return false;
             }
         }
-
-        return hasAllParameters
-                ? jdbcTemplate.query(sql, sqlParameterSource, resultSetExtractor)
-                : NotificationResponse.EMPTY_RESPONSE;
-
+        return true;
     }
 
     /*
      * Nested Types
      */
 
+    private static final class CachedResponse implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final NotificationResponse response;
+        private final Object version;
+
+        public CachedResponse(NotificationResponse response, Object version) {
+            this.response = response;
+            this.version = version;
+        }
+    }
+
     private static final class CacheKey implements Serializable {
         private static final long serialVersionUID = 1L;
 
@@ -1,38 +0,0 @@
-/*
- * Licensed to Apereo under one or more contributor license
- * agreements. See the NOTICE file distributed with this work
- * for additional information regarding copyright ownership.
- * Apereo licenses this file to you under the Apache License,
- * Version 2.0 (the "License"); you may not use this file
- * except in compliance with the License.  You may obtain a
- * copy of the License at the following location:
- *
- *   http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing,
- * software distributed under the License is distributed on an
- * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
- * KIND, either express or implied.  See the License for the
- * specific language governing permissions and limitations
- * under the License.
- */
-package org.jasig.portlet.notice.service.jpa;
-
-import org.jasig.portlet.notice.rest.AddresseeDTO;
-
-/**
- * Post processor for Handling dozer mappings from AddresseeDTO -&gt; JpaAddressee.
- * Just ensures that the addresseeId value is set in the JPA version.
- *
- * @author Josh Helmer, jhelmer.unicon.net
- * @since 3.0
- */
-public class AddresseePostProcessor implements IMappedClassPostProcessor<JpaAddressee, AddresseeDTO> {
-
-    @Override
-    public void process(JpaAddressee mappedObject, AddresseeDTO srcObject) {
-        for (JpaRecipient recipient : mappedObject.getRecipients()) {
-            recipient.setAddressee(mappedObject);
-        }
-    }
-}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the NOTICE_EVENT table proportional to the number of live notifications (rather than the
+ * number of clicks) by periodically moving superseded events to NOTICE_EVENT_ARCHIVE.  Every
+ * reader of the transaction log (e.g. <code>prepareStates</code>, <code>HideAction</code>,
+ * <code>ReadAction</code>) only consults the first and the last occurrence of each state for an
+ * entry and user, so every event in between can be archived without changing what users see.
+ * Each run walks NOTICE_EVENT once, in order of id, examining a bounded range of ids per
+ * transaction.
+ *
+ * @since 4.8
+ */
+@Component
+/* package-private */ class EventCompactionJob {
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Value("${EventCompactionJob.enabled:false}")
+    private boolean enabled;
+
+    @Value("${EventCompactionJob.intervalMinutes:60}")
+    private long intervalMinutes;
+
+    /**
+     * Events younger than this are left in place, even if superseded.
+     */
+    @Value("${EventCompactionJob.retentionDays:30}")
+    private int retentionDays;
+
+    /**
+     * Number of consecutive event ids examined (and, at most, archived) per transaction.
+     */
+    @Value("${EventCompactionJob.batchSize:500}")
+    private int batchSize;
+
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("EventCompactionJob is disabled");
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread rslt = new Thread(runnable, "EventCompactionJob");
+            rslt.setDaemon(true);
+            return rslt;
+        });
+        executor.scheduleWithFixedDelay(this::run, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Archives superseded events (older than the retention period) among those that exist when the
+     * run starts;  events written since are too young anyway.
+     *
+     * @return The number of events archived
+     */
+    /* package-private */ long compact() {
+        final long start = System.currentTimeMillis();
+        final Timestamp olderThan = new Timestamp(start - TimeUnit.DAYS.toMillis(retentionDays));
+        final long maxId = notificationDao.getMaxEventId();
+        long rslt = 0L;
+        for (long afterId = 0L; afterId < maxId && !Thread.currentThread().isInterrupted(); afterId += batchSize) {
+            final List<Long> eventIds = notificationDao.getSupersededEventIds(afterId,
+                    Math.min(afterId + batchSize, maxId), olderThan);
+            rslt += notificationDao.archiveEvents(eventIds);
+        }
+        logger.info("Archived {} superseded events in {}ms", rslt, System.currentTimeMillis() - start);
+        return rslt;
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Must not throw:  an exception would cancel all future executions.
+     */
+    private void run() {
+        try {
+            compact();
+        } catch (Throwable t) {
+            logger.error("Failed to compact NOTICE_EVENT", t);
+        }
+    }
+
+}
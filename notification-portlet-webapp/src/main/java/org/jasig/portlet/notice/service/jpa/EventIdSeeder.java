@@ -0,0 +1,134 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.sql.DataSource;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes sure the id generator of {@link JpaEvent} starts above the ids of existing events.
+ * Before version 4.8, events drew their ids from <code>hibernate_sequence</code>;  the dedicated
+ * generator of a database upgraded from such a version would otherwise start at 1 and collide
+ * with them.  It runs at startup, before the DAO becomes available, and only ever raises the
+ * value of the generator;  once the generator is ahead of the table it does nothing (other than
+ * use up one block of ids, if the generator is a sequence).  A sequence is raised by stepping it
+ * once with a larger increment, which is not safe while other nodes are inserting events;  that is
+ * only necessary on the first start after an upgrade, for which every node is stopped anyway.
+ *
+ * @since 4.8
+ */
+@Component("eventIdSeeder")
+/* package-private */ class EventIdSeeder {
+
+    private static final String EVENT_TABLE = JpaNotificationService.TABLENAME_PREFIX + "EVENT";
+    private static final String ARCHIVE_TABLE = JpaNotificationService.TABLENAME_PREFIX + "EVENT_ARCHIVE";
+
+    @Autowired
+    private DataSource dataSource;
+
+    /*
+     * The schema must be up to date first;  the generator and the dialect come from here.
+     */
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        seed();
+    }
+
+    /**
+     * @return The lowest id the generator may now provide
+     */
+    /* package-private */ long seed() {
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // Archived events keep their original ids
+        final long required = Math.max(getMaxId(jdbcTemplate, EVENT_TABLE), getMaxId(jdbcTemplate, ARCHIVE_TABLE)) + 1L;
+
+        final SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        final SequenceStyleGenerator generator = (SequenceStyleGenerator)
+                sessionFactory.getIdentifierGenerator(JpaEvent.class.getName());
+        final DatabaseStructure structure = generator.getDatabaseStructure();
+        return structure.isPhysicalSequence()
+                ? seedSequence(jdbcTemplate, sessionFactory.getJdbcServices().getDialect(), structure, required)
+                : seedTable(jdbcTemplate, structure, required);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private long getMaxId(JdbcTemplate jdbcTemplate, String table) {
+        final Long rslt = jdbcTemplate.queryForObject("SELECT MAX(ID) FROM " + table, Long.class);
+        return rslt != null ? rslt : 0L;
+    }
+
+    /**
+     * Reading a sequence means advancing it, so this method uses up the block of ids it reads.
+     */
+    private long seedSequence(JdbcTemplate jdbcTemplate, Dialect dialect, DatabaseStructure structure, long required) {
+        final String name = structure.getName();
+        final String nextValue = dialect.getSequenceNextValString(name);
+        final int incrementSize = structure.getIncrementSize();
+
+        // With the pooled-lo optimizer, each value is the first id of a block
+        final long current = jdbcTemplate.queryForObject(nextValue, Long.class) + incrementSize;
+        if (current >= required) {
+            // Already ahead
+            return current;
+        }
+
+        // Step once by the difference, then go back to the usual increment
+        jdbcTemplate.execute("ALTER SEQUENCE " + name + " INCREMENT BY " + (required - current));
+        try {
+            jdbcTemplate.queryForObject(nextValue, Long.class);
+        } finally {
+            jdbcTemplate.execute("ALTER SEQUENCE " + name + " INCREMENT BY " + incrementSize);
+        }
+        logger.info("Moved the id generator of {} to {}", EVENT_TABLE, required);
+        return required;
+    }
+
+    private long seedTable(JdbcTemplate jdbcTemplate, DatabaseStructure structure, long required) {
+        final String table = structure.getName();
+        if (jdbcTemplate.update("UPDATE " + table + " SET " + JpaEvent.ID_VALUE_COLUMN + " = ?"
+                + " WHERE " + JpaEvent.ID_VALUE_COLUMN + " < ?", required, required) != 0) {
+            logger.info("Moved the id generator of {} to {}", EVENT_TABLE, required);
+            return required;
+        }
+        // Already ahead
+        return jdbcTemplate.queryForObject("SELECT " + JpaEvent.ID_VALUE_COLUMN + " FROM " + table, Long.class);
+    }
+
+}
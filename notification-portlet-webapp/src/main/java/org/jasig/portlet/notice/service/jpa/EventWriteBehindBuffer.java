@@ -0,0 +1,461 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional write-behind for events that record user actions (READ, SNOOZED, etc.).  When enabled,
+ * these events are accepted into a bounded in-memory buffer and written by a background thread in
+ * JDBC batches, rather than in one small transaction per click on the request thread.  Readers of
+ * the transaction log obtain it through {@link #getEvents(long, String)}, which overlays pending
+ * events on the persistent ones so that users always see their own actions.
+ *
+ * <p>Durability policy:  when the buffer is full, new events are written synchronously;  events
+ * that fail to be written stay in the buffer (and visible to readers), and are retried with
+ * exponential backoff, up to <code>maxRetryDelayMillis</code> apart, until they succeed;  the
+ * only events ever discarded are those whose notification no longer exists.  The capacity
+ * applies only to accepting new events.  Pending events are written before the application shuts
+ * down;  events pending when the JVM <em>crashes</em> are lost, so
+ * <code>flushIntervalMillis</code> bounds the exposure.
+ *
+ * <p>The overlay is local to this node:  other nodes of a cluster see pending events only once
+ * they are written (normally within <code>flushIntervalMillis</code>).  Until then, a user whose
+ * requests go to another node may not see their latest actions.
+ *
+ * <p>Events recorded within {@link #batch(Runnable)} are held by the calling thread until the
+ * operation completes, then accepted (or written, in one transaction) together.
+ *
+ * @since 4.8
+ */
+@Component
+/* package-private */ class EventWriteBehindBuffer {
+
+    private static final Comparator<JpaEvent> CHRONOLOGICAL = Comparator.comparing(JpaEvent::getTimestamp,
+            Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Value("${EventWriteBehindBuffer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${EventWriteBehindBuffer.capacity:10000}")
+    private int capacity;
+
+    @Value("${EventWriteBehindBuffer.flushIntervalMillis:250}")
+    private long flushIntervalMillis;
+
+    /**
+     * Maximum number of events written per transaction.
+     */
+    @Value("${EventWriteBehindBuffer.batchSize:500}")
+    private int batchSize;
+
+    /**
+     * Longest delay between attempts to write an event that failed.
+     */
+    @Value("${EventWriteBehindBuffer.maxRetryDelayMillis:60000}")
+    private long maxRetryDelayMillis;
+
+    /*
+     * Pending events in the order received, plus an index by (entryId, username) for readers.
+     * Guarded by 'this'.
+     */
+    private final Deque<JpaEvent> queue = new ArrayDeque<>();
+    private final Map<Pair<Long,String>,List<JpaEvent>> index = new HashMap<>();
+
+    /*
+     * Events that failed to be written, in the order they failed.  They remain in the index, and
+     * count toward the capacity, until written.  Guarded by 'this'.
+     */
+    private final Deque<FailedEvent> failed = new ArrayDeque<>();
+
+    /*
+     * Users who have pending events;  see getVersion().  Guarded by 'this'.
+     */
+    private final Map<String,PendingEvents> pendingByUser = new HashMap<>();
+    private long sequence;
+
+    private ScheduledExecutorService executor;
+
+    /*
+     * Events recorded by the current thread within batch(), if any.
+     */
+    private final ThreadLocal<List<JpaEvent>> batch = new ThreadLocal<>();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread rslt = new Thread(runnable, "EventWriteBehindBuffer");
+            rslt.setDaemon(true);
+            return rslt;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        logger.info("Event write-behind is enabled with capacity={} and flushIntervalMillis={}",
+                capacity, flushIntervalMillis);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(flushIntervalMillis * 10L, TimeUnit.MILLISECONDS);
+            // Write whatever remains on this thread, including events awaiting a retry
+            flush(true);
+            final int lost = size();
+            if (lost != 0) {
+                logger.error("Shutting down with {} unwritten events", lost);
+            }
+        }
+    }
+
+    /**
+     * Records an event, either by adding it to the buffer (if enabled and not full) or by writing
+     * it immediately.  The entry of the event need only carry its id.
+     */
+    public void add(JpaEvent event) {
+        final List<JpaEvent> batched = batch.get();
+        if (batched != null) {
+            batched.add(event);
+            return;
+        }
+        if (!offer(event)) {
+            createEvents(Collections.singletonList(event));
+        }
+    }
+
+    /**
+     * Runs the operation, holding the events it records (on this thread) until it completes.
+     * Then they enter the buffer, and those that don't fit are written in a single transaction.
+     * Events are recorded even if the operation fails part way.  In the meantime they are visible
+     * to {@link #getEvents(long, String)} on this thread only.  Nested calls join the outer batch.
+     */
+    public void batch(Runnable operation) {
+        if (batch.get() != null) {
+            operation.run();
+            return;
+        }
+        final List<JpaEvent> batched = new ArrayList<>();
+        batch.set(batched);
+        try {
+            operation.run();
+        } finally {
+            batch.remove();
+            final List<JpaEvent> overflow = new ArrayList<>();
+            for (JpaEvent event : batched) {
+                if (!offer(event)) {
+                    overflow.add(event);
+                }
+            }
+            if (!overflow.isEmpty()) {
+                createEvents(overflow);
+            }
+            logger.debug("Recorded a batch of {} events;  {} written immediately", batched.size(), overflow.size());
+        }
+    }
+
+    /**
+     * Provides the transaction log for a notification and a single recipient, including pending
+     * events, <strong>in chronological order</strong>.
+     */
+    public List<JpaEvent> getEvents(long entryId, String username) {
+        if (!enabled && batch.get() == null) {
+            return notificationDao.getEvents(entryId, username);
+        }
+
+        /*
+         * Events leave the buffer only after they are committed, so reading the buffer first
+         * guarantees that every event appears at least once.  An event that was committed in the
+         * meantime will appear twice;  remove the copy from the buffer.
+         */
+        final List<JpaEvent> pending = getPending(entryId, username);
+        final List<JpaEvent> persisted = notificationDao.getEvents(entryId, username);
+        if (pending.isEmpty()) {
+            return persisted;
+        }
+        final List<JpaEvent> rslt = new ArrayList<>(persisted);
+        pending.stream()
+                .filter(p -> persisted.stream().noneMatch(e -> isSameEvent(e, p)))
+                .forEach(rslt::add);
+        rslt.sort(CHRONOLOGICAL);
+        return rslt;
+    }
+
+    /**
+     * Provides a number that changes whenever an event for the specified user enters the buffer,
+     * for use (along with the {@link JpaUserVersion} of the user) as a version.  It is zero (0)
+     * when the user has no pending events;  events leave the buffer only after they are
+     * committed, which increments the persistent version.
+     */
+    public synchronized long getVersion(String username) {
+        final PendingEvents pending = pendingByUser.get(username);
+        return pending != null ? pending.sequence : 0L;
+    }
+
+    /*
+     * Implementation
+     */
+
+    private synchronized boolean offer(JpaEvent event) {
+        if (!enabled || queue.size() + failed.size() >= capacity) {
+            return false;
+        }
+        queue.add(event);
+        index.computeIfAbsent(keyOf(event), k -> new ArrayList<>()).add(event);
+        final PendingEvents pending = pendingByUser.computeIfAbsent(event.getUsername(), k -> new PendingEvents());
+        pending.sequence = ++sequence;
+        ++pending.count;
+        return true;
+    }
+
+    private synchronized List<JpaEvent> getPending(long entryId, String username) {
+        final List<JpaEvent> indexed = index.get(Pair.of(entryId, username));
+        final List<JpaEvent> rslt = indexed != null ? new ArrayList<>(indexed) : new ArrayList<>();
+        final List<JpaEvent> batched = batch.get();
+        if (batched != null) {
+            final Pair<Long,String> key = Pair.of(entryId, username);
+            batched.stream()
+                    .filter(event -> key.equals(keyOf(event)))
+                    .forEach(rslt::add);
+        }
+        return rslt;
+    }
+
+    /**
+     * Creates any new users first, outside the transaction that writes the events;  see
+     * {@link INotificationDao#createMissingUsers(java.util.Collection)}.
+     */
+    private void createEvents(List<JpaEvent> events) {
+        final List<String> usernames = new ArrayList<>(events.size());
+        events.forEach(event -> usernames.add(event.getUsername()));
+        notificationDao.createMissingUsers(usernames);
+        notificationDao.createEvents(events);
+    }
+
+    private synchronized List<JpaEvent> peek() {
+        final List<JpaEvent> rslt = new ArrayList<>(Math.min(queue.size(), batchSize));
+        for (JpaEvent event : queue) {
+            if (rslt.size() == batchSize) {
+                break;
+            }
+            rslt.add(event);
+        }
+        return rslt;
+    }
+
+    /**
+     * Removes the specified events from the head of the queue;  those that failed move to the
+     * list of failed events.
+     */
+    private synchronized void remove(List<JpaEvent> events, List<JpaEvent> failures) {
+        final long now = System.currentTimeMillis();
+        for (JpaEvent event : events) {
+            queue.removeFirst();  // Only the writer removes, and always from the head
+            if (failures.contains(event)) {
+                failed.add(new FailedEvent(event, now + flushIntervalMillis));
+            } else {
+                unindex(event);
+            }
+        }
+    }
+
+    /**
+     * @return The failed events that are due for another attempt (or all of them, if forced)
+     */
+    private synchronized List<FailedEvent> getDue(long now, boolean force) {
+        final List<FailedEvent> rslt = new ArrayList<>();
+        for (FailedEvent failure : failed) {
+            if (force || failure.nextAttempt <= now) {
+                rslt.add(failure);
+            }
+        }
+        return rslt;
+    }
+
+    private synchronized void retried(FailedEvent failure, boolean done, long now) {
+        if (done) {
+            failed.remove(failure);
+            unindex(failure.event);
+        } else {
+            ++failure.attempts;
+            final long delay = flushIntervalMillis << Math.min(failure.attempts, 20);
+            failure.nextAttempt = now + Math.min(delay, maxRetryDelayMillis);
+        }
+    }
+
+    private synchronized void unindex(JpaEvent event) {
+        final Pair<Long,String> key = keyOf(event);
+        final List<JpaEvent> list = index.get(key);
+        list.remove(event);
+        if (list.isEmpty()) {
+            index.remove(key);
+        }
+        final PendingEvents pending = pendingByUser.get(event.getUsername());
+        if (--pending.count == 0) {
+            pendingByUser.remove(event.getUsername());
+        }
+    }
+
+    /* package-private */ synchronized int size() {
+        return queue.size() + failed.size();
+    }
+
+    /**
+     * Runs on a schedule.
+     */
+    /* package-private */ void flush() {
+        flush(false);
+    }
+
+    /**
+     * Retries the failed events that are due (or all of them, if forced), then writes pending
+     * events in batches until the queue is empty.  Must not throw:  an exception would cancel all
+     * future executions.
+     */
+    private void flush(boolean force) {
+        try {
+            final long now = System.currentTimeMillis();
+            for (FailedEvent failure : getDue(now, force)) {
+                retried(failure, writeOne(failure.event), now);
+            }
+            for (List<JpaEvent> batch = peek(); !batch.isEmpty(); batch = peek()) {
+                remove(batch, write(batch));
+            }
+        } catch (Throwable t) {
+            logger.error("Failed to write pending events", t);
+        }
+    }
+
+    /**
+     * @return The events that failed, and should be retried
+     */
+    private List<JpaEvent> write(List<JpaEvent> batch) {
+        try {
+            createEvents(batch);
+            logger.debug("Wrote {} pending events", batch.size());
+            return Collections.emptyList();
+        } catch (Exception e) {
+            /*
+             * Perhaps one bad event (e.g. for an entry that no longer exists);  fall back to
+             * writing them one at a time so that the others aren't held up.
+             */
+            logger.warn("Failed to write a batch of {} events;  writing them individually", batch.size(), e);
+            final List<JpaEvent> rslt = new ArrayList<>();
+            for (JpaEvent event : batch) {
+                if (!writeOne(event)) {
+                    rslt.add(event);
+                }
+            }
+            return rslt;
+        }
+    }
+
+    /**
+     * @return Whether the event is done with:  either written, or discarded because its
+     * notification no longer exists
+     */
+    private boolean writeOne(JpaEvent event) {
+        try {
+            createEvents(Collections.singletonList(event));
+            return true;
+        } catch (Exception e) {
+            if (isEntryRemoved(event)) {
+                logger.warn("Discarding event for a notification that no longer exists:  entryId={}, "
+                        + "username={}, state={}", event.getEntry().getId(), event.getUsername(), event.getState());
+                return true;
+            }
+            logger.error("Failed to write event;  will retry:  entryId={}, username={}, state={}, cause={}",
+                    event.getEntry().getId(), event.getUsername(), event.getState(), e.toString());
+            logger.debug("Failed to write event", e);
+            return false;
+        }
+    }
+
+    private boolean isEntryRemoved(JpaEvent event) {
+        try {
+            return notificationDao.getEntry(event.getEntry().getId()) == null;
+        } catch (Exception e) {
+            // Perhaps the database is unavailable;  assume it isn't
+            logger.debug("Failed to look up entryId={}", event.getEntry().getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Compares timestamps to the second, since some databases don't store fractional seconds.
+     */
+    private static boolean isSameEvent(JpaEvent persisted, JpaEvent pending) {
+        return persisted.getState().equals(pending.getState())
+                && persisted.getTimestamp() != null && pending.getTimestamp() != null
+                && persisted.getTimestamp().getTime() / 1000L == pending.getTimestamp().getTime() / 1000L;
+    }
+
+    private static Pair<Long,String> keyOf(JpaEvent event) {
+        return Pair.of(event.getEntry().getId(), event.getUsername());
+    }
+
+    /*
+     * Nested Types
+     */
+
+    private static final class PendingEvents {
+        private long sequence;  // Of the latest
+        private int count;
+    }
+
+    private static final class FailedEvent {
+        private final JpaEvent event;
+        private int attempts = 1;
+        private long nextAttempt;
+
+        private FailedEvent(JpaEvent event, long nextAttempt) {
+            this.event = event;
+            this.nextAttempt = nextAttempt;
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.FanOutStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Issues notifications to the members of GROUP addressees in the background.  Each group
+ * recipient is represented by a {@link JpaFanOutTask};  workers claim tasks (using optimistic
+ * locking, so several nodes may share the queue), page through group membership with the
+ * {@link IGroupMembershipResolver}, and write ISSUED events one chunk per transaction.  Progress
+ * is recorded with each chunk, so a task abandoned part-way through (e.g. by a restart) is resumed
+ * where it left off once it goes stale.
+ *
+ * <p>The worker does nothing if there is no <code>IGroupMembershipResolver</code> bean.
+ *
+ * @since 4.8
+ */
+@Component
+/* package-private */ class GroupFanOutWorker {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Autowired(required = false)
+    private IGroupMembershipResolver groupMembershipResolver;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${GroupFanOutWorker.poolSize:2}")
+    private int poolSize;
+
+    @Value("${GroupFanOutWorker.pollIntervalSeconds:10}")
+    private long pollIntervalSeconds;
+
+    /**
+     * Number of group members resolved (and events written) per transaction.
+     */
+    @Value("${GroupFanOutWorker.chunkSize:1000}")
+    private int chunkSize;
+
+    /**
+     * IN_PROGRESS tasks that have not been updated for this long are considered abandoned.
+     */
+    @Value("${GroupFanOutWorker.staleTaskMinutes:15}")
+    private long staleTaskMinutes;
+
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        if (groupMembershipResolver == null) {
+            logger.info("No IGroupMembershipResolver is configured;  notifications addressed "
+                    + "to groups will be queued but not issued");
+            return;
+        }
+
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(poolSize, runnable -> {
+            final Thread rslt = new Thread(runnable,
+                    "GroupFanOutWorker-" + threadCount.incrementAndGet());
+            rslt.setDaemon(true);
+            return rslt;
+        });
+        for (int i = 0; i < poolSize; i++) {
+            // Stagger the workers so they don't compete for the same task
+            executor.scheduleWithFixedDelay(this::processTasks,
+                    pollIntervalSeconds + i, pollIntervalSeconds, TimeUnit.SECONDS);
+        }
+        logger.info("Started {} GroupFanOutWorker thread(s) with chunkSize={}", poolSize, chunkSize);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Works tasks until there are none left.  Must not throw:  an exception would cancel all
+     * future executions.  Any failure other than losing a task to another worker (e.g. a lost
+     * connection) ends the run, so the worker waits for the next poll instead of spinning.
+     */
+    private void processTasks() {
+        try {
+            for (;;) {
+                final JpaFanOutTask task;
+                try {
+                    task = claimNextTask();
+                } catch (ConcurrencyFailureException | OptimisticLockException | PessimisticLockException e) {
+                    logger.debug("Another worker claimed the task first;  trying again", e);
+                    continue;
+                }
+                if (task == null || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                process(task);
+            }
+        } catch (Throwable t) {
+            logger.error("Failed to process fan-out tasks", t);
+        }
+    }
+
+    private JpaFanOutTask claimNextTask() {
+        final Timestamp staleBefore = new Timestamp(System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(staleTaskMinutes));
+        return transactionTemplate.execute(status -> {
+            final JpaFanOutTask task = notificationDao.getNextFanOutTask(staleBefore);
+            if (task == null) {
+                return null;
+            }
+            if (FanOutStatus.IN_PROGRESS.equals(task.getStatus())) {
+                logger.warn("Resuming abandoned fan-out task at offset {}:  {}",
+                        task.getProcessedCount(), task);
+            }
+            task.setStatus(FanOutStatus.IN_PROGRESS);
+            task.setUpdated(new Timestamp(System.currentTimeMillis()));
+            return notificationDao.createOrUpdateFanOutTask(task);
+        });
+    }
+
+    private void process(JpaFanOutTask task) {
+        logger.debug("Processing fan-out task:  {}", task);
+        try {
+            boolean done = false;
+            while (!done) {
+                final List<String> members = groupMembershipResolver.getMembers(
+                        task.getGroupName(), task.getProcessedCount(), chunkSize);
+                done = members.size() < chunkSize;
+                task = writeChunk(task, members, done);
+            }
+            logger.info("Completed fan-out task:  {}", task);
+        } catch (Exception e) {
+            logger.error("Failed to complete fan-out task:  {}", task, e);
+            fail(task, e);
+        }
+    }
+
+    /**
+     * Writes ISSUED events for one chunk of members and records progress in the same transaction.
+     */
+    private JpaFanOutTask writeChunk(JpaFanOutTask task, List<String> members, boolean done) {
+        // Before the transaction, so that a race to create the same user can't roll it back
+        notificationDao.createMissingUsers(members);
+        return transactionTemplate.execute(status -> {
+            /*
+             * Skip members who already have the notification:  direct recipients who are also
+             * members, members of several of its groups, or a chunk written before a restart.
+             */
+            final List<String> recipients = new ArrayList<>(members);
+            if (!members.isEmpty()) {
+                recipients.removeAll(notificationDao.getUsernamesWithEvent(task.getEntryId(), members,
+                        NotificationState.ISSUED));
+            }
+            if (!recipients.isEmpty()) {
+                // Use the creation time of the task for all events
+                final int created = notificationDao.createEvents(task.getEntryId(), recipients,
+                        NotificationState.ISSUED, task.getCreated());
+                task.setEventCount(task.getEventCount() + created);
+            }
+            task.setProcessedCount(task.getProcessedCount() + members.size());
+            if (done) {
+                task.setStatus(FanOutStatus.COMPLETED);
+            }
+            task.setUpdated(new Timestamp(System.currentTimeMillis()));
+            return notificationDao.createOrUpdateFanOutTask(task);
+        });
+    }
+
+    private void fail(JpaFanOutTask task, Exception cause) {
+        try {
+            transactionTemplate.execute(status -> {
+                // Reload;  the failed transaction may have left our copy out of date
+                final JpaFanOutTask current = notificationDao.getFanOutTask(task.getId());
+                current.setStatus(FanOutStatus.FAILED);
+                current.setLastError(StringUtils.abbreviate(String.valueOf(cause), MAX_ERROR_LENGTH));
+                current.setUpdated(new Timestamp(System.currentTimeMillis()));
+                return notificationDao.createOrUpdateFanOutTask(current);
+            });
+        } catch (Exception e) {
+            logger.error("Failed to record the failure of fan-out task:  {}", task, e);
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.List;
+
+/**
+ * Strategy for discovering the members of a group.  Notifications addressed to a GROUP are issued
+ * to individual users asynchronously (see {@link GroupFanOutWorker}) using the
+ * <code>IGroupMembershipResolver</code> bean in the application context, if there is one.  If
+ * there isn't, group addressees are queued but not processed.
+ *
+ * @since 4.8
+ */
+public interface IGroupMembershipResolver {
+
+    /**
+     * Provides one page of the usernames of members of the specified group.  Implementations must
+     * return members in a stable order so that paging (and resuming after a failure) is reliable.
+     *
+     * @param groupName Identifies the group
+     * @param offset Number of members to skip
+     * @param limit Maximum number of usernames to return
+     * @return Usernames of group members;  fewer than <code>limit</code> (possibly none) means there
+     * are no more members
+     */
+    List<String> getMembers(String groupName, long offset, int limit);
+
+}
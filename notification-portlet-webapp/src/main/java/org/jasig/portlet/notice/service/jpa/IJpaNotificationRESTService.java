@@ -20,8 +20,10 @@ package org.jasig.portlet.notice.service.jpa;
 
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.BulkResultDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.FanOutDTO;
 
 import java.util.List;
 import java.util.Set;
@@ -44,6 +46,14 @@ public interface IJpaNotificationRESTService {
      */
     EntryDTO getNotification(NotificationEntry entry, boolean full);
 
+    /**
+     * Get the body of a notification.  Notifications are loaded without their bodies, so the
+     * {@link EntryDTO} objects returned by the getters of this service carry only the summary.
+     *
+     * @since 4.8
+     */
+    String getBody(long id);
+
     /**
      * Get a paged list of all notifications in the data source.
      *
@@ -60,6 +70,42 @@ public interface IJpaNotificationRESTService {
      */
     List<EntryDTO> getNotificationsBySourceAndCustomAttribute(String source, String attributeName, String attributeValue);
 
+    /**
+     * Get the JPA-side "proxy" that tracks state for a notification from another data source.
+     *
+     * @param source identifies the feature that uses proxies
+     * @param externalId the id of the notification in its own data source
+     * @return the proxy, if one exists, else null
+     * @since 4.8
+     */
+    EntryDTO getProxyNotification(String source, String externalId);
+
+    /**
+     * Get the JPA-side "proxy" for a notification from another data source, creating it (from the
+     * specified template) if it doesn't exist yet.  Safe to call concurrently:  there is never
+     * more than one proxy for the same source and external id.
+     *
+     * @param source identifies the feature that uses proxies
+     * @param externalId the id of the notification in its own data source
+     * @param template the proxy to create, if necessary.  Should *NOT* contain a populated id field.
+     * @return the existing or newly created proxy
+     * @since 4.8
+     */
+    EntryDTO getOrCreateProxyNotification(String source, String externalId, EntryDTO template);
+
+    /**
+     * Maps proxies created before v4.8, which are identified only by the value of a custom
+     * attribute.  The events of duplicate proxies (for the same external id) are merged into the
+     * mapped proxy, and the duplicates are removed.  Works in batches, one transaction per batch,
+     * and records its completion in the database;  later invocations (on any node) do nothing.
+     *
+     * @param source identifies the feature that uses proxies
+     * @param idAttributeName the attribute that holds the external id
+     * @return the number of proxies mapped
+     * @since 4.8
+     */
+    int mapLegacyProxyNotifications(String source, String idAttributeName);
+
     /**
      * Create a notification.
      *
@@ -68,6 +114,18 @@ public interface IJpaNotificationRESTService {
      */
     EntryDTO createNotification(EntryDTO notification);
 
+    /**
+     * Create several notifications in one operation.  This method is intended for notifications
+     * with very large audiences:  ISSUED events are written in JDBC batches, and the work is
+     * committed in chunks (rather than in one long transaction).  Consequently a failure part-way
+     * through leaves the chunks that were already committed in place.
+     *
+     * @param notifications the notification objects.  Should *NOT* contain populated id fields.
+     * @return A summary of the operation, including ids and throughput
+     * @since 4.8
+     */
+    BulkResultDTO createNotifications(List<EntryDTO> notifications);
+
     /**
      * Get the List addressees for a notification.
      *
@@ -125,4 +183,35 @@ public interface IJpaNotificationRESTService {
      */
     EventDTO createEvent(long notificationId, EventDTO event);
 
+    /**
+     * Record an event that represents a user action.  Unlike
+     * {@link #createEvent(long, EventDTO)}, the event may be written asynchronously (if
+     * write-behind is enabled);  it is visible in
+     * {@link #getEventsByNotificationAndUser(long, String)} immediately either way.
+     *
+     * @param notificationId the notification id
+     * @param event the event to record.  Should *NOT* contain an id.
+     * @since 4.8
+     */
+    void recordEvent(long notificationId, EventDTO event);
+
+    /**
+     * Run an operation that records several events (e.g. one per notification the user selected),
+     * and write them together:  events recorded with {@link #recordEvent(long, EventDTO)} by the
+     * operation (on the current thread) are written in one batch when it completes.
+     *
+     * @param operation Records events
+     * @since 4.8
+     */
+    void recordEvents(Runnable operation);
+
+    /**
+     * Get the progress of issuing a notification to the members of its GROUP addressees.
+     *
+     * @param notificationId the notification id
+     * @return one item per group recipient
+     * @since 4.8
+     */
+    List<FanOutDTO> getFanOuts(long notificationId);
+
 }
@@ -21,6 +21,7 @@ package org.jasig.portlet.notice.service.jpa;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.FanOutDTO;
 import org.jasig.portlet.notice.rest.RecipientDTO;
 
 import java.util.List;
@@ -51,4 +52,9 @@ public interface INotificationDTOMapper {
     List<JpaEvent> toJpaEventList(List<EventDTO> events);
     EventDTO toEvent(JpaEvent event);
     JpaEvent toJpaEvent(EventDTO event);
+
+    /**
+     * @since 4.8
+     */
+    List<FanOutDTO> toFanOutList(List<JpaFanOutTask> tasks);
 }
@@ -18,7 +18,10 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jasig.portlet.notice.NotificationState;
@@ -50,8 +53,26 @@ import org.jasig.portlet.notice.NotificationState;
      */
     JpaEntry getFullEntry(long entryId);
 
+    /**
+     * Also stores the body of the entry (see {@link JpaEntryBody}) and generates its summary.
+     */
     JpaEntry createOrUpdateEntry(JpaEntry entry);
 
+    /**
+     * Entries are loaded without their bodies;  this method provides the body of one entry.
+     *
+     * @since 4.8
+     */
+    String getBody(long entryId);
+
+    /**
+     * Provides the bodies of the specified entries, by entry id.  The body of an entry that has
+     * none is null.
+     *
+     * @since 4.8
+     */
+    Map<Long,String> getBodies(Collection<Long> entryIds);
+
     List<JpaEntry> list(Integer page, Integer pageSize);
 
     List<JpaEntry> getNotificationsBySourceAndCustomAttribute(String source, String attributeName, String attributeValue);
@@ -60,6 +81,18 @@ import org.jasig.portlet.notice.NotificationState;
 
     Set<JpaEntry> getEntriesByRecipient(String username);
 
+    /**
+     * Counts the entries that {@link #getEntriesByRecipient(String)} would return (less those
+     * without a title), without loading them.
+     *
+     * @param minPriority Exclude entries with a higher priority number, or null
+     * @param maxPriority Exclude entries with a lower priority number, or null
+     * @param read Count only entries with (true) or without (false) a READ event for the user, or
+     * null for both
+     * @since 4.8
+     */
+    int countEntriesByRecipient(String username, Integer minPriority, Integer maxPriority, Boolean read);
+
     Set<JpaEntry> getEntriesByRecipientByStatus(String username, 
             Set<NotificationState> include, Set<NotificationState> exclude);
 
@@ -76,5 +109,154 @@ import org.jasig.portlet.notice.NotificationState;
 
     JpaEvent createOrUpdateEvent(JpaEvent event);
 
+    /**
+     * Inserts one event (in the specified state) for each of the specified users.  Unlike
+     * {@link #createOrUpdateEvent(JpaEvent)}, this method does not look up the entry or flush
+     * after each row;  inserts are sent to the database in JDBC batches.
+     *
+     * @return The number of events created
+     */
+    int createEvents(long entryId, Collection<String> usernames, NotificationState state, Timestamp timestamp);
+
+    /**
+     * Inserts the specified events in JDBC batches.  The entry of each event need only carry its
+     * id.  The arguments are not modified (copies are persisted), so they may be passed again if
+     * the transaction fails.
+     *
+     * @return The number of events created
+     * @since 4.8
+     */
+    int createEvents(List<JpaEvent> events);
+
+    /**
+     * Creates those of the specified users that don't exist yet, in transactions of their own
+     * (REQUIRES_NEW), and retries when another transaction creates some of the same users at
+     * once.  Methods that reference users (e.g. <code>createEvents</code>) create missing users in
+     * the caller's transaction, where such a race fails the whole transaction;  callers that may
+     * introduce new users invoke this method first, <em>before</em> they begin a transaction (a
+     * nested one would need a second pooled connection while the caller holds one).
+     *
+     * @since 4.8
+     */
+    void createMissingUsers(Collection<String> usernames);
+
+    /**
+     * Provides those of the specified users who have at least one event in the specified state for
+     * the specified entry.
+     *
+     * @since 4.8
+     */
+    Set<String> getUsernamesWithEvent(long entryId, Collection<String> usernames, NotificationState state);
+
     JpaEvent getEvent(long eventId);
+
+    /**
+     * Provides the username of every user who has at least one event for a notification other than
+     * a proxy, i.e. every user for whom {@link #getEntriesByRecipient(String)} is not empty.
+     *
+     * @since 4.8
+     */
+    List<String> getRecipients();
+
+    /**
+     * Provides the change counter of the specified user (see {@link JpaUserVersion}), which is
+     * incremented by every write that affects the user's notifications.  Users who have never
+     * received a notification have version zero (0).
+     *
+     * @return The version, or null if it can't be determined
+     * @since 4.8
+     */
+    Long getUserVersion(String username);
+
+    /**
+     * Provides the change counters (see {@link #getUserVersion(String)}) of several users at once.
+     * Users who have never received a notification are absent from the result.
+     *
+     * @since 4.8
+     */
+    Map<String,Long> getUserVersions(Collection<String> usernames);
+
+    /**
+     * Provides the ids of events (older than the specified time) that no longer influence the
+     * state of a notification for its recipient:  events preceded <em>and</em> followed by another
+     * event of the same state for the same entry and user.  Only the first and last occurrence of
+     * each state is ever consulted.  Examines only the events with ids greater than
+     * <code>afterId</code> and up to (and including) <code>throughId</code>, so callers can walk the
+     * table one range of the primary key at a time.
+     *
+     * @since 4.8
+     */
+    List<Long> getSupersededEventIds(long afterId, long throughId, Timestamp olderThan);
+
+    /**
+     * Provides the greatest event id in NOTICE_EVENT, or zero if there are no events.
+     *
+     * @since 4.8
+     */
+    long getMaxEventId();
+
+    /**
+     * Moves the specified events from NOTICE_EVENT to NOTICE_EVENT_ARCHIVE.
+     *
+     * @return The number of events archived
+     * @since 4.8
+     */
+    int archiveEvents(Collection<Long> eventIds);
+
+    /**
+     * @since 4.8
+     */
+    JpaFanOutTask createOrUpdateFanOutTask(JpaFanOutTask task);
+
+    /**
+     * Obtains the mapping for the specified external notification, or null.
+     *
+     * @since 4.8
+     */
+    JpaProxyMapping getProxyMapping(String source, String externalId);
+
+    /**
+     * @throws org.springframework.dao.DataIntegrityViolationException If a mapping for the same
+     * source and external id already exists
+     * @since 4.8
+     */
+    JpaProxyMapping createProxyMapping(JpaProxyMapping mapping);
+
+    /**
+     * Provides up to <code>maxResults</code> entries with the specified source, and with ids
+     * greater than <code>afterId</code>, that have no {@link JpaProxyMapping}, oldest first.
+     * (Proxies created before v4.8 were identified only by a custom attribute.)
+     *
+     * @since 4.8
+     */
+    List<JpaEntry> getUnmappedProxyEntries(String source, long afterId, int maxResults);
+
+    /**
+     * Moves the events (including archived events) of one entry to another, e.g. to merge a
+     * duplicate proxy into the original.
+     *
+     * @return The number of (unarchived) events moved
+     * @since 4.8
+     */
+    int moveEvents(long fromEntryId, long toEntryId);
+
+    /**
+     * @since 4.8
+     */
+    JpaFanOutTask getFanOutTask(long taskId);
+
+    /**
+     * Provides the fan-out tasks for the specified entry, one per group recipient.
+     *
+     * @since 4.8
+     */
+    List<JpaFanOutTask> getFanOutTasks(long entryId);
+
+    /**
+     * Provides the oldest task that is ready to be worked:  either PENDING or IN_PROGRESS and not
+     * updated since the specified time (i.e. abandoned by a worker that stopped), or null.
+     *
+     * @since 4.8
+     */
+    JpaFanOutTask getNextFanOutTask(Timestamp staleBefore);
 }
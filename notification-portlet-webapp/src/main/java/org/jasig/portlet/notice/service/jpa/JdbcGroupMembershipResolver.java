@@ -0,0 +1,82 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * {@link IGroupMembershipResolver} implementation that obtains group members from a relational
+ * database using custom SQL.  The SQL must select a single (username) column and may reference
+ * the named parameters <code>:groupName</code>, <code>:offset</code>, and <code>:limit</code>.  For
+ * example (HSQLDB):
+ *
+ * <pre>
+ * SELECT USERNAME FROM GROUP_MEMBERS WHERE GROUP_NAME = :groupName
+ * ORDER BY USERNAME OFFSET :offset ROWS FETCH NEXT :limit ROWS ONLY
+ * </pre>
+ *
+ * @since 4.8
+ */
+public class JdbcGroupMembershipResolver implements IGroupMembershipResolver {
+
+    // Provided by Spring
+    private DataSource dataSource;
+    private String sql;
+
+    // Managed internally
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Required
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Required
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Override
+    public List<String> getMembers(String groupName, long offset, int limit) {
+        final MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("groupName", groupName)
+                .addValue("offset", offset)
+                .addValue("limit", limit);
+        final List<String> rslt = jdbcTemplate.queryForList(sql, params, String.class);
+        logger.debug("Found {} members of group '{}' with offset={} and limit={}",
+                rslt.size(), groupName, offset, limit);
+        return rslt;
+    }
+
+}
@@ -18,6 +18,7 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -27,6 +28,9 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Represents a behavior invocable on a notification.
  *
@@ -35,6 +39,8 @@ import javax.persistence.Table;
  */
 @Entity
 @Table(name=JpaNotificationService.TABLENAME_PREFIX + "ACTION")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 /* package-private */ class JpaAction {
 
     @Id
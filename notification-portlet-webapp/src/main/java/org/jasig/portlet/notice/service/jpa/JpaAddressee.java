@@ -34,6 +34,7 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import org.hibernate.Hibernate;
 import org.jasig.portlet.notice.rest.RecipientType;
 
 /**
@@ -111,6 +112,13 @@ import org.jasig.portlet.notice.rest.RecipientType;
         return Collections.unmodifiableSet(recipients);
     }
 
+    /**
+     * Whether the recipients (which are fetched lazily) have been loaded.
+     */
+    /* package-private */ boolean isRecipientsLoaded() {
+        return Hibernate.isInitialized(recipients);
+    }
+
     /**
      * Replaces the current recipients with the contents of the specified set.
      */
@@ -0,0 +1,112 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.jasig.portlet.notice.NotificationState;
+
+/**
+ * A row of the transaction log that has been moved out of NOTICE_EVENT by the
+ * {@link EventCompactionJob} because it no longer influences the state of the notification for
+ * the user.  Archived events retain their original ids.  They are never read by the application;
+ * the table exists for reporting and auditing.
+ *
+ * @since 4.8
+ */
+@Entity
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "EVENT_ARCHIVE")
+/* package-private */ class JpaArchivedEvent {
+
+    @Id
+    @Column(name="ID", nullable = false)
+    private long id;
+
+    /*
+     * Not a foreign key;  archived events may outlive their entries.
+     */
+    @Column(name="ENTRY_ID", nullable = false)
+    private long entryId;
+
+    @Column(name="USERNAME", nullable=false)
+    private String username;
+
+    @Column(name="TIMESTAMP", nullable=true)
+    private Timestamp timestamp;
+
+    @Column(name="STATE", nullable=false)
+    private NotificationState state;
+
+    @Column(name="ARCHIVED", nullable=false)
+    private Timestamp archived;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public void setEntryId(long entryId) {
+        this.entryId = entryId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Timestamp getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Timestamp timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public NotificationState getState() {
+        return state;
+    }
+
+    public void setState(NotificationState state) {
+        this.state = state;
+    }
+
+    public Timestamp getArchived() {
+        return archived;
+    }
+
+    public void setArchived(Timestamp archived) {
+        this.archived = archived;
+    }
+
+}
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CollectionTable;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
@@ -34,6 +35,9 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Supports open-ended metadata for notifications.  The attributes collection is
  * an associative array: String (key) to String[] (values).
@@ -42,6 +46,8 @@ import javax.persistence.Table;
  */
 @Entity
 @Table(name=JpaNotificationService.TABLENAME_PREFIX + "ATTRIBUTE")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 /* package-private */ class JpaAttribute {
 
     @Id
@@ -59,6 +65,7 @@ import javax.persistence.Table;
     @ElementCollection(fetch=FetchType.EAGER)
     @CollectionTable(name=JpaNotificationService.TABLENAME_PREFIX + "ATTRIBUTE_VALUES")
     @Column(name="VAL")
+    @Cache(usage=CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private List<String> values = new ArrayList<String>();
 
     public long getId() {
@@ -21,8 +21,11 @@ package org.jasig.portlet.notice.service.jpa;
 import java.sql.Timestamp;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -31,18 +34,28 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
-import javax.persistence.Lob;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
- * Corresponds to a {@code NotificationEntry} in the JPA flavor of notifications.
+ * Corresponds to a {@code NotificationEntry} in the JPA flavor of notifications.  Entries, with
+ * their attributes and actions, are written rarely (by administrators and integrations) and read
+ * by every user, so they are held in the Hibernate second-level cache (see ehcache.xml).  The
+ * attributes are also stored (packed) in a single column;  see {@link #getAttributeMap()}.  The
+ * body is not loaded with the entry;  see {@link JpaEntryBody}.
  * 
  * @since 3.0
  * @author drewwills
  */
 @Entity
 @Table(name=JpaNotificationService.TABLENAME_PREFIX + "ENTRY")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 /* package-private */ public class JpaEntry {
 
     @Id
@@ -74,16 +87,46 @@ import javax.persistence.Table;
     @Column(name="IMAGE")
     private String image;
 
-    @Lob
-    @Column(name="BODY")
+    @Column(name="SUMMARY", length=JpaEntryBody.SUMMARY_LENGTH)
+    private String summary;
+
+    /**
+     * Stored separately;  see {@link JpaEntryBody}.  Carries the body of a new or updated entry
+     * to the DAO, and the body of an entry that the DAO has loaded explicitly.
+     */
+    @Transient
     private String body;
 
-    @OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.ALL)
+    /**
+     * Copy of the attributes in JSON (see {@link PackedAttributes}), maintained by the DAO.  Null
+     * for entries written before version 4.8, while packing is disabled, or when the attributes
+     * don't fit.  Not a LOB, which would be read through a separate locator on most databases.
+     */
+    @Column(name="PACKED_ATTRIBUTES", length=PackedAttributes.MAX_LENGTH)
+    private String packedAttributes;
+
+    @Transient
+    private Map<String,List<String>> attributeMap;
+
+    /**
+     * Incremented by the DAO whenever the entry is updated, so that (together with the id) it
+     * identifies the content of the entry.  Null for entries not updated since version 4.8.
+     */
+    @Column(name="REVISION")
+    private Integer revision;
+
+    /**
+     * The normalized attributes, which support searching by attribute value (e.g. for proxy
+     * notifications).  Lazy because the inbox reads the packed copy.
+     */
+    @OneToMany(fetch=FetchType.LAZY, cascade=CascadeType.ALL)
     @JoinColumn(name = "ENTRY_ID")
+    @Cache(usage=CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<JpaAttribute> attributes = new HashSet<>();
 
     @OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.ALL)
     @JoinColumn(name = "ENTRY_ID")
+    @Cache(usage=CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<JpaAction> actions = new HashSet<>();
 
     @OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.ALL)
@@ -162,6 +205,22 @@ import javax.persistence.Table;
         this.image = image;
     }
 
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public int getRevision() {
+        return revision != null ? revision : 0;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
     public String getBody() {
         return body;
     }
@@ -177,12 +236,20 @@ import javax.persistence.Table;
         return Collections.unmodifiableSet(attributes);
     }
 
+    /**
+     * Whether the normalized attributes (which are fetched lazily) have been loaded.
+     */
+    /* package-private */ boolean isAttributesLoaded() {
+        return Hibernate.isInitialized(attributes);
+    }
+
     /**
      * Replaces the current attributes with the contents of the provided collection.
      */
     public void setAttributes(Set<JpaAttribute> attributes) {
         this.attributes.clear();
         this.attributes.addAll(attributes);
+        this.attributeMap = null;
     }
 
     /**
@@ -190,6 +257,30 @@ import javax.persistence.Table;
      */
     public void addAttribute(JpaAttribute attribute) {
         attributes.add(attribute);
+        attributeMap = null;
+    }
+
+    public String getPackedAttributes() {
+        return packedAttributes;
+    }
+
+    public void setPackedAttributes(String packedAttributes) {
+        this.packedAttributes = packedAttributes;
+        this.attributeMap = null;
+    }
+
+    /**
+     * Provides this notification's attributes as a read-only map of name to values.  Reads the
+     * packed copy when there is one;  otherwise the (lazy) normalized attributes must be
+     * available.
+     */
+    public Map<String,List<String>> getAttributeMap() {
+        if (attributeMap == null) {
+            attributeMap = packedAttributes != null
+                    ? PackedAttributes.unpack(packedAttributes)
+                    : Collections.unmodifiableMap(PackedAttributes.toMap(attributes));
+        }
+        return attributeMap;
     }
 
     /**
@@ -240,7 +331,8 @@ import javax.persistence.Table;
     public String toString() {
         return "JpaEntry [id=" + id + ", title=" + title + ", source=" + source + ", category=" + category + ", url="
                 + url + ", linkText=" + linkText + ", priority=" + priority + ", dueDate=" + dueDate + ", image="
-                + image + ", body=" + body + ", attributes=" + attributes + ", actions=" + actions + ", addressees="
+                + image + ", summary=" + summary + ", revision=" + revision + ", attributes="
+                + (Hibernate.isInitialized(attributes) ? attributes : packedAttributes) + ", actions=" + actions + ", addressees="
                 + addressees + "]";
     }
 
@@ -0,0 +1,138 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import com.google.common.io.ByteStreams;
+import org.jsoup.Jsoup;
+
+/**
+ * The body of a {@link JpaEntry}.  The body lives in the same table (NOTICE_ENTRY) as the rest of
+ * the entry, but {@link JpaEntry} doesn't map it, so inboxes and listings (which show the
+ * summary) don't read it and the second-level cache doesn't hold it.  Only the DAO uses this
+ * class.  A body may be stored compressed, in which case the BODY column is null.
+ *
+ * @since 4.8
+ */
+@Entity
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ENTRY")
+/* package-private */ class JpaEntryBody {
+
+    /**
+     * Size of the SUMMARY column of {@link JpaEntry}.
+     */
+    public static final int SUMMARY_LENGTH = 255;
+
+    private static final String ELLIPSIS = "\u2026";
+
+    @Id
+    @Column(name="ID", nullable = false)
+    private long entryId;
+
+    @Lob
+    @Column(name="BODY")
+    private String body;
+
+    @Lob
+    @Column(name="COMPRESSED_BODY")
+    private byte[] compressedBody;
+
+    public JpaEntryBody() {}
+
+    public JpaEntryBody(long entryId) {
+        this.entryId = entryId;
+    }
+
+    /**
+     * Plain text of the body, truncated at a word boundary to fit {@link #SUMMARY_LENGTH}.  The
+     * body is parsed as HTML:  markup, scripts and styles are removed, entities are decoded and
+     * whitespace is collapsed.
+     */
+    public static String summarize(String body) {
+        if (body == null) {
+            return null;
+        }
+        final String text = Jsoup.parse(body).body().text();
+        if (text.length() <= SUMMARY_LENGTH) {
+            return text;
+        }
+        final int space = text.lastIndexOf(' ', SUMMARY_LENGTH - ELLIPSIS.length());
+        final int end = space > 0 ? space : SUMMARY_LENGTH - ELLIPSIS.length();
+        return text.substring(0, end) + ELLIPSIS;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public String getText() {
+        if (compressedBody == null) {
+            return body;
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressedBody))) {
+            return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to decompress the body of entry id=" + entryId, ioe);
+        }
+    }
+
+    /**
+     * @param compressionThreshold Compress bodies longer than this many characters, or never if
+     * negative
+     */
+    public void setText(String text, int compressionThreshold) {
+        if (text == null || compressionThreshold < 0 || text.length() <= compressionThreshold) {
+            body = text;
+            compressedBody = null;
+            return;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to compress the body of entry id=" + entryId, ioe);
+        }
+        body = null;
+        compressedBody = bytes.toByteArray();
+    }
+
+    public boolean isCompressed() {
+        return compressedBody != null;
+    }
+
+    @Override
+    public String toString() {
+        return "JpaEntryBody [entryId=" + entryId + ", compressed=" + isCompressed() + "]";
+    }
+
+}
@@ -24,12 +24,14 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.jasig.portlet.notice.NotificationState;
 
 /**
@@ -40,11 +42,39 @@ import org.jasig.portlet.notice.NotificationState;
  * @author drewwills
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "EVENT")
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "EVENT",
+        indexes={
+                @Index(name=JpaNotificationService.TABLENAME_PREFIX + "EVENT_ENTRY_USER_IDX",
+                        columnList="ENTRY_ID, USER_ID, STATE"),
+                @Index(name=JpaNotificationService.TABLENAME_PREFIX + "EVENT_USER_IDX",
+                        columnList="USER_ID, ENTRY_ID")
+        })
 /* package-private */ class JpaEvent {
 
+    /**
+     * Events are by far the most numerous rows in the schema, and they're often inserted in large
+     * numbers (e.g. when a notification is issued to thousands of recipients).  They use a
+     * dedicated id generator with a pooled optimizer so that Hibernate only needs to visit the
+     * database for a new block of ids once every {@link JpaNotificationDao#EVENT_BATCH_SIZE}
+     * inserts.  The generator uses a native sequence where the database supports them (so it
+     * doesn't need a connection of its own) and a single-row table elsewhere;  see
+     * {@link EventIdSeeder}.
+     */
+    /* package-private */ static final String ID_GENERATOR_NAME = JpaNotificationService.TABLENAME_PREFIX + "EVENT_ID";
+    /* package-private */ static final String ID_SEQUENCE = JpaNotificationService.TABLENAME_PREFIX + "EVENT_SEQ";
+    /* package-private */ static final String ID_VALUE_COLUMN = "NEXT_VAL";
+
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(generator=ID_GENERATOR_NAME)
+    @GenericGenerator(
+            name=ID_GENERATOR_NAME,
+            strategy="org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters={
+                    @Parameter(name="sequence_name", value=ID_SEQUENCE),
+                    @Parameter(name="value_column", value=ID_VALUE_COLUMN),
+                    @Parameter(name="optimizer", value="pooled-lo"),
+                    @Parameter(name="increment_size", value="" + JpaNotificationDao.EVENT_BATCH_SIZE)
+            })
     @Column(name="ID", nullable = false)
     private long id;
 
@@ -52,8 +82,13 @@ import org.jasig.portlet.notice.NotificationState;
     @JoinColumn(name="ENTRY_ID")
     private JpaEntry entry;
 
-    @Column(name="USERNAME", nullable=false)
-    private String username;
+    /**
+     * Required, but the column is nullable so that it can be added to existing tables;  see
+     * {@link UserKeyMigration}.
+     */
+    @ManyToOne
+    @JoinColumn(name="USER_ID")
+    private JpaUser user;
 
     @Column(name="TIMESTAMP", nullable=true)
     private Timestamp timestamp;
@@ -77,12 +112,24 @@ import org.jasig.portlet.notice.NotificationState;
         this.entry = entry;
     }
 
+    public JpaUser getUser() {
+        return user;
+    }
+
+    public void setUser(JpaUser user) {
+        this.user = user;
+    }
+
     public String getUsername() {
-        return username;
+        return user != null ? user.getUsername() : null;
     }
 
+    /**
+     * Associates this event with a {@link JpaUser} that has not been saved;  the DAO replaces it
+     * with the persistent user (creating one if necessary) when it saves the event.
+     */
     public void setUsername(String username) {
-        this.username = username;
+        this.user = new JpaUser(username);
     }
 
     public Timestamp getTimestamp() {
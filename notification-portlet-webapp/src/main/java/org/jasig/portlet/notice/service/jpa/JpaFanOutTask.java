@@ -0,0 +1,182 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.jasig.portlet.notice.rest.FanOutStatus;
+
+/**
+ * Durable record of the work involved in issuing a notification to the members of one group.
+ * Records are created (in the PENDING state) when a notification with a GROUP addressee is
+ * created;  the {@link GroupFanOutWorker} claims them, resolves group membership in chunks, and
+ * tracks its progress here so that work can resume where it left off after a failure or restart.
+ *
+ * @since 4.8
+ */
+@Entity
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "FANOUT_TASK")
+/* package-private */ class JpaFanOutTask {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    @Column(name="ID", nullable = false)
+    private long id;
+
+    /**
+     * Workers claim tasks using optimistic locking.
+     */
+    @Version
+    @Column(name="VERSION", nullable = false)
+    private long version;
+
+    @Column(name="ENTRY_ID", nullable = false)
+    private long entryId;
+
+    @Column(name="ADDRESSEE_ID", nullable = false)
+    private long addresseeId;
+
+    @Column(name="GROUP_NAME", nullable = false)
+    private String groupName;
+
+    @Column(name="STATUS", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private FanOutStatus status;
+
+    @Column(name="PROCESSED_COUNT", nullable = false)
+    private long processedCount;
+
+    @Column(name="EVENT_COUNT", nullable = false)
+    private long eventCount;
+
+    @Column(name="LAST_ERROR", length = 1000)
+    private String lastError;
+
+    @Column(name="CREATED", nullable = false)
+    private Timestamp created;
+
+    @Column(name="UPDATED", nullable = false)
+    private Timestamp updated;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public void setEntryId(long entryId) {
+        this.entryId = entryId;
+    }
+
+    public long getAddresseeId() {
+        return addresseeId;
+    }
+
+    public void setAddresseeId(long addresseeId) {
+        this.addresseeId = addresseeId;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public FanOutStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(FanOutStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Number of group members processed so far;  this value is also the offset at which
+     * processing resumes.
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public void setProcessedCount(long processedCount) {
+        this.processedCount = processedCount;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Timestamp getCreated() {
+        return created;
+    }
+
+    public void setCreated(Timestamp created) {
+        this.created = created;
+    }
+
+    public Timestamp getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Timestamp updated) {
+        this.updated = updated;
+    }
+
+    @Override
+    public String toString() {
+        return "JpaFanOutTask [id=" + id + ", entryId=" + entryId + ", addresseeId=" + addresseeId
+                + ", groupName=" + groupName + ", status=" + status + ", processedCount="
+                + processedCount + ", eventCount=" + eventCount + "]";
+    }
+
+}
@@ -18,20 +18,42 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.Validate;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
 import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.FanOutStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * This DAO class handles raw CRUD operations for the JPA-flavor notifications.
@@ -40,13 +62,69 @@ import org.springframework.transaction.annotation.Transactional;
  * @author drewwills
  */
 @Repository
+@DependsOn({"userKeyMigration", "eventIdSeeder"})
 /* package-private */ class JpaNotificationDao implements INotificationDao {
 
+    /**
+     * Number of events sent to the database in a single JDBC batch by
+     * {@link #createEvents(long, Collection, NotificationState, Timestamp)}.  Matches both
+     * <code>hibernate.jdbc.batch_size</code> and the allocation size of the NOTICE_EVENT id generator.
+     */
+    /* package-private */ static final int EVENT_BATCH_SIZE = 50;
+
+    /**
+     * Maximum number of values (e.g. usernames) in the IN clause of a single query.
+     */
+    private static final int IN_CLAUSE_BATCH_SIZE = 500;
+
+    /**
+     * Attempts to create missing users before giving up;  see {@link #createMissingUsers(Collection)}.
+     */
+    private static final int CREATE_USERS_ATTEMPTS = 3;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    /**
+     * Store a packed copy of each entry's attributes, which spares the inbox from loading the
+     * normalized attribute tables.
+     */
+    @Value("${JpaNotificationDao.packAttributes:true}")
+    private boolean packAttributes;
+
+    @Value("${JpaNotificationDao.compressBodies:false}")
+    private boolean compressBodies;
+
+    /**
+     * Bodies longer than this many characters are compressed (if compressBodies is true).
+     */
+    @Value("${JpaNotificationDao.compressionThreshold:4096}")
+    private int compressionThreshold;
+
+    /**
+     * Lazy because the filter reads its recipients through this DAO.
+     */
+    @Autowired
+    @Lazy
+    private RecipientFilter recipientFilter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate newTransactionTemplate;
+    private TransactionTemplate lookupTemplate;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    @PostConstruct
+    public void init() {
+        newTransactionTemplate = new TransactionTemplate(transactionManager);
+        newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        lookupTemplate = new TransactionTemplate(transactionManager);
+        lookupTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+        lookupTemplate.setReadOnly(true);
+    }
+
     /**
      * Search for a JpaEntry with the specified Id. If the entry exists in the
      * persistence context, it is returned;  otherwise, null is returned.
@@ -98,6 +176,7 @@ import org.springframework.transaction.annotation.Transactional;
         query.setParameter("source", source);
         query.setParameter("name", attributeName);
         query.setParameter("value", attributeValue);
+        query.setHint(QueryHints.CACHEABLE, true);
         return query.getResultList();
     }
 
@@ -106,26 +185,63 @@ import org.springframework.transaction.annotation.Transactional;
     public JpaEntry createOrUpdateEntry(JpaEntry entry) {
         Validate.notNull(entry, "Argument 'entry' cannot be null");
 
+        entry.getAddressees().forEach(this::resolveUsers);
+        entry.setPackedAttributes(packAttributes ? PackedAttributes.pack(entry.getAttributes()) : null);
+        final String body = entry.getBody();
+        entry.setSummary(JpaEntryBody.summarize(body));
+
         if (entry.getId() == 0) {
             // need to save and then flush to ensure the auto-generated
             // key value is populated in the entity.
             entityManager.persist(entry);
             entityManager.flush();
         } else {
+            // Callers (e.g. the REST API) don't know the current revision
+            entry.setRevision(getNextRevision(entry.getId()));
             // should always work with the object returned from merge
             // rather than the original.
             entry = entityManager.merge(entry);
+            incrementVersions(entry.getId());
         }
 
+        // The body is written separately, as an update of the same row
+        final JpaEntryBody entryBody = new JpaEntryBody(entry.getId());
+        entryBody.setText(body, compressBodies ? compressionThreshold : -1);
+        entityManager.merge(entryBody);
+        entry.setBody(body);
+
         return entry;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public String getBody(long entryId) {
+        final JpaEntryBody entryBody = entityManager.find(JpaEntryBody.class, entryId);
+        return entryBody != null ? entryBody.getText() : null;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long,String> getBodies(Collection<Long> entryIds) {
+        final Map<Long,String> rslt = new HashMap<>();
+        for (List<Long> batch : Lists.partition(new ArrayList<>(entryIds), IN_CLAUSE_BATCH_SIZE)) {
+            final TypedQuery<JpaEntryBody> query = entityManager.createNamedQuery(
+                    "JpaEntryBody.getByEntryIds", JpaEntryBody.class);
+            query.setParameter("entryIds", batch);
+            for (JpaEntryBody entryBody : query.getResultList()) {
+                rslt.put(entryBody.getEntryId(), entryBody.getText());
+            }
+        }
+        return rslt;
+    }
+
     @Override
     @Transactional
     public void removeEntry(JpaEntry entry) {
         Validate.notNull(entry, "Argument 'entry' cannot be null");
 
         JpaEntry y = entityManager.merge(entry);  // Insures that cascades will be handled properly
+        incrementVersions(y.getId());
         entityManager.remove(y);
     }
 
@@ -134,8 +250,13 @@ import org.springframework.transaction.annotation.Transactional;
     public Set<JpaEntry> getEntriesByRecipient(String username) {
         Validate.notEmpty(username, "Argument 'username' cannot be empty");
 
+        final JpaUser user = getUser(username);
+        if (user == null) {
+            return new HashSet<>();
+        }
+
         final String jpql = "SELECT v.entry FROM JpaEvent v "
-                                    + "WHERE v.username = :username "
+                                    + "WHERE v.user = :user "
                                     + "AND v.entry.priority != 0"; // See below...
 
         /*
@@ -148,11 +269,55 @@ import org.springframework.transaction.annotation.Transactional;
 
         log.debug("Query getEntriesByRecipient={}", query.toString());
 
-        query.setParameter("username", username);
+        query.setParameter("user", user);
         List<JpaEntry> rslt = query.getResultList();
+
+        // Entries without a packed copy must read their attributes while the session is open
+        rslt.forEach(JpaEntry::getAttributeMap);
+
         return new HashSet<>(rslt);
     }
 
+    @Override
+    @Transactional(readOnly=true)
+    public int countEntriesByRecipient(String username, Integer minPriority, Integer maxPriority, Boolean read) {
+        Validate.notEmpty(username, "Argument 'username' cannot be empty");
+
+        final JpaUser user = getUser(username);
+        if (user == null) {
+            return 0;
+        }
+
+        // Same as getEntriesByRecipient(), and JpaNotificationService skips entries without a title
+        final StringBuilder jpql = new StringBuilder("SELECT COUNT(DISTINCT e.id) FROM JpaEvent v JOIN v.entry e "
+                                    + "WHERE v.user = :user "
+                                    + "AND e.priority != 0 "
+                                    + "AND e.title IS NOT NULL AND TRIM(e.title) <> ''");
+        if (minPriority != null) {
+            jpql.append(" AND e.priority <= :minPriority");
+        }
+        if (maxPriority != null) {
+            jpql.append(" AND e.priority >= :maxPriority");
+        }
+        if (read != null) {
+            jpql.append(read ? " AND EXISTS" : " AND NOT EXISTS")
+                    .append(" (SELECT r.id FROM JpaEvent r WHERE r.entry = e AND r.user = :user AND r.state = :read)");
+        }
+
+        final TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        query.setParameter("user", user);
+        if (minPriority != null) {
+            query.setParameter("minPriority", minPriority);
+        }
+        if (maxPriority != null) {
+            query.setParameter("maxPriority", maxPriority);
+        }
+        if (read != null) {
+            query.setParameter("read", NotificationState.READ);
+        }
+        return query.getSingleResult().intValue();
+    }
+
     @Override
     @Transactional(readOnly=true)
     public Set<JpaEntry> getEntriesByRecipientByStatus(String username,
@@ -180,11 +345,16 @@ import org.springframework.transaction.annotation.Transactional;
         Validate.isTrue(entryId > 0, "Argument 'entryId' must be greater than zero (0)");
         Validate.notEmpty(username, "Argument 'username' cannot be empty");
 
-        final String jpql = "SELECT v FROM JpaEvent v WHERE v.username = :username "
+        final JpaUser user = getUser(username);
+        if (user == null) {
+            return new ArrayList<>();
+        }
+
+        final String jpql = "SELECT v FROM JpaEvent v WHERE v.user = :user "
                 + "AND v.entry = (SELECT e FROM JpaEntry e WHERE e.id = :entryId) "
                 + "ORDER BY v.timestamp";
         TypedQuery<JpaEvent> query = entityManager.createQuery(jpql, JpaEvent.class);
-        query.setParameter("username", username);
+        query.setParameter("user", user);
         query.setParameter("entryId", entryId);
         List<JpaEvent> rslt = query.getResultList();
         return rslt;
@@ -196,6 +366,8 @@ import org.springframework.transaction.annotation.Transactional;
     public JpaAddressee createOrUpdateAddressee(JpaAddressee addressee) {
         Validate.notNull(addressee, "Argument 'addressee' cannot be null");
 
+        resolveUsers(addressee);
+
         if (addressee.getId() == 0) {
             entityManager.persist(addressee);
             entityManager.flush();
@@ -221,21 +393,491 @@ import org.springframework.transaction.annotation.Transactional;
     @Transactional
     public JpaEvent createOrUpdateEvent(JpaEvent event) {
         Validate.notNull(event, "Argument 'event' cannot be null");
+        Validate.notEmpty(event.getUsername(), "Argument 'event' must have a username");
+
+        event.setUser(getOrCreateUsers(Collections.singleton(event.getUsername())).get(event.getUsername()));
 
         if (event.getId() == 0) {
             entityManager.persist(event);
             entityManager.flush();
+            addRecipientsAfterCommit(Collections.singletonList(event.getUsername()));
         } else {
             event = entityManager.merge(event);
         }
+        incrementVersions(Collections.singleton(event.getUser()));
         return event;
     }
 
 
+    @Override
+    @Transactional
+    public int createEvents(long entryId, Collection<String> usernames, NotificationState state, Timestamp timestamp) {
+        Validate.isTrue(entryId > 0, "Argument 'entryId' must be greater than zero (0)");
+        Validate.notNull(usernames, "Argument 'usernames' cannot be null");
+        Validate.notNull(state, "Argument 'state' cannot be null");
+
+        // No need to SELECT the entry;  we only need its key for the foreign key column
+        final JpaEntry entry = entityManager.getReference(JpaEntry.class, entryId);
+        final Map<String,JpaUser> users = getOrCreateUsers(usernames);
+
+        final List<JpaEvent> pending = new ArrayList<>(EVENT_BATCH_SIZE);
+        int rslt = 0;
+        for (String username : usernames) {
+            final JpaEvent event = new JpaEvent();
+            event.setEntry(entry);
+            event.setUser(users.get(username));
+            event.setState(state);
+            event.setTimestamp(timestamp);
+            entityManager.persist(event);
+            pending.add(event);
+            ++rslt;
+            if (pending.size() == EVENT_BATCH_SIZE) {
+                flushEvents(pending);
+            }
+        }
+        flushEvents(pending);
+        incrementVersions(users.values());
+        addRecipientsAfterCommit(new ArrayList<>(usernames));
+
+        log.debug("Created {} events with state={} for entryId={}", rslt, state, entryId);
+        return rslt;
+    }
+
+
+    @Override
+    @Transactional
+    public int createEvents(List<JpaEvent> events) {
+        Validate.notNull(events, "Argument 'events' cannot be null");
+
+        final List<String> usernames = new ArrayList<>(events.size());
+        events.forEach(event -> usernames.add(event.getUsername()));
+        final Map<String,JpaUser> users = getOrCreateUsers(usernames);
+
+        final List<JpaEvent> pending = new ArrayList<>(EVENT_BATCH_SIZE);
+        for (JpaEvent event : events) {
+            final JpaEvent copy = new JpaEvent();
+            copy.setEntry(entityManager.getReference(JpaEntry.class, event.getEntry().getId()));
+            copy.setUser(users.get(event.getUsername()));
+            copy.setState(event.getState());
+            copy.setTimestamp(event.getTimestamp());
+            entityManager.persist(copy);
+            pending.add(copy);
+            if (pending.size() == EVENT_BATCH_SIZE) {
+                flushEvents(pending);
+            }
+        }
+        flushEvents(pending);
+        incrementVersions(users.values());
+        addRecipientsAfterCommit(usernames);
+
+        return events.size();
+    }
+
+
+    @Override
+    public void createMissingUsers(Collection<String> usernames) {
+        Validate.notNull(usernames, "Argument 'usernames' cannot be null");
+
+        final Set<String> distinct = new HashSet<>(usernames);
+        if (distinct.size() == 1) {
+            // The common case (e.g. one user's action);  resolved through the natural id cache,
+            // without a transaction, when possible
+            final String username = distinct.iterator().next();
+            if (lookupTemplate.execute(status -> getUser(username)) != null) {
+                return;
+            }
+        }
+
+        for (List<String> chunk : Lists.partition(new ArrayList<>(distinct), IN_CLAUSE_BATCH_SIZE)) {
+            for (int attempt = 1; ; ++attempt) {
+                try {
+                    newTransactionTemplate.execute(status -> {
+                        final Set<String> missing = new HashSet<>(chunk);
+                        entityManager.createNamedQuery("JpaUser.getByUsernames", JpaUser.class)
+                                .setParameter("usernames", chunk)
+                                .getResultList()
+                                .forEach(user -> missing.remove(user.getUsername()));
+                        return missing.isEmpty() ? null : createUsers(missing);
+                    });
+                    break;
+                } catch (DataIntegrityViolationException | PersistenceException e) {
+                    if (attempt == CREATE_USERS_ATTEMPTS) {
+                        throw e;
+                    }
+                    // Another transaction created some of the same users first;  they exist now
+                    log.debug("Retrying the creation of {} users", chunk.size(), e);
+                }
+            }
+        }
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<String> getUsernamesWithEvent(long entryId, Collection<String> usernames, NotificationState state) {
+        Validate.notNull(usernames, "Argument 'usernames' cannot be null");
+        Validate.notNull(state, "Argument 'state' cannot be null");
+
+        final Set<String> rslt = new HashSet<>();
+        for (List<String> chunk : Lists.partition(new ArrayList<>(usernames), IN_CLAUSE_BATCH_SIZE)) {
+            rslt.addAll(entityManager.createNamedQuery("JpaEvent.getUsernamesByEntryIdAndState", String.class)
+                    .setParameter("entryId", entryId)
+                    .setParameter("state", state)
+                    .setParameter("usernames", chunk)
+                    .getResultList());
+        }
+        return rslt;
+    }
+
+
     @Override
     @Transactional(readOnly = true)
     public JpaEvent getEvent(long eventId) {
         JpaEvent event = entityManager.find(JpaEvent.class, eventId);
         return event;
     }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> getRecipients() {
+        return entityManager.createNamedQuery("JpaEvent.getRecipients", String.class)
+                .getResultList();
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long getUserVersion(String username) {
+        Validate.notEmpty(username, "Argument 'username' cannot be empty");
+
+        final JpaUser user = getUser(username);
+        if (user == null) {
+            return 0L;
+        }
+        final JpaUserVersion rslt = entityManager.find(JpaUserVersion.class, user.getId());
+        return rslt != null ? rslt.getVersion() : null;
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String,Long> getUserVersions(Collection<String> usernames) {
+        Validate.notNull(usernames, "Argument 'usernames' cannot be null");
+
+        final Map<String,Long> rslt = new HashMap<>();
+        for (List<String> chunk : Lists.partition(new ArrayList<>(usernames), IN_CLAUSE_BATCH_SIZE)) {
+            entityManager.createNamedQuery("JpaUserVersion.getByUsernames", Object[].class)
+                    .setParameter("usernames", chunk)
+                    .getResultList()
+                    .forEach(row -> rslt.put((String) row[0], (Long) row[1]));
+        }
+        return rslt;
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> getSupersededEventIds(long afterId, long throughId, Timestamp olderThan) {
+        Validate.notNull(olderThan, "Argument 'olderThan' cannot be null");
+
+        TypedQuery<Long> query = entityManager.createNamedQuery("JpaEvent.getSupersededIds", Long.class);
+        query.setParameter("afterId", afterId);
+        query.setParameter("throughId", throughId);
+        query.setParameter("olderThan", olderThan);
+        return query.getResultList();
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public long getMaxEventId() {
+        final Long rslt = entityManager.createNamedQuery("JpaEvent.getMaxId", Long.class).getSingleResult();
+        return rslt != null ? rslt : 0L;
+    }
+
+
+    @Override
+    @Transactional
+    public int archiveEvents(Collection<Long> eventIds) {
+        Validate.notNull(eventIds, "Argument 'eventIds' cannot be null");
+        if (eventIds.isEmpty()) {
+            return 0;
+        }
+
+        // Select columns (rather than entities) to avoid loading the entries
+        final List<Object[]> rows = entityManager.createNamedQuery("JpaEvent.getColumnsByIds", Object[].class)
+                .setParameter("eventIds", eventIds)
+                .getResultList();
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Object[] row : rows) {
+            final JpaArchivedEvent archived = new JpaArchivedEvent();
+            archived.setId((Long) row[0]);
+            archived.setEntryId((Long) row[1]);
+            archived.setUsername((String) row[2]);
+            archived.setState((NotificationState) row[3]);
+            archived.setTimestamp((Timestamp) row[4]);
+            archived.setArchived(now);
+            entityManager.persist(archived);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        final int rslt = entityManager.createQuery("DELETE FROM JpaEvent v WHERE v.id IN (:eventIds)")
+                .setParameter("eventIds", eventIds)
+                .executeUpdate();
+        log.debug("Archived {} events", rslt);
+        return rslt;
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public JpaProxyMapping getProxyMapping(String source, String externalId) {
+        Validate.notEmpty(source, "Argument 'source' cannot be empty");
+        Validate.notEmpty(externalId, "Argument 'externalId' cannot be empty");
+
+        // Resolved through the natural id cache when possible
+        return entityManager.unwrap(Session.class)
+                .byNaturalId(JpaProxyMapping.class)
+                .using("source", source)
+                .using("externalId", externalId)
+                .load();
+    }
+
+
+    @Override
+    @Transactional
+    public JpaProxyMapping createProxyMapping(JpaProxyMapping mapping) {
+        Validate.notNull(mapping, "Argument 'mapping' cannot be null");
+        Validate.isTrue(mapping.getId() == 0, "Mappings cannot be updated");
+
+        // Flush now so that a duplicate surfaces here
+        entityManager.persist(mapping);
+        entityManager.flush();
+        return mapping;
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<JpaEntry> getUnmappedProxyEntries(String source, long afterId, int maxResults) {
+        Validate.notEmpty(source, "Argument 'source' cannot be empty");
+        Validate.isTrue(maxResults > 0, "Argument 'maxResults' must be greater than zero (0)");
+
+        TypedQuery<JpaEntry> query = entityManager.createNamedQuery("JpaEntry.getUnmappedProxies", JpaEntry.class);
+        query.setParameter("source", source);
+        query.setParameter("afterId", afterId);
+        query.setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
+
+    @Override
+    @Transactional
+    public int moveEvents(long fromEntryId, long toEntryId) {
+        final int rslt = entityManager.createNamedQuery("JpaEvent.moveToEntry")
+                .setParameter("entry", entityManager.getReference(JpaEntry.class, toEntryId))
+                .setParameter("fromEntryId", fromEntryId)
+                .executeUpdate();
+        entityManager.createNamedQuery("JpaArchivedEvent.moveToEntry")
+                .setParameter("toEntryId", toEntryId)
+                .setParameter("fromEntryId", fromEntryId)
+                .executeUpdate();
+        incrementVersions(toEntryId);
+        log.debug("Moved {} events from entryId={} to entryId={}", rslt, fromEntryId, toEntryId);
+        return rslt;
+    }
+
+
+    @Override
+    @Transactional
+    public JpaFanOutTask createOrUpdateFanOutTask(JpaFanOutTask task) {
+        Validate.notNull(task, "Argument 'task' cannot be null");
+
+        if (task.getId() == 0) {
+            entityManager.persist(task);
+            entityManager.flush();
+        } else {
+            task = entityManager.merge(task);
+            // Flush now so that optimistic locking failures surface here
+            entityManager.flush();
+        }
+        return task;
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public JpaFanOutTask getFanOutTask(long taskId) {
+        return entityManager.find(JpaFanOutTask.class, taskId);
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<JpaFanOutTask> getFanOutTasks(long entryId) {
+        Validate.isTrue(entryId > 0, "Argument 'entryId' must be greater than zero (0)");
+
+        TypedQuery<JpaFanOutTask> query = entityManager.createNamedQuery("JpaFanOutTask.getAllByEntryId", JpaFanOutTask.class);
+        query.setParameter("entryId", entryId);
+        return query.getResultList();
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public JpaFanOutTask getNextFanOutTask(Timestamp staleBefore) {
+        Validate.notNull(staleBefore, "Argument 'staleBefore' cannot be null");
+
+        TypedQuery<JpaFanOutTask> query = entityManager.createNamedQuery("JpaFanOutTask.getNext", JpaFanOutTask.class);
+        query.setParameter("pending", FanOutStatus.PENDING);
+        query.setParameter("inProgress", FanOutStatus.IN_PROGRESS);
+        query.setParameter("staleBefore", staleBefore);
+        query.setMaxResults(1);
+        final List<JpaFanOutTask> rslt = query.getResultList();
+        return rslt.isEmpty() ? null : rslt.get(0);
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Reads the revision from the database, not from the second-level cache:  the cached entry
+     * is out of date if another node of a cluster updated it, and reusing its revision would make
+     * the new content indistinguishable from the old.
+     */
+    private int getNextRevision(long entryId) {
+        final List<Integer> revisions = entityManager.createQuery(
+                "SELECT e.revision FROM JpaEntry e WHERE e.id = :id", Integer.class)
+                .setParameter("id", entryId)
+                .getResultList();
+        if (revisions.isEmpty()) {
+            return 0;
+        }
+        final Integer current = revisions.get(0);
+        return current != null ? current + 1 : 1;
+    }
+
+    /**
+     * Sends pending inserts to the database (as a JDBC batch) and detaches them from the
+     * persistence context so that large operations don't accumulate managed objects.
+     */
+    private void flushEvents(List<JpaEvent> pending) {
+        if (!pending.isEmpty()) {
+            entityManager.flush();
+            pending.forEach(entityManager::detach);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Provides the {@link JpaUser} for each of the specified usernames, creating the ones that
+     * don't exist yet.
+     */
+    private Map<String,JpaUser> getOrCreateUsers(Collection<String> usernames) {
+        final Map<String,JpaUser> rslt = new HashMap<>();
+        final Set<String> missing = new HashSet<>(usernames);
+        if (missing.size() == 1) {
+            // Resolved through the natural id cache when possible
+            final String username = missing.iterator().next();
+            final JpaUser user = getUser(username);
+            if (user != null) {
+                rslt.put(username, user);
+                missing.clear();
+            }
+        } else {
+            for (List<String> chunk : Lists.partition(new ArrayList<>(missing), IN_CLAUSE_BATCH_SIZE)) {
+                entityManager.createNamedQuery("JpaUser.getByUsernames", JpaUser.class)
+                        .setParameter("usernames", chunk)
+                        .getResultList()
+                        .forEach(user -> {
+                            rslt.put(user.getUsername(), user);
+                            missing.remove(user.getUsername());
+                        });
+            }
+        }
+        if (!missing.isEmpty()) {
+            rslt.putAll(createUsers(missing));
+        }
+        return rslt;
+    }
+
+    private JpaUser getUser(String username) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(JpaUser.class)
+                .load(username);
+    }
+
+    /**
+     * Replaces the unsaved users of the addressee's recipients with persistent ones.
+     */
+    private void resolveUsers(JpaAddressee addressee) {
+        final List<String> usernames = new ArrayList<>();
+        addressee.getRecipients().forEach(recipient -> usernames.add(recipient.getUsername()));
+        final Map<String,JpaUser> users = getOrCreateUsers(usernames);
+        addressee.getRecipients().forEach(recipient -> recipient.setUser(users.get(recipient.getUsername())));
+    }
+
+    /**
+     * Inserts the specified users, none of which may exist yet, in the caller's transaction.  If
+     * two transactions create the same user at once, the second fails with a
+     * DataIntegrityViolationException;  callers avoid that by invoking
+     * {@link #createMissingUsers(Collection)} before they begin their transaction.
+     */
+    private Map<String,JpaUser> createUsers(Collection<String> usernames) {
+        final Map<String,JpaUser> rslt = new HashMap<>();
+        usernames.forEach(username -> {
+            final JpaUser user = new JpaUser(username);
+            entityManager.persist(user);
+            entityManager.persist(new JpaUserVersion(user.getId()));
+            rslt.put(username, user);
+        });
+        entityManager.flush();
+        log.debug("Created {} users", rslt.size());
+        return rslt;
+    }
+
+    /**
+     * Increments the versions of the specified users (see {@link JpaUserVersion}).  Sorted, so
+     * that concurrent transactions lock the rows in the same order.
+     */
+    private void incrementVersions(Collection<JpaUser> users) {
+        final List<Integer> userIds = new ArrayList<>(users.size());
+        users.forEach(user -> userIds.add(user.getId()));
+        Collections.sort(userIds);
+        for (List<Integer> chunk : Lists.partition(userIds, IN_CLAUSE_BATCH_SIZE)) {
+            entityManager.createNamedQuery("JpaUserVersion.incrementByUserIds")
+                    .setParameter("userIds", chunk)
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * Increments the versions of every user who has received the specified entry.
+     */
+    private void incrementVersions(long entryId) {
+        final int count = entityManager.createNamedQuery("JpaUserVersion.incrementByEntryId")
+                .setParameter("entryId", entryId)
+                .executeUpdate();
+        log.debug("Incremented the versions of {} recipients of entryId={}", count, entryId);
+    }
+
+    /**
+     * Informs the {@link RecipientFilter} of new events once they are visible to its rebuild query.
+     */
+    private void addRecipientsAfterCommit(List<String> usernames) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    recipientFilter.addAll(usernames);
+                }
+            });
+        } else {
+            recipientFilter.addAll(usernames);
+        }
+    }
+
 }
@@ -18,21 +18,37 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.mutable.MutableInt;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationState;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.BulkResultDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.FanOutDTO;
+import org.jasig.portlet.notice.rest.FanOutStatus;
 import org.jasig.portlet.notice.rest.RecipientDTO;
 import org.jasig.portlet.notice.rest.RecipientType;
 import org.jasig.portlet.notice.util.JpaServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -45,6 +61,13 @@ import java.util.Set;
 @Service("jpaNotificationRestService")
 public class JpaNotificationRESTService implements IJpaNotificationRESTService {
 
+    /**
+     * Source of the {@link JpaProxyMapping} that records (for every node of a cluster) that the
+     * legacy proxies of a feature have been mapped;  its external id is the source of the proxies.
+     */
+    private static final String LEGACY_PROXIES_MAPPED = JpaNotificationRESTService.class.getName()
+            + ".LEGACY_PROXIES_MAPPED";
+
     @Autowired
     private INotificationDao notificationDao;
 
@@ -54,8 +77,34 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
     @Autowired
     private JpaServices jpaServices;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EventWriteBehindBuffer eventWriteBehindBuffer;
+
+    /**
+     * Maximum number of ISSUED events written in a single transaction by
+     * {@link #createNotifications(List)}.
+     */
+    @Value("${JpaNotificationRESTService.bulkCommitSize:5000}")
+    private int bulkCommitSize;
+
+    /**
+     * Number of legacy proxies mapped per transaction by {@link #mapLegacyProxyNotifications}.
+     */
+    @Value("${JpaNotificationRESTService.legacyProxyBatchSize:500}")
+    private int legacyProxyBatchSize;
+
+    private TransactionTemplate transactionTemplate;
+
     private Logger logger = LoggerFactory.getLogger(getClass());
 
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public EntryDTO getNotification(long id, boolean full) {
@@ -79,6 +128,12 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
         return rslt;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public String getBody(long id) {
+        return notificationDao.getBody(id);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<EntryDTO> getNotifications(Integer page, Integer pageSize) {
@@ -105,30 +160,151 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
     }
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
+    public EntryDTO getProxyNotification(String source, String externalId) {
+        final JpaProxyMapping mapping = notificationDao.getProxyMapping(source, externalId);
+        return mapping != null
+                ? getNotification(mapping.getEntryId(), false)
+                : null;
+    }
+
+    @Override
+    public EntryDTO getOrCreateProxyNotification(String source, String externalId, EntryDTO template) {
+        Validate.isTrue(template.getId() == 0, "Do not include an 'id' attribute when creating entries");
+
+        final EntryDTO existing = getProxyNotification(source, externalId);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                final JpaEntry inserted = notificationDao.createOrUpdateEntry(notificationMapper.toJpaEntry(template));
+                notificationDao.createProxyMapping(newProxyMapping(source, externalId, inserted.getId()));
+                return notificationMapper.toEntry(inserted);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another request created the proxy first;  use that one
+            logger.debug("Lost the race to create a proxy for source='{}' and externalId='{}'",
+                    source, externalId);
+            final EntryDTO rslt = getProxyNotification(source, externalId);
+            if (rslt == null) {
+                throw e;
+            }
+            return rslt;
+        }
+    }
+
+    @Override
+    public int mapLegacyProxyNotifications(String source, String idAttributeName) {
+        if (notificationDao.getProxyMapping(LEGACY_PROXIES_MAPPED, source) != null) {
+            // Already done
+            return 0;
+        }
+
+        final long start = System.currentTimeMillis();
+        final MutableInt rslt = new MutableInt();
+        long afterId = 0L;
+        for (;;) {
+            // One transaction per batch, resuming after the last entry of the previous one
+            final long from = afterId;
+            final Long lastId = transactionTemplate.execute(status -> {
+                final List<JpaEntry> entries = notificationDao.getUnmappedProxyEntries(source, from,
+                        legacyProxyBatchSize);
+                for (JpaEntry entry : entries) {
+                    if (mapLegacyProxyNotification(source, idAttributeName, entry)) {
+                        rslt.increment();
+                    }
+                }
+                return entries.isEmpty() ? null : entries.get(entries.size() - 1).getId();
+            });
+            if (lastId == null) {
+                break;
+            }
+            afterId = lastId;
+        }
+
+        try {
+            notificationDao.createProxyMapping(newProxyMapping(LEGACY_PROXIES_MAPPED, source, 0L));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Another node finished mapping the legacy proxies of source='{}'", source);
+        }
+        logger.info("Mapped {} legacy proxies of source='{}' in {}ms", rslt, source,
+                System.currentTimeMillis() - start);
+        return rslt.intValue();
+    }
+
+    @Override
     public EntryDTO createNotification(EntryDTO entry) {
         Validate.isTrue(entry.getId() == 0, "Do not include an 'id' attribute when creating entries");
 
-        final JpaEntry jpaEntry = notificationMapper.toJpaEntry(entry);
-        logger.debug("notificationMapper produced the following JpaEntry:  {}", jpaEntry);
+        // Before the transaction, so that a race to create the same user can't roll it back
+        notificationDao.createMissingUsers(getRecipients(entry.getAddressees()));
 
-        final JpaEntry inserted = notificationDao.createOrUpdateEntry(jpaEntry);
+        return transactionTemplate.execute(status -> {
+            final JpaEntry jpaEntry = notificationMapper.toJpaEntry(entry);
+            logger.debug("notificationMapper produced the following JpaEntry:  {}", jpaEntry);
 
-        /*
-         * Business rule:  new notifications must be ISSUED to recipients listed in the original payload.
-         */
-        inserted.getAddressees().forEach(addressee -> {
-            if (RecipientType.INDIVIDUAL.equals(addressee.getType())) {
-                addressee.getRecipients().forEach(recipient -> {
-                    final EventDTO event = new EventDTO();
-                    event.setUsername(recipient.getUsername());
-                    event.setState(NotificationState.ISSUED);
-                    createEvent(inserted.getId(), event);
-                });
-            }
+            final JpaEntry inserted = notificationDao.createOrUpdateEntry(jpaEntry);
+
+            /*
+             * Business rule:  new notifications must be ISSUED to recipients listed in the original payload.
+             */
+            notificationDao.createEvents(inserted.getId(), getIndividualRecipients(inserted),
+                    NotificationState.ISSUED, new Timestamp(System.currentTimeMillis()));
+
+            /*
+             * Members of GROUP recipients are issued the notification asynchronously (by the
+             * GroupFanOutWorker) so that large groups don't hold up the request.
+             */
+            inserted.getAddressees().forEach(addressee -> enqueueFanOut(inserted.getId(), addressee));
+
+            return notificationMapper.toEntry(inserted);
         });
+    }
+
+    @Override
+    public BulkResultDTO createNotifications(List<EntryDTO> notifications) {
+        Validate.notNull(notifications, "Argument 'notifications' cannot be null");
+        notifications.forEach(entry -> Validate.isTrue(entry.getId() == 0,
+                "Do not include an 'id' attribute when creating entries"));
+
+        final long start = System.currentTimeMillis();
+        final BulkResultDTO rslt = new BulkResultDTO();
+        final List<Long> entryIds = new ArrayList<>(notifications.size());
+        long eventCount = 0L;
+
+        for (EntryDTO entry : notifications) {
+
+            // Each entry (with its attributes, actions & addressees) is committed by itself...
+            notificationDao.createMissingUsers(getRecipients(entry.getAddressees()));
+            final List<String> recipients = new ArrayList<>();
+            final long entryId = transactionTemplate.execute(status -> {
+                final JpaEntry inserted = notificationDao.createOrUpdateEntry(notificationMapper.toJpaEntry(entry));
+                recipients.addAll(getIndividualRecipients(inserted));
+                inserted.getAddressees().forEach(addressee -> enqueueFanOut(inserted.getId(), addressee));
+                return inserted.getId();
+            });
+            entryIds.add(entryId);
+
+            // Then ISSUED events are committed in chunks
+            final Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+            for (List<String> chunk : Lists.partition(recipients, bulkCommitSize)) {
+                eventCount += transactionTemplate.execute(status ->
+                        notificationDao.createEvents(entryId, chunk, NotificationState.ISSUED, timestamp));
+            }
 
-        return notificationMapper.toEntry(inserted);
+            logger.debug("Created entry id={} for {} recipients", entryId, recipients.size());
+
+        }
+
+        rslt.setEntryIds(entryIds);
+        rslt.setEventCount(eventCount);
+        rslt.setElapsedMillis(System.currentTimeMillis() - start);
+        logger.info("Bulk operation completed:  {} entries, {} events, {} events/second",
+                rslt.getEntryCount(), rslt.getEventCount(), Math.round(rslt.getEventsPerSecond()));
+
+        return rslt;
     }
 
     @Override
@@ -154,23 +330,36 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
     }
 
     @Override
-    @Transactional
     public AddresseeDTO createAddressee(long notificationId, AddresseeDTO addressee) {
         Validate.isTrue(addressee.getId() == 0, "Do not include an 'id' attribute when creating addressees");
         for (RecipientDTO r : addressee.getRecipients()) {
             Validate.isTrue(r.getId() == 0, "Do not include an 'id' attribute on recipients when creating addressees");
         }
 
-        final JpaEntry entry = notificationDao.getEntry(notificationId);
-        if (entry == null) {
-            return null;
-        }
+        // Before the transaction, so that a race to create the same user can't roll it back
+        notificationDao.createMissingUsers(getRecipients(Collections.singleton(addressee)));
+
+        return transactionTemplate.execute(status -> {
+            final JpaEntry entry = notificationDao.getEntry(notificationId);
+            if (entry == null) {
+                return null;
+            }
+
+            final JpaAddressee jpa = notificationMapper.toJpaAddressee(addressee);
+            entry.addAddressee(jpa);
+
+            final JpaAddressee persisted = notificationDao.createOrUpdateAddressee(jpa);
+            enqueueFanOut(notificationId, persisted);
+            return notificationMapper.toAddressee(persisted);
+        });
+    }
 
-        final JpaAddressee jpa = notificationMapper.toJpaAddressee(addressee);
-        entry.addAddressee(jpa);
+    @Override
+    @Transactional(readOnly = true)
+    public List<FanOutDTO> getFanOuts(long notificationId) {
+        final List<JpaFanOutTask> tasks = notificationDao.getFanOutTasks(notificationId);
 
-        final JpaAddressee persisted = notificationDao.createOrUpdateAddressee(jpa);
-        return notificationMapper.toAddressee(persisted);
+        return notificationMapper.toFanOutList(tasks);
     }
 
     @Override
@@ -188,7 +377,7 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
     @Override
     @Transactional(readOnly = true)
     public List<EventDTO> getEventsByNotificationAndUser(long notificationId, String username) {
-        final List<JpaEvent> events = notificationDao.getEvents(notificationId, username);
+        final List<JpaEvent> events = eventWriteBehindBuffer.getEvents(notificationId, username);
 
         return notificationMapper.toEventList(events);
     }
@@ -205,16 +394,132 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
     }
 
     @Override
-    @Transactional
     public EventDTO createEvent(long notificationId, EventDTO event) {
         Validate.isTrue(event.getId() == 0, "Do not include an 'id' attribute when creating events");
 
-        final JpaEntry entry = notificationDao.getEntry(notificationId);
+        // Before the transaction, so that a race to create the same user can't roll it back
+        notificationDao.createMissingUsers(Collections.singleton(event.getUsername()));
+
+        return transactionTemplate.execute(status -> {
+            final JpaEntry entry = notificationDao.getEntry(notificationId);
+            final JpaEvent jpa = notificationMapper.toJpaEvent(event);
+            jpa.setEntry(entry);
+
+            final JpaEvent jpaResult = notificationDao.createOrUpdateEvent(jpa);
+            return notificationMapper.toEvent(jpaResult);
+        });
+    }
+
+    @Override
+    public void recordEvent(long notificationId, EventDTO event) {
+        Validate.isTrue(event.getId() == 0, "Do not include an 'id' attribute when creating events");
+
+        // Only the id of the entry is needed
+        final JpaEntry entry = new JpaEntry();
+        entry.setId(notificationId);
         final JpaEvent jpa = notificationMapper.toJpaEvent(event);
         jpa.setEntry(entry);
 
-        final JpaEvent jpaResult = notificationDao.createOrUpdateEvent(jpa);
-        return notificationMapper.toEvent(jpaResult);
+        eventWriteBehindBuffer.add(jpa);
+    }
+
+    @Override
+    public void recordEvents(Runnable operation) {
+        eventWriteBehindBuffer.batch(operation);
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Usernames of all recipients (of any type) of the specified addressees, which may come
+     * from JSON and contain explicit nulls.
+     */
+    private Set<String> getRecipients(Collection<AddresseeDTO> addressees) {
+        final Set<String> rslt = new HashSet<>();
+        if (addressees != null) {
+            addressees.stream()
+                    .filter(addressee -> addressee.getRecipients() != null)
+                    .forEach(addressee -> addressee.getRecipients()
+                            .forEach(recipient -> rslt.add(recipient.getUsername())));
+        }
+        return rslt;
+    }
+
+    /**
+     * Usernames of INDIVIDUAL recipients of the specified entry, without duplicates.  (A user
+     * should only see <em>one copy</em> of a notification.)
+     */
+    private Set<String> getIndividualRecipients(JpaEntry entry) {
+        final Set<String> rslt = new LinkedHashSet<>();
+        entry.getAddressees().forEach(addressee -> {
+            if (RecipientType.INDIVIDUAL.equals(addressee.getType())) {
+                addressee.getRecipients().forEach(recipient -> rslt.add(recipient.getUsername()));
+            }
+        });
+        return rslt;
+    }
+
+    /**
+     * Maps the specified legacy proxy or, if another proxy is already mapped to its external id,
+     * merges its events into that one and removes it.  Entries are processed oldest first, so the
+     * original proxy wins.
+     *
+     * @return Whether the proxy was mapped
+     */
+    private boolean mapLegacyProxyNotification(String source, String idAttributeName, JpaEntry entry) {
+        final String externalId = entry.getAttributeMap()
+                .getOrDefault(idAttributeName, Collections.emptyList()).stream()
+                .findFirst()
+                .orElse(null);
+        if (externalId == null) {
+            logger.warn("Proxy entry id={} has no '{}' attribute", entry.getId(), idAttributeName);
+            return false;
+        }
+
+        final JpaProxyMapping mapping = notificationDao.getProxyMapping(source, externalId);
+        if (mapping == null) {
+            notificationDao.createProxyMapping(newProxyMapping(source, externalId, entry.getId()));
+            return true;
+        }
+
+        final int moved = notificationDao.moveEvents(entry.getId(), mapping.getEntryId());
+        notificationDao.removeEntry(entry);
+        logger.info("Merged duplicate proxy entry id={} ({} events) for externalId='{}' into entry id={}",
+                entry.getId(), moved, externalId, mapping.getEntryId());
+        return false;
+    }
+
+    private JpaProxyMapping newProxyMapping(String source, String externalId, long entryId) {
+        final JpaProxyMapping rslt = new JpaProxyMapping();
+        rslt.setSource(source);
+        rslt.setExternalId(externalId);
+        rslt.setEntryId(entryId);
+        rslt.setCreated(new Timestamp(System.currentTimeMillis()));
+        return rslt;
+    }
+
+    /**
+     * Queues one {@link JpaFanOutTask} for each recipient (group) of the specified addressee, if
+     * it is a GROUP addressee.
+     */
+    private void enqueueFanOut(long entryId, JpaAddressee addressee) {
+        if (!RecipientType.GROUP.equals(addressee.getType())) {
+            return;
+        }
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        addressee.getRecipients().forEach(recipient -> {
+            final JpaFanOutTask task = new JpaFanOutTask();
+            task.setEntryId(entryId);
+            task.setAddresseeId(addressee.getId());
+            task.setGroupName(recipient.getUsername());
+            task.setStatus(FanOutStatus.PENDING);
+            task.setCreated(now);
+            task.setUpdated(now);
+            notificationDao.createOrUpdateFanOutTask(task);
+            logger.debug("Queued fan-out of entryId={} to group '{}'", entryId, recipient.getUsername());
+        });
     }
 
 }
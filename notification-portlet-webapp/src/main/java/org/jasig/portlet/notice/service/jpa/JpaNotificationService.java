@@ -28,14 +28,23 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Resource;
 import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
 import javax.servlet.http.HttpServletRequest;
 
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jasig.portlet.notice.ICountable;
+import org.jasig.portlet.notice.IEntryResolver;
+import org.jasig.portlet.notice.IVersioned;
 import org.jasig.portlet.notice.NotificationAction;
+import org.jasig.portlet.notice.NotificationActionRegistry;
 import org.jasig.portlet.notice.NotificationAttribute;
 import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationCountCriteria;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationError;
 import org.jasig.portlet.notice.NotificationResponse;
@@ -44,6 +53,7 @@ import org.jasig.portlet.notice.service.AbstractNotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 
 /**
@@ -53,7 +63,7 @@ import org.springframework.context.MessageSource;
  * @since 3.0
  * @author drewwills
  */
-public class JpaNotificationService extends AbstractNotificationService {
+public class JpaNotificationService extends AbstractNotificationService implements IVersioned, ICountable, IEntryResolver {
 
     /**
      * This prefix helps to keep the Notification table together (in an
@@ -66,6 +76,7 @@ public class JpaNotificationService extends AbstractNotificationService {
     private static final String UNCATEGORIZED_MESSAGE_CODE = "uncategorized";
     private static final String UNCATEGORIZED_DEFAULT_MESSAGE = "(Uncategorized)";
     private static final String PREFS_ENABLED = "JpaNotificationService.enabled";
+    private static final String DISABLED_VERSION = "disabled";  // The response is always empty
 
     @Autowired
     private INotificationDao notificationDao;
@@ -73,6 +84,26 @@ public class JpaNotificationService extends AbstractNotificationService {
     @Autowired
     private MessageSource messages;
 
+    @Autowired
+    private EventWriteBehindBuffer eventWriteBehindBuffer;
+
+    @Autowired
+    private RecipientFilter recipientFilter;
+
+    /**
+     * Provide the summary in place of the body;  clients obtain the body from
+     * <code>/api/v2/notifications/{notificationId}</code>.  Saves reading the bodies of every
+     * notification in the inbox.
+     */
+    @Value("${JpaNotificationService.summarizeBodies:false}")
+    private boolean summarizeBodies;
+
+    /**
+     * Prepared entries (without states), by entry id and revision;  see prepareTemplate().
+     */
+    @Resource(name="JpaNotificationService.entryTemplateCache")
+    private Cache entryTemplateCache;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @Override
@@ -89,6 +120,11 @@ public class JpaNotificationService extends AbstractNotificationService {
         if (usernameFinder.isAuthenticated(req) && Boolean.parseBoolean(prefs.getValue(PREFS_ENABLED, "false"))) {
             final String username = usernameFinder.findUsername(req);
 
+            if (!recipientFilter.mightHaveNotifications(username)) {
+                log.debug("User '{}' has no notifications", username);
+                return rslt;
+            }
+
             log.debug("Fetching notifications for user:  {}", username);
 
             final Set<JpaEntry> entries = notificationDao.getEntriesByRecipient(username);
@@ -115,6 +151,11 @@ public class JpaNotificationService extends AbstractNotificationService {
         if (usernameFinder.isAuthenticated(request)) {
             final String username = usernameFinder.findUsername(request);
 
+            if (!recipientFilter.mightHaveNotifications(username)) {
+                log.debug("User '{}' has no notifications", username);
+                return rslt;
+            }
+
             log.debug("Fetching notifications for user:  {}", username);
 
             final Set<JpaEntry> entries = notificationDao.getEntriesByRecipient(username);
@@ -129,6 +170,90 @@ public class JpaNotificationService extends AbstractNotificationService {
 
     }
 
+    /**
+     * Responses are not cached here, so the version isn't needed.
+     */
+    @Override
+    public NotificationResponse fetch(PortletRequest req, Object version) {
+        return fetch(req);
+    }
+
+    /**
+     * Responses are not cached here, so the version isn't needed.
+     */
+    @Override
+    public NotificationResponse fetch(HttpServletRequest request, Object version) {
+        return fetch(request);
+    }
+
+    @Override
+    public Object getVersion(PortletRequest req) {
+        PortletPreferences prefs = req.getPreferences();
+        return usernameFinder.isAuthenticated(req) && Boolean.parseBoolean(prefs.getValue(PREFS_ENABLED, "false"))
+                ? getVersion(usernameFinder.findUsername(req))
+                : DISABLED_VERSION;
+    }
+
+    @Override
+    public Object getVersion(HttpServletRequest request) {
+        return usernameFinder.isAuthenticated(request)
+                ? getVersion(usernameFinder.findUsername(request))
+                : DISABLED_VERSION;
+    }
+
+    @Override
+    public Integer count(HttpServletRequest request, NotificationCountCriteria criteria) {
+        if (!usernameFinder.isAuthenticated(request)) {
+            return 0;
+        }
+        final String username = usernameFinder.findUsername(request);
+        if (!recipientFilter.mightHaveNotifications(username)) {
+            return 0;
+        }
+        if (criteria.getRead() != null && eventWriteBehindBuffer.getVersion(username) != 0L) {
+            // Some of the user's events are not in the database yet
+            return null;
+        }
+        return notificationDao.countEntriesByRecipient(username, criteria.getMinPriority(),
+                criteria.getMaxPriority(), criteria.getRead());
+    }
+
+    @Override
+    public boolean owns(String notificationId) {
+        return notificationId.startsWith(ID_PREFIX);
+    }
+
+    @Override
+    public NotificationResponse resolve(HttpServletRequest request, String notificationId) {
+
+        if (!usernameFinder.isAuthenticated(request)) {
+            return NotificationResponse.EMPTY_RESPONSE;
+        }
+        final String username = usernameFinder.findUsername(request);
+
+        final long entryId;
+        try {
+            entryId = Long.parseLong(notificationId.substring(ID_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            log.debug("Not the id of a JpaEntry:  {}", notificationId);
+            return NotificationResponse.EMPTY_RESPONSE;
+        }
+        if (entryId <= 0) {
+            return NotificationResponse.EMPTY_RESPONSE;
+        }
+
+        // Same rules as getEntriesByRecipient():  the user has an event, and it's not a proxy
+        final JpaEntry entry = notificationDao.getEntry(entryId);
+        if (entry == null || entry.getPriority() == 0
+                || eventWriteBehindBuffer.getEvents(entryId, username).isEmpty()) {
+            log.debug("User '{}' has no notification with id '{}'", username, notificationId);
+            return NotificationResponse.EMPTY_RESPONSE;
+        }
+
+        return prepareResponse(Collections.singleton(entry), username);
+
+    }
+
     /**
      * Caller must insure that the state being set has not already been added to the entry
      * to avoid multiple events with the same state.
@@ -162,6 +287,27 @@ public class JpaNotificationService extends AbstractNotificationService {
 
     private NotificationResponse prepareResponse(Set<JpaEntry> entries, String username) {
 
+        // Entries prepared for other users need only their states
+        final Map<Long,NotificationEntry> templates = new HashMap<>();
+        for (JpaEntry entry : entries) {
+            final Element m = entryTemplateCache.get(Pair.of(entry.getId(), entry.getRevision()));
+            if (m != null) {
+                templates.put(entry.getId(), (NotificationEntry) m.getObjectValue());
+            }
+        }
+
+        // Entries are loaded without their bodies
+        final List<Long> withBodies = new ArrayList<>();
+        for (JpaEntry entry : entries) {
+            // Entries from before v4.8 have no summary
+            if (!templates.containsKey(entry.getId()) && (!summarizeBodies || entry.getSummary() == null)) {
+                withBodies.add(entry.getId());
+            }
+        }
+        final Map<Long,String> bodies = withBodies.isEmpty()
+                ? Collections.emptyMap()
+                : notificationDao.getBodies(withBodies);
+
         Map<String,NotificationCategory> categories = new HashMap<>();
         for (JpaEntry entry : entries) {
 
@@ -180,10 +326,19 @@ public class JpaNotificationService extends AbstractNotificationService {
             }
 
             // Prepare a NotificationEntry
-            NotificationEntry y = prepareEntry(entry, username);
-            if (y != null) {
-                category.addEntries(Collections.singletonList(y));
+            NotificationEntry template = templates.get(entry.getId());
+            if (template == null) {
+                final String body = bodies.containsKey(entry.getId())
+                        ? bodies.get(entry.getId())
+                        : entry.getSummary();
+                template = prepareTemplate(entry, body, username);
+                if (template == null) {
+                    continue;
+                }
+                entryTemplateCache.put(new Element(Pair.of(entry.getId(), entry.getRevision()), template));
             }
+            NotificationEntry y = prepareEntry(template, entry, username);
+            category.addEntries(Collections.singletonList(y));
 
         }
 
@@ -195,13 +350,47 @@ public class JpaNotificationService extends AbstractNotificationService {
 
     }
 
+    /**
+     * Combines the persistent version of the user (see {@link JpaUserVersion}) with the events of
+     * the user that are still waiting in the {@link EventWriteBehindBuffer}.
+     */
+    private String getVersion(String username) {
+        final Long userVersion = notificationDao.getUserVersion(username);
+        return userVersion != null
+                ? userVersion + "." + eventWriteBehindBuffer.getVersion(username)
+                : null;
+    }
+
+    /**
+     * Provides the {@link NotificationEntry} of one user:  a copy of the template with the user's
+     * states.  (The template is shared, and it must not change.)
+     */
+    private NotificationEntry prepareEntry(NotificationEntry template, JpaEntry entry, String username) {
+        final NotificationEntry rslt;
+        try {
+            rslt = (NotificationEntry) template.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException("Failed to clone the following entry:  " + template, e);
+        }
+
+        // States (transaction log)
+        Map<NotificationState,Date> states = prepareStates(entry, username);
+        rslt.setStates(states);
+
+        return rslt;
+    }
+
     /**
      * Creates a {@link NotificationEntry} from a {@link JpaEntry}, but will
-     * return null if that process cannot be performed in a valid way.
+     * return null if that process cannot be performed in a valid way.  The
+     * result contains everything but the states of the entry, which are the
+     * only part that differs from one user to the next;  it's cached and used
+     * as a template for every recipient.
      * 
-     * @return A fully-constituted {@link NotificationEntry} or null
+     * @param body The body of the entry, or its summary
+     * @return A {@link NotificationEntry} without states, or null
      */
-    private NotificationEntry prepareEntry(JpaEntry entry, String username) {
+    private NotificationEntry prepareTemplate(JpaEntry entry, String body, String username) {
 
         /*
          * Implementation Note:  Most notification fields are optional.  This
@@ -224,8 +413,8 @@ public class JpaNotificationService extends AbstractNotificationService {
         rslt.setTitle(title);
 
         // But these fields are optional
-        if (!StringUtils.isBlank(entry.getBody())) {  // Body
-            rslt.setBody(entry.getBody());
+        if (!StringUtils.isBlank(body)) {  // Body (or summary)
+            rslt.setBody(body);
         }
         if (entry.getDueDate() != null) {  // Due date
             rslt.setDueDate(entry.getDueDate());
@@ -246,13 +435,9 @@ public class JpaNotificationService extends AbstractNotificationService {
             rslt.setUrl(entry.getUrl());
         }
 
-        // States (transaction log)
-        Map<NotificationState,Date> states = prepareStates(entry, username);
-        rslt.setStates(states);
-
         // Collections of items...
-        if (!entry.getAttributes().isEmpty()) {  // Attributes
-            List<NotificationAttribute> attributes = prepareAttributes(entry.getAttributes());
+        if (!entry.getAttributeMap().isEmpty()) {  // Attributes
+            List<NotificationAttribute> attributes = prepareAttributes(entry.getAttributeMap());
             rslt.setAttributes(attributes);
         }
         if (!entry.getActions().isEmpty()) {  // Actions
@@ -267,7 +452,7 @@ public class JpaNotificationService extends AbstractNotificationService {
 
     private Map<NotificationState, Date> prepareStates(JpaEntry entry, String username) {
         Map<NotificationState, Date> rslt = new HashMap<>();
-        List<JpaEvent> events = notificationDao.getEvents(entry.getId(), username);
+        List<JpaEvent> events = eventWriteBehindBuffer.getEvents(entry.getId(), username);
         Collections.reverse(events);  // Process in reverse-chronological order
         for (JpaEvent e : events) {
             // NOTE:  We're obligated to filter out states
@@ -280,10 +465,10 @@ public class JpaNotificationService extends AbstractNotificationService {
         return rslt;
     }
 
-    private List<NotificationAttribute> prepareAttributes(Set<JpaAttribute> attributes) {
+    private List<NotificationAttribute> prepareAttributes(Map<String,List<String>> attributes) {
         List<NotificationAttribute> rslt = new ArrayList<>();
-        for (JpaAttribute a : attributes) {
-            NotificationAttribute n = new NotificationAttribute(a.getName(), a.getValues());
+        for (Map.Entry<String,List<String>> a : attributes.entrySet()) {
+            NotificationAttribute n = new NotificationAttribute(a.getKey(), a.getValue());
             rslt.add(n);
         }
         return rslt;
@@ -293,20 +478,17 @@ public class JpaNotificationService extends AbstractNotificationService {
 
         List<NotificationAction> rslt = new ArrayList<>();
 
-        String className = null;
-        try {
-            // NB:  Do we need to filter out actions that are not currently
-            // applicable?  (Or is that better-handled downstream?)
-            for (JpaAction a : actions) {
-                className = a.getClazz();
-                @SuppressWarnings("unchecked")
-                final Class<? extends NotificationAction> clazz = (Class<? extends NotificationAction>) Class.forName(className);
-                NotificationAction n = clazz.newInstance();
-                n.setLabel(a.getLabel());
-                rslt.add(n);
+        // NB:  Do we need to filter out actions that are not currently
+        // applicable?  (Or is that better-handled downstream?)
+        for (JpaAction a : actions) {
+            final NotificationAction n = NotificationActionRegistry.create(a.getClazz());
+            if (n == null) {
+                // Skip this one;  the others are still available
+                log.warn("User '" + username + "' had an action of an unknown or disallowed className:  " + a.getClazz());
+                continue;
             }
-        } catch (Exception e) {
-            log.warn("User '" + username + "' had an action of an unknown className:  " + className);
+            n.setLabel(a.getLabel());
+            rslt.add(n);
         }
 
         return rslt;
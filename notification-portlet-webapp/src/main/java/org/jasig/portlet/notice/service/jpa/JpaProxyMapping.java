@@ -0,0 +1,122 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+/**
+ * Associates a notification from an external data source with the "proxy" {@link JpaEntry} that
+ * tracks its state (READ, SNOOZED, etc.) within the JPA service.  There can be only one proxy for
+ * each external notification;  the unique constraint on (SOURCE, EXTERNAL_ID) prevents duplicates
+ * when several requests try to create the proxy at once.  Mappings never change, so they are
+ * cached (by natural id) in the second-level cache.
+ *
+ * @since 4.8
+ */
+@Entity
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "PROXY_MAPPING",
+        uniqueConstraints=@UniqueConstraint(name=JpaNotificationService.TABLENAME_PREFIX + "PROXY_MAPPING_UK",
+                columnNames={"SOURCE", "EXTERNAL_ID"}))
+@Immutable
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_ONLY)
+@NaturalIdCache
+/* package-private */ class JpaProxyMapping {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    @Column(name="ID", nullable = false)
+    private long id;
+
+    @NaturalId
+    @Column(name="SOURCE", nullable = false)
+    private String source;
+
+    @NaturalId
+    @Column(name="EXTERNAL_ID", nullable = false)
+    private String externalId;
+
+    @Column(name="ENTRY_ID", nullable = false)
+    private long entryId;
+
+    @Column(name="CREATED", nullable = false)
+    private Timestamp created;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+
+    public void setExternalId(String externalId) {
+        this.externalId = externalId;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public void setEntryId(long entryId) {
+        this.entryId = entryId;
+    }
+
+    public Timestamp getCreated() {
+        return created;
+    }
+
+    public void setCreated(Timestamp created) {
+        this.created = created;
+    }
+
+    @Override
+    public String toString() {
+        return "JpaProxyMapping [id=" + id + ", source=" + source + ", externalId=" + externalId
+                + ", entryId=" + entryId + "]";
+    }
+
+}
@@ -23,6 +23,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -34,7 +35,9 @@ import javax.persistence.Table;
  * @author drewwills
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "RECIPIENT")
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "RECIPIENT",
+        indexes=@Index(name=JpaNotificationService.TABLENAME_PREFIX + "RECIPIENT_USER_IDX",
+                columnList="USER_ID"))
 /* package-private */ class JpaRecipient {
 
     @Id
@@ -46,8 +49,13 @@ import javax.persistence.Table;
     @JoinColumn(name="ADDRESSEE_ID")
     private JpaAddressee addressee;
 
-    @Column(name="USERNAME", nullable=false)
-    private String username;
+    /**
+     * Required, but the column is nullable so that it can be added to existing tables;  see
+     * {@link UserKeyMigration}.
+     */
+    @ManyToOne
+    @JoinColumn(name="USER_ID")
+    private JpaUser user;
 
     public long getId() {
         return id;
@@ -65,17 +73,29 @@ import javax.persistence.Table;
         this.addressee = addressee;
     }
 
+    public JpaUser getUser() {
+        return user;
+    }
+
+    public void setUser(JpaUser user) {
+        this.user = user;
+    }
+
     public String getUsername() {
-        return username;
+        return user != null ? user.getUsername() : null;
     }
 
+    /**
+     * Associates this recipient with a {@link JpaUser} that has not been saved;  the DAO replaces
+     * it with the persistent user (creating one if necessary) when it saves the recipient.
+     */
     public void setUsername(String username) {
-        this.username = username;
+        this.user = new JpaUser(username);
     }
 
     @Override
     public String toString() {
-        return "JpaRecipient [id=" + id + ", username=" + username + "]";
+        return "JpaRecipient [id=" + id + ", username=" + getUsername() + "]";
     }
 
 }
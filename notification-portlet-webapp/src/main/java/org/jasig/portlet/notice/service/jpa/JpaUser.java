@@ -0,0 +1,104 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * Maps a username to a compact integer key.  NOTICE_EVENT and NOTICE_RECIPIENT reference users by
+ * this key (rather than repeating the username on every row), which keeps their indexes narrow
+ * and per-user predicates to integer comparisons.  Users never change, so they are cached (by id
+ * and by username) in the second-level cache.
+ *
+ * <p>The recipients of GROUP addressees (i.e. group names) are stored here as well.
+ *
+ * @since 4.8
+ */
+@Entity
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "USER")
+@Immutable
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_ONLY)
+@NaturalIdCache
+/* package-private */ class JpaUser {
+
+    /* package-private */ static final String SEQUENCE_NAME = JpaNotificationService.TABLENAME_PREFIX + "USER_SEQ";
+
+    @Id
+    @GeneratedValue(generator=SEQUENCE_NAME)
+    @GenericGenerator(
+            name=SEQUENCE_NAME,
+            strategy="org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters={
+                    @Parameter(name="sequence_name", value=SEQUENCE_NAME),
+                    @Parameter(name="optimizer", value="pooled-lo"),
+                    @Parameter(name="increment_size", value="" + JpaNotificationDao.EVENT_BATCH_SIZE)
+            })
+    @Column(name="ID", nullable = false)
+    private int id;
+
+    @NaturalId
+    @Column(name="USERNAME", nullable = false)
+    private String username;
+
+    public JpaUser() {}
+
+    /**
+     * Creates a user that is not (yet) associated with a row in NOTICE_USER;  see
+     * {@link JpaEvent#setUsername(String)}.
+     */
+    public JpaUser(String username) {
+        this.username = username;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    @Override
+    public String toString() {
+        return "JpaUser [id=" + id + ", username=" + username + "]";
+    }
+
+}
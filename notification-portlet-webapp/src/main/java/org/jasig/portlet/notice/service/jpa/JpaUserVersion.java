@@ -0,0 +1,75 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A counter that changes whenever the notifications of a user change:  the DAO increments it (in
+ * the same transaction) when it writes an event for the user, or updates or removes an entry the
+ * user has received.  Comparing counters is much cheaper than fetching notifications again, so
+ * cached responses can be revalidated with a single-row read.  There is one row per
+ * {@link JpaUser}, created along with it.  Counters live in a table of their own because users
+ * are immutable (and cached accordingly), and they are not cached because every node must see
+ * the writes of the others.
+ *
+ * @since 4.8
+ */
+@Entity
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "USER_VERSION")
+/* package-private */ class JpaUserVersion {
+
+    @Id
+    @Column(name="USER_ID", nullable = false)
+    private int userId;
+
+    @Column(name="VERSION", nullable = false)
+    private long version;
+
+    public JpaUserVersion() {}
+
+    public JpaUserVersion(int userId) {
+        this.userId = userId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return "JpaUserVersion [userId=" + userId + ", version=" + version + "]";
+    }
+
+}
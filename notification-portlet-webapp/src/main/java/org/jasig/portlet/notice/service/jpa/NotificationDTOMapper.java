@@ -18,135 +18,286 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Lists;
-import org.dozer.Mapper;
+import org.hibernate.Hibernate;
+import org.jasig.portlet.notice.rest.ActionDTO;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.AttributeDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.FanOutDTO;
 import org.jasig.portlet.notice.rest.RecipientDTO;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
+ * Maps between the JPA entities and the DTOs of the REST API.  Mappings are written out by hand
+ * (rather than performed reflectively) and collections are copied eagerly, so each object is
+ * mapped exactly once no matter how often the result is iterated.  Lazy collections that have not
+ * been loaded are skipped (rather than loaded one query per object);  callers that need them fetch
+ * them up front (e.g. <code>getFullEntry</code>).  The attributes of an entry are the exception:
+ * they come from the packed copy when the normalized ones are not loaded, and entries without a
+ * packed copy must be mapped within a transaction.  When mapping DTOs to entities, the links from
+ * children back to their parents (e.g. attribute to entry) are set as well.
+ *
  * @author Josh Helmer, jhelmer.unicon.net
  * @since 3.0
  */
 @Service
 public class NotificationDTOMapper implements INotificationDTOMapper {
-    @Autowired
-    private Mapper dozerBeanMapper;
-
 
     @Override
     public List<EntryDTO> toEntryList(List<JpaEntry> entries) {
-        return Lists.transform(entries, new Function<JpaEntry, EntryDTO>() {
-            @Override
-            public EntryDTO apply(JpaEntry jpaEntry) {
-                return toEntry(jpaEntry);
-            }
-        });
+        return mapList(entries, this::toEntry);
     }
 
 
     @Override
     public List<JpaEntry> toJpaEntryList(List<EntryDTO> entries) {
-        return Lists.transform(entries, new Function<EntryDTO, JpaEntry>() {
-            @Override
-            public JpaEntry apply(EntryDTO entry) {
-                return toJpaEntry(entry);
-            }
-        });
+        return mapList(entries, this::toJpaEntry);
     }
 
 
     @Override
     public EntryDTO toEntry(JpaEntry entry) {
-        return dozerBeanMapper.map(entry, EntryDTO.class);
+        final EntryDTO rslt = new EntryDTO();
+        rslt.setId(entry.getId());
+        rslt.setTitle(entry.getTitle());
+        rslt.setSource(entry.getSource());
+        rslt.setUrl(entry.getUrl());
+        rslt.setLinkText(entry.getLinkText());
+        rslt.setPriority(entry.getPriority());
+        rslt.setDueDate(entry.getDueDate());
+        rslt.setImage(entry.getImage());
+        rslt.setBody(entry.getBody());
+        rslt.setSummary(entry.getSummary());
+        if (entry.isAttributesLoaded()) {
+            rslt.setAttributes(mapSet(entry.getAttributes(), this::toAttribute));
+        } else {
+            // The packed copy, if there is one;  otherwise this loads the normalized attributes
+            rslt.setAttributes(toAttributeSet(entry.getAttributeMap()));
+        }
+        rslt.setActions(mapSet(entry.getActions(), this::toAction));
+        rslt.setAddressees(toAddresseeSet(entry.getAddressees()));
+        return rslt;
     }
 
 
     @Override
     public JpaEntry toJpaEntry(EntryDTO entry) {
-        return dozerBeanMapper.map(entry, JpaEntry.class);
+        final JpaEntry rslt = new JpaEntry();
+        rslt.setId(entry.getId());
+        rslt.setTitle(entry.getTitle());
+        rslt.setSource(entry.getSource());
+        rslt.setUrl(entry.getUrl());
+        rslt.setLinkText(entry.getLinkText());
+        rslt.setPriority(entry.getPriority());
+        rslt.setDueDate(entry.getDueDate());
+        rslt.setImage(entry.getImage());
+        rslt.setBody(entry.getBody());
+        for (AttributeDTO attribute : loaded(entry.getAttributes())) {
+            final JpaAttribute jpa = toJpaAttribute(attribute);
+            jpa.setEntry(rslt);
+            rslt.addAttribute(jpa);
+        }
+        for (ActionDTO action : loaded(entry.getActions())) {
+            final JpaAction jpa = toJpaAction(action);
+            jpa.setEntry(rslt);
+            rslt.addAction(jpa);
+        }
+        for (AddresseeDTO addressee : loaded(entry.getAddressees())) {
+            final JpaAddressee jpa = toJpaAddressee(addressee);
+            jpa.setEntry(rslt);
+            rslt.addAddressee(jpa);
+        }
+        return rslt;
     }
 
 
     @Override
     public Set<AddresseeDTO> toAddresseeSet(Set<JpaAddressee> addressees) {
-        Set<AddresseeDTO> set = new HashSet<>();
-        for (JpaAddressee addr : addressees) {
-            AddresseeDTO dto = toAddressee(addr);
-            set.add(dto);
-        }
-
-        return set;
+        return mapSet(addressees, this::toAddressee);
     }
 
 
     @Override
     public AddresseeDTO toAddressee(JpaAddressee addressee) {
-        return dozerBeanMapper.map(addressee, AddresseeDTO.class);
+        final AddresseeDTO rslt = new AddresseeDTO();
+        rslt.setId(addressee.getId());
+        rslt.setName(addressee.getName());
+        rslt.setType(addressee.getType());
+        if (addressee.isRecipientsLoaded()) {
+            rslt.setRecipients(mapSet(addressee.getRecipients(), this::toRecipient));
+        }
+        return rslt;
     }
 
 
     @Override
     public JpaAddressee toJpaAddressee(AddresseeDTO addressee) {
-        return dozerBeanMapper.map(addressee, JpaAddressee.class);
+        final JpaAddressee rslt = new JpaAddressee();
+        rslt.setId(addressee.getId());
+        rslt.setName(addressee.getName());
+        rslt.setType(addressee.getType());
+        for (RecipientDTO recipient : loaded(addressee.getRecipients())) {
+            final JpaRecipient jpa = new JpaRecipient();
+            jpa.setId(recipient.getId());
+            jpa.setUsername(recipient.getUsername());
+            jpa.setAddressee(rslt);
+            rslt.addRecipient(jpa);
+        }
+        return rslt;
     }
 
 
     @Override
     public List<RecipientDTO> toRecipientList(List<JpaRecipient> recipients) {
-        return Lists.transform(recipients, new Function<JpaRecipient, RecipientDTO>() {
-            @Override
-            public RecipientDTO apply(JpaRecipient jpaRecipient) {
-                return toRecipient(jpaRecipient);
-            }
-        });
+        return mapList(recipients, this::toRecipient);
     }
 
 
     @Override
     public RecipientDTO toRecipient(JpaRecipient recipient) {
-        return dozerBeanMapper.map(recipient, RecipientDTO.class);
+        final RecipientDTO rslt = new RecipientDTO();
+        rslt.setId(recipient.getId());
+        rslt.setUsername(recipient.getUsername());
+        return rslt;
     }
 
 
     @Override
     public List<EventDTO> toEventList(List<JpaEvent> events) {
-        return Lists.transform(events, new Function<JpaEvent, EventDTO>() {
-            @Override
-            public EventDTO apply(JpaEvent jpaEvent) {
-                return toEvent(jpaEvent);
-            }
-        });
+        return mapList(events, this::toEvent);
     }
 
 
     @Override
     public List<JpaEvent> toJpaEventList(List<EventDTO> events) {
-        return Lists.transform(events, new Function<EventDTO, JpaEvent>() {
-            @Override
-            public JpaEvent apply(EventDTO eventDTO) {
-                return toJpaEvent(eventDTO);
-            }
-        });
+        return mapList(events, this::toJpaEvent);
     }
 
 
     @Override
     public EventDTO toEvent(JpaEvent event) {
-        return dozerBeanMapper.map(event, EventDTO.class);
+        final EventDTO rslt = new EventDTO();
+        rslt.setId(event.getId());
+        rslt.setTimestamp(event.getTimestamp());
+        rslt.setUsername(event.getUsername());
+        rslt.setState(event.getState());
+        return rslt;
     }
 
 
     @Override
     public JpaEvent toJpaEvent(EventDTO event) {
-        return dozerBeanMapper.map(event, JpaEvent.class);
+        final JpaEvent rslt = new JpaEvent();
+        rslt.setId(event.getId());
+        rslt.setTimestamp(event.getTimestamp());
+        rslt.setUsername(event.getUsername());
+        rslt.setState(event.getState());
+        return rslt;
     }
+
+
+    @Override
+    public List<FanOutDTO> toFanOutList(List<JpaFanOutTask> tasks) {
+        return mapList(tasks, task -> {
+            final FanOutDTO rslt = new FanOutDTO();
+            rslt.setId(task.getId());
+            rslt.setAddresseeId(task.getAddresseeId());
+            rslt.setGroupName(task.getGroupName());
+            rslt.setStatus(task.getStatus());
+            rslt.setProcessedCount(task.getProcessedCount());
+            rslt.setEventCount(task.getEventCount());
+            rslt.setLastError(task.getLastError());
+            rslt.setCreated(task.getCreated());
+            rslt.setUpdated(task.getUpdated());
+            return rslt;
+        });
+    }
+
+    /*
+     * Implementation
+     */
+
+    private AttributeDTO toAttribute(JpaAttribute attribute) {
+        final AttributeDTO rslt = new AttributeDTO();
+        rslt.setId(attribute.getId());
+        rslt.setName(attribute.getName());
+        rslt.setValues(new ArrayList<>(attribute.getValues()));
+        return rslt;
+    }
+
+    private Set<AttributeDTO> toAttributeSet(Map<String,List<String>> attributes) {
+        final Set<AttributeDTO> rslt = new HashSet<>(Math.max(16, (int) (attributes.size() / .75f) + 1));
+        for (Map.Entry<String,List<String>> y : attributes.entrySet()) {
+            final AttributeDTO attribute = new AttributeDTO();
+            attribute.setName(y.getKey());
+            attribute.setValues(new ArrayList<>(y.getValue()));
+            rslt.add(attribute);
+        }
+        return rslt;
+    }
+
+    private JpaAttribute toJpaAttribute(AttributeDTO attribute) {
+        final JpaAttribute rslt = new JpaAttribute();
+        rslt.setId(attribute.getId());
+        rslt.setName(attribute.getName());
+        rslt.setValues(new ArrayList<>(orEmpty(attribute.getValues())));
+        return rslt;
+    }
+
+    private ActionDTO toAction(JpaAction action) {
+        final ActionDTO rslt = new ActionDTO();
+        rslt.setId(action.getId());
+        rslt.setLabel(action.getLabel());
+        rslt.setClazz(action.getClazz());
+        return rslt;
+    }
+
+    private JpaAction toJpaAction(ActionDTO action) {
+        final JpaAction rslt = new JpaAction();
+        rslt.setId(action.getId());
+        rslt.setLabel(action.getLabel());
+        rslt.setClazz(action.getClazz());
+        return rslt;
+    }
+
+    /**
+     * DTOs come from JSON, which may contain explicit nulls.
+     */
+    private static <T> Collection<T> orEmpty(Collection<T> collection) {
+        return collection != null ? collection : Collections.emptyList();
+    }
+
+    /**
+     * Skips collections that are null or (being Hibernate proxies) have not been loaded.
+     */
+    private static <T> Collection<T> loaded(Collection<T> collection) {
+        return Hibernate.isInitialized(collection) ? orEmpty(collection) : Collections.emptyList();
+    }
+
+    private static <S,T> List<T> mapList(Collection<S> source, Function<S,T> mapping) {
+        final List<T> rslt = new ArrayList<>(source.size());
+        for (S item : source) {
+            rslt.add(mapping.apply(item));
+        }
+        return rslt;
+    }
+
+    private static <S,T> Set<T> mapSet(Collection<S> source, Function<S,T> mapping) {
+        final Set<T> rslt = new HashSet<>(Math.max(16, (int) (source.size() / .75f) + 1));
+        for (S item : source) {
+            rslt.add(mapping.apply(item));
+        }
+        return rslt;
+    }
+
 }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Answers, without touching the database, whether a user <em>might</em> have JPA notifications.
+ * Most users never receive one, so {@link JpaNotificationService} consults this filter before
+ * running <code>getEntriesByRecipient</code>.  The filter is a Bloom filter of the usernames in
+ * NOTICE_EVENT;  false positives merely cost the query we would have run anyway.
+ *
+ * <p>The filter is rebuilt from the database periodically (which also drops users whose
+ * notifications have been deleted and resizes it as the population grows) and updated
+ * incrementally as this node creates events.  On a single node it never produces false
+ * negatives.  In a cluster, however, it knows nothing of events created by other nodes until the
+ * next rebuild, so a user's first notification created elsewhere stays hidden on this node for up
+ * to <code>rebuildIntervalMinutes</code>.  It is therefore off by default;  enable it for a single
+ * node, or where that delay is acceptable.  Until the first build completes, every user is assumed
+ * to have notifications.
+ *
+ * @since 4.8
+ */
+@Component
+/* package-private */ class RecipientFilter {
+
+    private static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Value("${RecipientFilter.enabled:false}")
+    private boolean enabled;
+
+    @Value("${RecipientFilter.rebuildIntervalMinutes:15}")
+    private long rebuildIntervalMinutes;
+
+    /**
+     * The filter is sized for the larger of this number and twice the number of recipients found
+     * by the previous rebuild;  users added beyond that raise the false positive rate until the
+     * next rebuild.
+     */
+    @Value("${RecipientFilter.expectedRecipients:100000}")
+    private int expectedRecipients;
+
+    @Value("${RecipientFilter.falsePositiveRate:0.01}")
+    private double falsePositiveRate;
+
+    /**
+     * Null until the first build completes.
+     */
+    private volatile BloomFilter<CharSequence> filter;
+
+    /**
+     * The replacement filter while a rebuild is in progress;  usernames added during the rebuild
+     * go to both.
+     */
+    private volatile BloomFilter<CharSequence> pending;
+
+    private int lastRecipientCount;
+
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("RecipientFilter is disabled");
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread rslt = new Thread(runnable, "RecipientFilter");
+            rslt.setDaemon(true);
+            return rslt;
+        });
+        executor.scheduleWithFixedDelay(this::run, 0L, rebuildIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return False only if the user certainly has no events for (non-proxy) JPA notifications
+     */
+    public boolean mightHaveNotifications(String username) {
+        final BloomFilter<CharSequence> current = filter;
+        return current == null || current.mightContain(username);
+    }
+
+    /**
+     * Records that the specified users have events.  Callers must invoke this method after the
+     * events have been committed;  otherwise a concurrent rebuild may miss them.
+     */
+    public void addAll(Collection<String> usernames) {
+        // Read pending before filter, the reverse of the order in which rebuild() swaps them
+        final BloomFilter<CharSequence> next = pending;
+        final BloomFilter<CharSequence> current = filter;
+        for (String username : usernames) {
+            if (current != null) {
+                current.put(username);
+            }
+            if (next != null) {
+                next.put(username);
+            }
+        }
+    }
+
+    /**
+     * Replaces the filter with a new one built from NOTICE_EVENT.
+     *
+     * @return The number of recipients in the new filter
+     */
+    /* package-private */ int rebuild() {
+        final long start = System.currentTimeMillis();
+        // The new filter must receive concurrent additions before we query;  it is therefore
+        // sized by the previous rebuild
+        final BloomFilter<CharSequence> rslt = BloomFilter.create(FUNNEL,
+                Math.max(expectedRecipients, lastRecipientCount * 2), falsePositiveRate);
+        pending = rslt;
+        final List<String> recipients = notificationDao.getRecipients();
+        recipients.forEach(rslt::put);
+        filter = rslt;
+        pending = null;
+        lastRecipientCount = recipients.size();
+        logger.info("Built RecipientFilter with {} recipients in {}ms", lastRecipientCount,
+                System.currentTimeMillis() - start);
+        return lastRecipientCount;
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Must not throw:  an exception would cancel all future executions.
+     */
+    private void run() {
+        try {
+            rebuild();
+        } catch (Throwable t) {
+            logger.error("Failed to build RecipientFilter", t);
+        }
+    }
+
+}
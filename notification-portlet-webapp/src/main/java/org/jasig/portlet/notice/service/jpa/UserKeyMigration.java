@@ -0,0 +1,242 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.sql.DataSource;
+
+import com.google.common.collect.Lists;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts NOTICE_EVENT and NOTICE_RECIPIENT tables created before version 4.8, which identify
+ * users by a USERNAME column, to reference {@link JpaUser}.  This class adds the USER_ID columns
+ * (unless the schema update has already done so) and fills them in, at startup, before the DAO
+ * becomes available.  It never drops the USERNAME columns, which new rows leave empty;  it makes
+ * them nullable instead (in the syntax of the dialect).  Dropping them is an optional, offline
+ * cleanup step (see the README);  once they are gone this class does nothing.  All nodes of a
+ * cluster must be stopped for the upgrade.
+ *
+ * <p>It also creates the {@link JpaUserVersion} of every user that doesn't have one (i.e. users
+ * created by the migration, or before the table existed).
+ *
+ * @since 4.8
+ */
+@Component("userKeyMigration")
+/* package-private */ class UserKeyMigration {
+
+    private static final String LEGACY_COLUMN = "USERNAME";
+    private static final String KEY_COLUMN = "USER_ID";
+    private static final String USER_TABLE = JpaNotificationService.TABLENAME_PREFIX + "USER";
+    private static final String USER_VERSION_TABLE = JpaNotificationService.TABLENAME_PREFIX + "USER_VERSION";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Number of users created, and range of rows updated, per transaction.
+     */
+    @Value("${UserKeyMigration.batchSize:10000}")
+    private int batchSize;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String table : new String[] { JpaNotificationService.TABLENAME_PREFIX + "EVENT",
+                JpaNotificationService.TABLENAME_PREFIX + "RECIPIENT" }) {
+            migrate(jdbcTemplate, table);
+        }
+        createMissingVersions(jdbcTemplate);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private void migrate(JdbcTemplate jdbcTemplate, String table) {
+        final Map<String,Column> columns = getColumns(table);
+        final Column legacyColumn = columns.get(LEGACY_COLUMN);
+        if (legacyColumn == null) {
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        logger.info("Migrating {} to {}", table, USER_TABLE);
+
+        if (!columns.containsKey(KEY_COLUMN)) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD " + KEY_COLUMN + " INTEGER");
+        }
+
+        // Users
+        final List<String> usernames = jdbcTemplate.queryForList("SELECT DISTINCT " + LEGACY_COLUMN
+                + " FROM " + table + " WHERE " + KEY_COLUMN + " IS NULL", String.class);
+        createUsers(jdbcTemplate, usernames);
+
+        // Keys, in ranges of ids
+        final Long min = jdbcTemplate.queryForObject("SELECT MIN(ID) FROM " + table
+                + " WHERE " + KEY_COLUMN + " IS NULL", Long.class);
+        final Long max = jdbcTemplate.queryForObject("SELECT MAX(ID) FROM " + table
+                + " WHERE " + KEY_COLUMN + " IS NULL", Long.class);
+        long updated = 0L;
+        if (min != null) {
+            final String sql = "UPDATE " + table + " SET " + KEY_COLUMN + " = ("
+                    + "SELECT u.ID FROM " + USER_TABLE + " u WHERE u.USERNAME = " + table + "." + LEGACY_COLUMN
+                    + ") WHERE " + KEY_COLUMN + " IS NULL AND ID >= ? AND ID < ?";
+            for (long from = min; from <= max; from += batchSize) {
+                updated += jdbcTemplate.update(sql, from, from + batchSize);
+            }
+        }
+
+        // The legacy column is NOT NULL;  no new rows could be inserted
+        if (!legacyColumn.nullable) {
+            final String sql = getDropNotNullSql(table, legacyColumn);
+            logger.info("Making {}.{} nullable:  {}", table, LEGACY_COLUMN, sql);
+            jdbcTemplate.execute(sql);
+        }
+
+        logger.info("Migrated {} users and {} rows of {} in {}ms", usernames.size(), updated, table,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return The statement that removes the NOT NULL constraint of the legacy column, in the
+     * syntax of the dialect (the SQL standard's, for dialects without one of their own)
+     */
+    private String getDropNotNullSql(String table, Column column) {
+        final Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect();
+        final String alterTable = "ALTER TABLE " + table + " ";
+        if (dialect instanceof HSQLDialect || dialect instanceof H2Dialect) {
+            return alterTable + "ALTER COLUMN " + LEGACY_COLUMN + " SET NULL";
+        } else if (dialect instanceof MySQLDialect) {
+            return alterTable + "MODIFY " + LEGACY_COLUMN + " " + column.type + " NULL";
+        } else if (dialect instanceof SQLServerDialect) {
+            return alterTable + "ALTER COLUMN " + LEGACY_COLUMN + " " + column.type + " NULL";
+        } else if (dialect instanceof Oracle8iDialect) {
+            return alterTable + "MODIFY (" + LEGACY_COLUMN + " NULL)";
+        }
+        // E.g. PostgreSQL and DB2
+        return alterTable + "ALTER COLUMN " + LEGACY_COLUMN + " DROP NOT NULL";
+    }
+
+    private void createMissingVersions(JdbcTemplate jdbcTemplate) {
+        final int created = jdbcTemplate.update("INSERT INTO " + USER_VERSION_TABLE + " (USER_ID, VERSION) "
+                + "SELECT u.ID, 0 FROM " + USER_TABLE + " u WHERE NOT EXISTS ("
+                + "SELECT v.USER_ID FROM " + USER_VERSION_TABLE + " v WHERE v.USER_ID = u.ID)");
+        if (created != 0) {
+            logger.info("Created the versions of {} users", created);
+        }
+    }
+
+    /**
+     * @return The columns of the specified table, by (upper case) name
+     */
+    private Map<String,Column> getColumns(String table) {
+        try (Connection conn = dataSource.getConnection()) {
+            final DatabaseMetaData metaData = conn.getMetaData();
+            final Map<String,Column> rslt = new HashMap<>();
+            // Platforms differ on the case of unquoted identifiers
+            for (String name : new String[] { table, table.toLowerCase() }) {
+                try (ResultSet rs = metaData.getColumns(null, null, name, null)) {
+                    while (rs.next()) {
+                        rslt.put(rs.getString("COLUMN_NAME").toUpperCase(), new Column(
+                                rs.getString("TYPE_NAME") + "(" + rs.getInt("COLUMN_SIZE") + ")",
+                                rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls));
+                    }
+                }
+            }
+            return rslt;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read the metadata of table " + table, e);
+        }
+    }
+
+    /**
+     * Creates the users that don't already exist;  uses JPA for the sake of the id generator.
+     */
+    private void createUsers(JdbcTemplate jdbcTemplate, List<String> usernames) {
+        final Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT USERNAME FROM " + USER_TABLE, String.class));
+        for (List<String> chunk : Lists.partition(usernames, batchSize)) {
+            final EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                entityManager.getTransaction().begin();
+                chunk.stream()
+                        .filter(username -> !existing.contains(username))
+                        .forEach(username -> entityManager.persist(new JpaUser(username)));
+                entityManager.getTransaction().commit();
+            } finally {
+                if (entityManager.getTransaction().isActive()) {
+                    entityManager.getTransaction().rollback();
+                }
+                entityManager.close();
+            }
+        }
+    }
+
+    /*
+     * Nested Types
+     */
+
+    private static final class Column {
+
+        /**
+         * E.g. <code>VARCHAR(255)</code>
+         */
+        private final String type;
+        private final boolean nullable;
+
+        private Column(String type, boolean nullable) {
+            this.type = type;
+            this.nullable = nullable;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.jasig.portlet.notice.util.NotificationChangeBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells the {@link NotificationChangeBroadcaster} when the JPA notifications of a subscribed user
+ * change.  Every write that affects a user increments the user's {@link JpaUserVersion} in the
+ * database, whichever node in the cluster performs it;  this bean reads the versions of the
+ * subscribed users in one query per interval and compares them to the previous ones.  Nothing is
+ * read while no one is subscribed.
+ *
+ * @since 4.8
+ */
+@Component
+/* package-private */ class UserVersionWatcher {
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private NotificationChangeBroadcaster notificationChangeBroadcaster;
+
+    @Value("${UserVersionWatcher.intervalMillis:2000}")
+    private long intervalMillis;
+
+    /*
+     * Versions of the subscribed users as of the previous check;  null for users who have none.
+     * Accessed only by the executor.
+     */
+    private Map<String,Long> versions = new HashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread rslt = new Thread(runnable, "UserVersionWatcher");
+            rslt.setDaemon(true);
+            return rslt;
+        });
+        executor.scheduleWithFixedDelay(this::check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Must not throw:  an exception would cancel all future executions.
+     */
+    private void check() {
+        try {
+            final Set<String> subscribers = notificationChangeBroadcaster.getSubscribers();
+            if (subscribers.isEmpty()) {
+                versions.clear();
+                return;
+            }
+
+            final Map<String,Long> current = notificationDao.getUserVersions(subscribers);
+            final Map<String,Long> next = new HashMap<>();
+            for (String username : subscribers) {
+                final Long version = current.get(username);
+                // Users who just subscribed have nothing to compare to
+                if (versions.containsKey(username) && !Objects.equals(versions.get(username), version)) {
+                    notificationChangeBroadcaster.publish(username);
+                }
+                next.put(username, version);
+            }
+            versions = next;
+        } catch (Exception e) {
+            logger.error("Failed to check the versions of subscribed users", e);
+        }
+    }
+
+}
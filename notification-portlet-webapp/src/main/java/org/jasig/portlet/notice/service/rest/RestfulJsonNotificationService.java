@@ -29,9 +29,11 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.codec.binary.Base64;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.jasig.portlet.notice.NotificationError;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.controller.SmileHttpMessageConverter;
 import org.jasig.portlet.notice.service.AbstractNotificationService;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
@@ -39,7 +41,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.web.client.RequestCallback;
@@ -71,6 +75,16 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
 
     private List<String> serviceUrlsList = Collections.emptyList();
 
+    /**
+     * Ask the remote services for Smile (a binary form of JSON), which is smaller and cheaper to
+     * parse.  Responses are read according to their <code>Content-Type</code>, so services that
+     * don't support Smile may still respond with JSON.
+     *
+     * @since 4.8
+     */
+    @Value("${RestfulJsonNotificationService.acceptSmile:false}")
+    private boolean acceptSmile;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Autowired
@@ -253,6 +267,11 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
                 httpReq.getHeaders().add("Authorization", "Basic ".concat(encodedAuthString));
             }
 
+            if (acceptSmile) {
+                httpReq.getHeaders().set(HttpHeaders.ACCEPT, SmileHttpMessageConverter.APPLICATION_SMILE
+                        + ", " + MediaType.APPLICATION_JSON_VALUE + ";q=0.9");
+            }
+
         }
         
     }
@@ -260,6 +279,7 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
     private /* non-static */ final class ResponseExtractorImpl implements ResponseExtractor<NotificationResponse> {
         
         private final ObjectMapper mapper = new ObjectMapper();
+        private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
 
         @Override
         public NotificationResponse extractData(ClientHttpResponse res) {
@@ -267,7 +287,9 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
             NotificationResponse rslt;
             
             try (InputStream inpt = res.getBody()) {
-                rslt = mapper.readValue(inpt, NotificationResponse.class);
+                final boolean smile = SmileHttpMessageConverter.APPLICATION_SMILE
+                        .isCompatibleWith(res.getHeaders().getContentType());
+                rslt = (smile ? smileMapper : mapper).readValue(inpt, NotificationResponse.class);
                 logger.debug("Produced the following NotificationResponse based on the ClientHttpResponse:  {}", rslt);
             } catch (Throwable t) {
                 logger.error("Failed to invoke the remote service at " + res.getHeaders().getLocation(), t);
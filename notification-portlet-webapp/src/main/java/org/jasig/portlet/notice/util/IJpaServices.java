@@ -26,8 +26,31 @@ import org.jasig.portlet.notice.rest.EventDTO;
 
 public interface IJpaServices {
 
+    /**
+     * Is the {@link NotificationEntry} object owned by the JPA service?
+     *
+     * @since 4.8
+     */
+    boolean contains(NotificationEntry entry);
+
     List<EventDTO> getHistory(NotificationEntry entry, String username);
 
     void applyState(NotificationEntry entry, String username, NotificationState state);
 
+    /**
+     * Runs an operation that applies several states (e.g. an action on each of several
+     * notifications), and writes the resulting events in one batch when it completes.
+     *
+     * @since 4.8
+     */
+    void applyStates(Runnable operation);
+
+    /**
+     * Provides the full body of the entry, which (for entries owned by the JPA service) may be a
+     * summary.
+     *
+     * @since 4.8
+     */
+    String getBody(NotificationEntry entry);
+
 }
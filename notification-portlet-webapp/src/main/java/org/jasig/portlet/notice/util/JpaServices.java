@@ -37,6 +37,8 @@ import org.jasig.portlet.notice.service.jpa.JpaNotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 /**
@@ -74,9 +76,28 @@ public class JpaServices implements IJpaServices {
 
     private Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * Proxies created before v4.8 are identified only by the PROXY_ID_ATTRIBUTE;  map them (once)
+     * after startup, when the transactional services are ready.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void mapLegacyProxies() {
+        try {
+            final int count = jpaNotificationRestService.mapLegacyProxyNotifications(
+                    PROXY_SOURCE_NAME, PROXY_ID_ATTRIBUTE);
+            if (count != 0) {
+                logger.info("Created proxy mappings for {} existing proxy notifications", count);
+            }
+        } catch (Exception e) {
+            // Perhaps another node is doing the same thing
+            logger.warn("Failed to map existing proxy notifications", e);
+        }
+    }
+
     /**
      * Is the {@link NotificationEntry} object owned by the JPA service?
      */
+    @Override
     public boolean contains(NotificationEntry entry) {
         return StringUtils.isNotBlank(entry.getId())
                 && entry.getId().startsWith(JpaNotificationService.ID_PREFIX);
@@ -126,8 +147,22 @@ public class JpaServices implements IJpaServices {
         event.setTimestamp(new Timestamp(System.currentTimeMillis()));
         event.setUsername(username);
 
-        jpaNotificationRestService.createEvent(entryDto.getId(), event);
+        jpaNotificationRestService.recordEvent(entryDto.getId(), event);
+
+    }
+
+    @Override
+    public void applyStates(Runnable operation) {
+        jpaNotificationRestService.recordEvents(operation);
+    }
 
+    @Override
+    public String getBody(NotificationEntry entry) {
+        if (!contains(entry)) {
+            return entry.getBody();
+        }
+        final String idString = entry.getId().substring(JpaNotificationService.ID_PREFIX.length());
+        return jpaNotificationRestService.getBody(Long.parseLong(idString));
     }
 
     /*
@@ -135,55 +170,31 @@ public class JpaServices implements IJpaServices {
      */
 
     private EntryDTO fetchJpaProxyIfAvailable(NotificationEntry entry) {
-        EntryDTO rslt = null;  // default
-        final List<EntryDTO> list = jpaNotificationRestService.getNotificationsBySourceAndCustomAttribute(
-                PROXY_SOURCE_NAME,
-                PROXY_ID_ATTRIBUTE,
-                entry.getId());
-        logger.debug("Search for JPA-backed entry with id='{}' returned the following:  {}", entry.getId(), list);
-        switch (list.size()) {
-            case 1:
-                // Cool;  we have one...
-                rslt = list.get(0);
-                break;
-            case 0:
-                // Also cool;  we don't have one...
-                break;
-            default:
-                // Not cool...
-                throw new IllegalStateException("More than one JPA-back entry exists for id=" + entry.getId());
-        }
+        final EntryDTO rslt = jpaNotificationRestService.getProxyNotification(PROXY_SOURCE_NAME, entry.getId());
+        logger.debug("Search for JPA-backed entry with id='{}' returned the following:  {}", entry.getId(), rslt);
         return rslt;
     }
 
     private EntryDTO fetchOrCreateJpaProxy(NotificationEntry entry) {
 
-        // Try fetch first...
-        EntryDTO rslt = fetchJpaProxyIfAvailable(entry);
-
-        // Otherwise create...
-        if (rslt == null) {
-            final EntryDTO newEntry = new EntryDTO();
-
-            // Important stuff that allows us to identify and retrieve this entry
-            final List<String> values = new ArrayList<>();
-            values.add(entry.getId());
-            final AttributeDTO idAttribute = new AttributeDTO();
-            idAttribute.setName(PROXY_ID_ATTRIBUTE);
-            idAttribute.setValues(values);
-            final Set<AttributeDTO> attributes = new HashSet<>();
-            attributes.add(idAttribute);
-            newEntry.setAttributes(attributes);
-            newEntry.setSource(PROXY_SOURCE_NAME);
-
-            // Just fluff
-            newEntry.setTitle(entry.getTitle());
-            newEntry.setBody(PROXY_BODY_CONTENT);
-
-            rslt = jpaNotificationRestService.createNotification(newEntry);
-        }
+        final EntryDTO newEntry = new EntryDTO();
 
-        return rslt;
+        // The proxy mapping identifies this entry;  the attribute is for reference
+        final List<String> values = new ArrayList<>();
+        values.add(entry.getId());
+        final AttributeDTO idAttribute = new AttributeDTO();
+        idAttribute.setName(PROXY_ID_ATTRIBUTE);
+        idAttribute.setValues(values);
+        final Set<AttributeDTO> attributes = new HashSet<>();
+        attributes.add(idAttribute);
+        newEntry.setAttributes(attributes);
+        newEntry.setSource(PROXY_SOURCE_NAME);
+
+        // Just fluff
+        newEntry.setTitle(entry.getTitle());
+        newEntry.setBody(PROXY_BODY_CONTENT);
+
+        return jpaNotificationRestService.getOrCreateProxyNotification(PROXY_SOURCE_NAME, entry.getId(), newEntry);
 
     }
 
@@ -0,0 +1,195 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Keeps the open server-sent event (SSE) connections of clients that want to know when their
+ * user's notifications change, so that they don't have to poll for them.  The event carries no
+ * payload;  clients respond by fetching <code>/api/v2/notifications</code> (usually a conditional
+ * request).  An open connection costs no thread between events, so idle users cost almost nothing.
+ *
+ * @since 4.8
+ */
+@Component("notificationChangeBroadcaster")
+public final class NotificationChangeBroadcaster {
+
+    public static final String CHANGED_EVENT_NAME = "changed";
+
+    /**
+     * Clients (e.g. <code>EventSource</code>) reconnect when the connection closes.
+     */
+    @Value("${NotificationChangeBroadcaster.timeoutMillis:1800000}")
+    private long timeoutMillis;
+
+    /**
+     * Comments sent to keep proxies from closing idle connections.
+     */
+    @Value("${NotificationChangeBroadcaster.heartbeatMillis:30000}")
+    private long heartbeatMillis;
+
+    /**
+     * The oldest connection of a user is closed when the user opens one more than this.
+     */
+    @Value("${NotificationChangeBroadcaster.maxConnectionsPerUser:10}")
+    private int maxConnectionsPerUser;
+
+    /*
+     * Open connections by username.  Guarded by 'this'.
+     */
+    private final Map<String,List<SseEmitter>> emitters = new HashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread rslt = new Thread(runnable, "NotificationChangeBroadcaster");
+            rslt.setDaemon(true);
+            return rslt;
+        });
+        executor.scheduleAtFixedRate(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+        getAll().forEach(SseEmitter::complete);
+    }
+
+    /**
+     * Opens a connection on which the specified user will be told about changes.
+     */
+    public SseEmitter subscribe(String username) {
+        final SseEmitter rslt = new SseEmitter(timeoutMillis);
+        rslt.onCompletion(() -> remove(username, rslt));
+        rslt.onTimeout(() -> remove(username, rslt));
+
+        final SseEmitter oldest;
+        synchronized (this) {
+            final List<SseEmitter> list = emitters.computeIfAbsent(username, k -> new ArrayList<>());
+            list.add(rslt);
+            oldest = list.size() > maxConnectionsPerUser ? list.remove(0) : null;
+        }
+        if (oldest != null) {
+            oldest.complete();
+        }
+
+        logger.debug("User '{}' subscribed to changes", username);
+        return rslt;
+    }
+
+    /**
+     * Tells every open connection of the specified user that the user's notifications changed.
+     */
+    public void publish(String username) {
+        final List<SseEmitter> list;
+        synchronized (this) {
+            final List<SseEmitter> open = emitters.get(username);
+            if (open == null) {
+                return;
+            }
+            list = new ArrayList<>(open);
+        }
+        logger.debug("Notifying {} connection(s) of user '{}' of a change", list.size(), username);
+        for (SseEmitter emitter : list) {
+            send(username, emitter, SseEmitter.event().name(CHANGED_EVENT_NAME).data("{}"));
+        }
+    }
+
+    /**
+     * @return The users with at least one open connection
+     */
+    public synchronized Set<String> getSubscribers() {
+        return new HashSet<>(emitters.keySet());
+    }
+
+    /*
+     * Implementation
+     */
+
+    private synchronized void remove(String username, SseEmitter emitter) {
+        final List<SseEmitter> list = emitters.get(username);
+        if (list != null) {
+            list.remove(emitter);
+            if (list.isEmpty()) {
+                emitters.remove(username);
+            }
+        }
+    }
+
+    private synchronized List<SseEmitter> getAll() {
+        final List<SseEmitter> rslt = new ArrayList<>();
+        emitters.values().forEach(rslt::addAll);
+        return rslt;
+    }
+
+    /**
+     * Must not throw:  an exception would cancel all future executions.
+     */
+    private void heartbeat() {
+        try {
+            final Map<String,List<SseEmitter>> all;
+            synchronized (this) {
+                all = new HashMap<>();
+                emitters.forEach((username, list) -> all.put(username, new ArrayList<>(list)));
+            }
+            all.forEach((username, list) -> list.forEach(emitter ->
+                    send(username, emitter, SseEmitter.event().comment("heartbeat"))));
+        } catch (Exception e) {
+            logger.error("Failed to send heartbeats", e);
+        }
+    }
+
+    private void send(String username, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException e) {
+            // The client went away
+            logger.debug("Closing a connection of user '{}':  {}", username, e.getMessage());
+            remove(username, emitter);
+            emitter.completeWithError(e);
+        } catch (IllegalStateException e) {
+            // Already complete
+            remove(username, emitter);
+        }
+    }
+
+}
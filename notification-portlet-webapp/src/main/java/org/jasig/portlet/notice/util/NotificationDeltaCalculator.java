@@ -0,0 +1,130 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.rest.NotificationDeltaDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Computes the difference between the notifications a client received last time and the current
+ * ones.  Each response is summarized as a snapshot -- the id and a content hash of every entry, in
+ * order -- which is cached under the token given to the client.  Entries are hashed in their
+ * final (filtered) form, since filters add attributes and actions that clients see.
+ *
+ * <p>Snapshots live in the cache of one node;  a client whose token is unknown (e.g. after a
+ * failover, or when the snapshot expired) receives every entry, with <code>full</code> set.
+ *
+ * @since 4.8
+ */
+@Component
+public class NotificationDeltaCalculator {
+
+    @Resource(name="NotificationDeltaCalculator.snapshotCache")
+    private Cache snapshotCache;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param username The user who owns the notifications
+     * @param since The token the client received last time, or blank if it has none
+     * @param entries The current notifications of the user, in order
+     * @param writer Serializes entries as the client receives them
+     */
+    public NotificationDeltaDTO calculate(String username, String since, List<NotificationEntry> entries,
+            ObjectWriter writer) throws JsonProcessingException {
+
+        // Snapshot of the current notifications
+        final Map<String,String> current = new LinkedHashMap<>();
+        final StringBuilder summary = new StringBuilder();
+        boolean diffable = true;
+        for (NotificationEntry entry : entries) {
+            final String hash = DigestUtils.md5DigestAsHex(writer.writeValueAsBytes(entry));
+            summary.append(entry.getId()).append(':').append(hash).append(';');
+            if (StringUtils.isBlank(entry.getId()) || current.put(entry.getId(), hash) != null) {
+                // Entries must have unique ids to be tracked
+                diffable = false;
+            }
+        }
+        final String token = DigestUtils.md5DigestAsHex(summary.toString().getBytes(StandardCharsets.UTF_8));
+
+        final NotificationDeltaDTO rslt = new NotificationDeltaDTO();
+        rslt.setToken(token);
+
+        final Map<String,String> previous = diffable && StringUtils.isNotBlank(since)
+                ? getSnapshot(username, since)
+                : null;
+        if (previous == null) {
+            logger.debug("Sending every notification of user '{}';  since='{}', diffable={}", username, since, diffable);
+            rslt.setFull(true);
+            rslt.setAdded(new ArrayList<>(entries));
+        } else {
+            for (NotificationEntry entry : entries) {
+                final String hash = previous.get(entry.getId());
+                if (hash == null) {
+                    rslt.getAdded().add(entry);
+                } else if (!hash.equals(current.get(entry.getId()))) {
+                    rslt.getChanged().add(entry);
+                }
+            }
+            for (String id : previous.keySet()) {
+                if (!current.containsKey(id)) {
+                    rslt.getRemoved().add(id);
+                }
+            }
+            logger.debug("Calculated the following delta for user '{}' since '{}':  {}", username, since, rslt);
+        }
+
+        if (diffable) {
+            snapshotCache.put(new Element(Pair.of(username, token), Collections.unmodifiableMap(current)));
+        }
+
+        return rslt;
+
+    }
+
+    /*
+     * Implementation
+     */
+
+    @SuppressWarnings("unchecked")
+    private Map<String,String> getSnapshot(String username, String token) {
+        final Element m = snapshotCache.get(Pair.of(username, token));
+        return m != null ? (Map<String,String>) m.getObjectValue() : null;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.portlet.PortletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.apache.commons.lang3.StringUtils;
+import org.jasig.portlet.notice.NotificationEntry;
+
+/**
+ * The properties of {@link NotificationEntry} objects that a client asked for with the
+ * <code>fields</code> parameter (a comma-separated list of JSON property names, e.g.
+ * <code>fields=title,priority,dueDate</code>).  Without the parameter, every property is included.
+ * The <code>id</code> is always included.
+ *
+ * <p>Filters consult this class to skip work on properties that won't be sent (e.g. the
+ * <code>apiUrl</code> of actions), and it provides an <code>ObjectWriter</code> that leaves the
+ * others out of the JSON.
+ *
+ * @since 4.8
+ */
+public final class NotificationFields {
+
+    public static final String FIELDS_PARAMETER_NAME = "fields";
+
+    public static final String ID = "id";
+    public static final String ATTRIBUTES = "attributes";
+    public static final String AVAILABLE_ACTIONS = "availableActions";
+
+    public static final NotificationFields ALL = new NotificationFields(null);
+
+    private static final String FILTER_ID = "NotificationFields";
+
+    /**
+     * <code>null</code> means every field.
+     */
+    private final Set<String> fields;
+
+    private NotificationFields(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    public static NotificationFields fromRequest(HttpServletRequest request) {
+        return parse(request.getParameter(FIELDS_PARAMETER_NAME));
+    }
+
+    public static NotificationFields fromRequest(PortletRequest request) {
+        return parse(request.getParameter(FIELDS_PARAMETER_NAME));
+    }
+
+    /**
+     * @param value A comma-separated list of field names, or <code>null</code> for every field
+     */
+    public static NotificationFields parse(String value) {
+        if (StringUtils.isBlank(value)) {
+            return ALL;
+        }
+        final Set<String> fields = new HashSet<>();
+        fields.add(ID);
+        Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .forEach(fields::add);
+        return new NotificationFields(Collections.unmodifiableSet(fields));
+    }
+
+    /**
+     * Prepares an <code>ObjectMapper</code> for use with {@link #writer(ObjectMapper)}.  Without
+     * a projection, it serializes entries as usual.
+     *
+     * @return The same <code>ObjectMapper</code>
+     */
+    public static ObjectMapper configure(ObjectMapper objectMapper) {
+        objectMapper.addMixIn(NotificationEntry.class, Projection.class);
+        objectMapper.setFilterProvider(new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+        return objectMapper;
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * @param objectMapper An <code>ObjectMapper</code> prepared by {@link #configure(ObjectMapper)}
+     * @return A writer that serializes only the requested properties of entries
+     */
+    public ObjectWriter writer(ObjectMapper objectMapper) {
+        if (fields == null) {
+            return objectMapper.writer();
+        }
+        return objectMapper.writer(new SimpleFilterProvider()
+                .addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+    }
+
+    @Override
+    public String toString() {
+        return fields == null ? "(all)" : fields.toString();
+    }
+
+    /*
+     * Nested Types
+     */
+
+    @JsonFilter(FILTER_ID)
+    private interface Projection {}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Resource;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control for the REST APIs:  a token bucket for each user and endpoint, so that a
+ * scripted client (or a user hammering refresh) can't make the portlet fetch from every data
+ * source many times per second.  A bucket holds up to <code>burst</code> tokens and regains
+ * <code>requestsPerSecond</code> of them each second;  a request that finds its bucket empty is
+ * rejected.  Refreshes (which make every data source fetch again) draw on a separate, smaller
+ * budget;  refreshes beyond it are downgraded, so that the user's notifications come from the
+ * caches.  Counts of rejections and downgrades are available over JMX.  Disabled unless
+ * <code>RequestThrottle.enabled=true</code>.
+ *
+ * @since 4.8
+ */
+@Component("requestThrottle")
+@ManagedResource(description = "Per-user admission control for the Notification REST APIs")
+public final class RequestThrottle {
+
+    private static final String REFRESH_ENDPOINT = "refresh";
+
+    /**
+     * Off by default, so that upgrading doesn't start rejecting the requests of existing clients.
+     */
+    @Value("${RequestThrottle.enabled:false}")
+    private boolean enabled;
+
+    @Value("${RequestThrottle.burst:30}")
+    private int burst;
+
+    @Value("${RequestThrottle.requestsPerSecond:2}")
+    private double requestsPerSecond;
+
+    @Value("${RequestThrottle.refreshBurst:3}")
+    private int refreshBurst;
+
+    @Value("${RequestThrottle.refreshesPerMinute:6}")
+    private double refreshesPerMinute;
+
+    @Resource(name="RequestThrottle.bucketCache")
+    private Cache bucketCache;
+
+    private final ConcurrentMap<String,LongAdder> rejections = new ConcurrentHashMap<>();
+    private final LongAdder downgradedRefreshes = new LongAdder();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @return <code>true</code> if the user may make a request to the specified endpoint now
+     */
+    public boolean tryAcquire(String username, String endpoint) {
+        if (!enabled) {
+            return true;
+        }
+        final boolean rslt = getBucket(username, endpoint, burst, requestsPerSecond).tryAcquire();
+        if (!rslt) {
+            logger.debug("Rejecting a request to '{}' by user '{}'", endpoint, username);
+            rejections.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+        }
+        return rslt;
+    }
+
+    /**
+     * @return <code>true</code> if the user may refresh (i.e. make every data source fetch again)
+     * now;  if not, callers should purge only what they must, so that the cached responses of the
+     * data sources are used
+     */
+    public boolean tryAcquireRefresh(String username) {
+        if (!enabled) {
+            return true;
+        }
+        final boolean rslt = getBucket(username, REFRESH_ENDPOINT, refreshBurst, refreshesPerMinute / 60.0).tryAcquire();
+        if (!rslt) {
+            logger.debug("Downgrading a refresh by user '{}'", username);
+            downgradedRefreshes.increment();
+        }
+        return rslt;
+    }
+
+    /**
+     * @return How long a client whose request was rejected should wait before trying again
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1L, (long) Math.ceil(1.0 / requestsPerSecond));
+    }
+
+    @ManagedAttribute(description = "Requests rejected since startup (all endpoints)")
+    public long getRejectedRequests() {
+        return rejections.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @ManagedOperation(description = "Requests to the specified endpoint rejected since startup")
+    public long getRejectedRequests(String endpoint) {
+        final LongAdder rslt = rejections.get(endpoint);
+        return rslt != null ? rslt.sum() : 0L;
+    }
+
+    @ManagedAttribute(description = "Refreshes served from the caches since startup")
+    public long getDowngradedRefreshes() {
+        return downgradedRefreshes.sum();
+    }
+
+    /*
+     * Implementation
+     */
+
+    private TokenBucket getBucket(String username, String endpoint, int capacity, double tokensPerSecond) {
+        final Pair<String,String> key = Pair.of(username, endpoint);
+        final Element element = bucketCache.get(key);
+        if (element != null) {
+            return (TokenBucket) element.getObjectValue();
+        }
+        final TokenBucket rslt = new TokenBucket(capacity, tokensPerSecond);
+        final Element existing = bucketCache.putIfAbsent(new Element(key, rslt));
+        return existing != null ? (TokenBucket) existing.getObjectValue() : rslt;
+    }
+
+    /*
+     * Nested Types
+     */
+
+    /**
+     * Tokens are added lazily, when a request arrives, so idle buckets cost nothing.
+     */
+    private static final class TokenBucket {
+
+        private final int capacity;
+        private final double tokensPerNano;
+
+        /*
+         * Guarded by 'this'.
+         */
+        private double tokens;
+        private long lastRefillNanos;
+
+        /* package-private */ TokenBucket(int capacity, double tokensPerSecond) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1L);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        public synchronized boolean tryAcquire() {
+            final long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens < 1.0) {
+                return false;
+            }
+            tokens -= 1.0;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates cached responses at the moment they go out of date because of the passage of time,
+ * rather than when their time-to-live elapses.  A response goes out of date when the due date of
+ * one of its entries passes:  data sources may select entries by due date (e.g. a JDBC query for
+ * assignments not yet due), so the same fetch would produce a different response.  Callers
+ * register each response they cache, along with the action that removes it from the cache.
+ *
+ * <p>Timers are kept in a hashed timing wheel:  a ring of slots, each covering one tick, into
+ * which a timer is hashed by its deadline.  Scheduling and cancelling are O(1), and each tick
+ * visits only one slot, no matter how many responses are cached.  Deadlines further away than one
+ * revolution simply stay in their slot until their turn comes around.
+ *
+ * @since 4.8
+ */
+@Component("responseInvalidationWheel")
+public final class ResponseInvalidationWheel {
+
+    @Value("${ResponseInvalidationWheel.tickMillis:1000}")
+    private long tickMillis;
+
+    @Value("${ResponseInvalidationWheel.slots:512}")
+    private int slots;
+
+    /**
+     * Deadlines further away than this are brought forward, so that timers for responses that have
+     * already left the cache don't accumulate.  The response is fetched again at that point, which
+     * is still much less often than a short time-to-live would require.
+     */
+    @Value("${ResponseInvalidationWheel.maxDelayMillis:86400000}")
+    private long maxDelayMillis;
+
+    /*
+     * The wheel, and an index of the timers by key.  Guarded by 'this'.
+     */
+    private List<Set<Timer>> wheel;
+    private final Map<Object,Timer> timers = new HashMap<>();
+    private long startMillis;
+    private long currentTick;
+
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(new LinkedHashSet<>());
+        }
+        startMillis = System.currentTimeMillis();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread rslt = new Thread(runnable, "ResponseInvalidationWheel");
+            rslt.setDaemon(true);
+            return rslt;
+        });
+        executor.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Arranges for the invalidation of a cached response when it goes out of date, replacing any
+     * timer previously scheduled under the same key.
+     *
+     * @param key Identifies the cached response, e.g. its cache key
+     * @param response The response that was cached
+     * @param invalidation Removes the response from the cache;  invoked on the wheel's thread
+     */
+    public void schedule(Object key, NotificationResponse response, Runnable invalidation) {
+        final long now = System.currentTimeMillis();
+        final long nextChange = getNextChange(response, now);
+        if (nextChange == Long.MAX_VALUE) {
+            cancel(key);
+            return;
+        }
+        schedule(key, Math.min(nextChange, now + maxDelayMillis), invalidation);
+    }
+
+    /**
+     * Discards the timer scheduled under the specified key, if any.
+     */
+    public synchronized void cancel(Object key) {
+        final Timer timer = timers.remove(key);
+        if (timer != null) {
+            wheel.get(slotOf(timer.deadlineTick)).remove(timer);
+        }
+    }
+
+    /**
+     * @return The earliest future instant at which the response will be out of date, or
+     * <code>Long.MAX_VALUE</code> if it doesn't depend on the passage of time
+     */
+    /* package-private */ static long getNextChange(NotificationResponse response, long now) {
+        long rslt = Long.MAX_VALUE;
+        for (NotificationCategory category : response.getCategories()) {
+            for (NotificationEntry entry : category.getEntries()) {
+                final Date dueDate = entry.getDueDate();
+                if (dueDate != null && dueDate.getTime() > now) {
+                    rslt = Math.min(rslt, dueDate.getTime());
+                }
+            }
+        }
+        return rslt;
+    }
+
+    /*
+     * Implementation
+     */
+
+    private synchronized void schedule(Object key, long deadlineMillis, Runnable invalidation) {
+        cancel(key);
+        // Round up, so that the timer never fires early
+        final long deadlineTick = Math.max((deadlineMillis - startMillis + tickMillis - 1) / tickMillis,
+                currentTick + 1);
+        final Timer timer = new Timer(key, deadlineTick, invalidation);
+        wheel.get(slotOf(deadlineTick)).add(timer);
+        timers.put(key, timer);
+        logger.debug("Scheduled the invalidation of {} in {}ms", key, deadlineMillis - System.currentTimeMillis());
+    }
+
+    /**
+     * Visits the slots of the ticks that have elapsed since the last call.  Must not throw:  an
+     * exception would cancel all future executions.
+     */
+    private void advance() {
+        try {
+            final List<Timer> expired = collectExpired();
+            for (Timer timer : expired) {
+                logger.debug("Invalidating {}", timer.key);
+                timer.invalidation.run();
+            }
+        } catch (Throwable t) {
+            logger.error("Failed to invalidate cached responses", t);
+        }
+    }
+
+    private synchronized List<Timer> collectExpired() {
+        final long tick = (System.currentTimeMillis() - startMillis) / tickMillis;
+        final List<Timer> rslt = new ArrayList<>();
+        // After a long pause, a single revolution visits every slot
+        final long last = Math.min(tick, currentTick + slots);
+        for (long t = currentTick + 1; t <= last; t++) {
+            final Set<Timer> slot = wheel.get(slotOf(t));
+            slot.removeIf(timer -> {
+                if (timer.deadlineTick <= tick) {
+                    timers.remove(timer.key);
+                    rslt.add(timer);
+                    return true;
+                }
+                return false;
+            });
+        }
+        currentTick = Math.max(currentTick, tick);
+        return rslt;
+    }
+
+    private int slotOf(long tick) {
+        return (int) (tick % slots);
+    }
+
+    /*
+     * Nested Types
+     */
+
+    private static final class Timer {
+        private final Object key;
+        private final long deadlineTick;
+        private final Runnable invalidation;
+
+        private Timer(Object key, long deadlineTick, Runnable invalidation) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+            this.invalidation = invalidation;
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.controller.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jasig.portlet.notice.INotificationRepository;
+import org.jasig.portlet.notice.NotificationAction;
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.controller.SmileHttpMessageConverter;
+import org.jasig.portlet.notice.rest.ActionInvocationDTO;
+import org.jasig.portlet.notice.util.IJpaServices;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * @since 4.8
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationRestV2ControllerTest {
+
+    private static final String ACTION_ID = "markAsRead";
+
+    @Mock
+    private INotificationRepository repository;
+
+    @Mock
+    private IJpaServices jpaServices;
+
+    @InjectMocks
+    private NotificationRestV2Controller controller;
+
+    @Before
+    public void setUp() {
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(jpaServices).applyStates(any(Runnable.class));
+    }
+
+    @Test
+    public void testInvokeActionsRefreshesOnce() throws Exception {
+        // Entries from two data sources
+        final NotificationAction first = mockAction();
+        final NotificationAction second = mockAction();
+        final NotificationResponse notifications = new NotificationResponse();
+        notifications.setCategories(Arrays.asList(
+                createCategory(createEntry("1", first)),
+                createCategory(createEntry("2", second))));
+        when(repository.fetch(any(HttpServletRequest.class))).thenReturn(notifications);
+
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final List<ActionInvocationDTO> rslt = controller.invokeActions(new MockHttpServletRequest(), response,
+                Arrays.asList(createInvocation("1"), createInvocation("2"), createInvocation("3")));
+
+        assertEquals(3, rslt.size());
+        assertTrue(rslt.get(0).getSuccess());
+        assertTrue(rslt.get(1).getSuccess());
+        assertFalse(rslt.get(2).getSuccess());  // No such notification
+        verify(first).invoke(any(HttpServletRequest.class), any(HttpServletResponse.class));
+        verify(second).invoke(any(HttpServletRequest.class), any(HttpServletResponse.class));
+        verify(repository).fetch(any(HttpServletRequest.class));
+        verify(repository).refresh(any(HttpServletRequest.class), eq(response),
+                eq(new HashSet<>(Arrays.asList("1", "2"))));
+    }
+
+    @Test
+    public void testInvokeActionsRefusesLargeRequests() {
+        final List<ActionInvocationDTO> invocations = new ArrayList<>();
+        for (int i = 0; i <= NotificationRestV2Controller.MAX_ACTIONS_PER_REQUEST; i++) {
+            invocations.add(createInvocation(Integer.toString(i)));
+        }
+
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(controller.invokeActions(new MockHttpServletRequest(), response, invocations));
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+        verifyZeroInteractions(repository, jpaServices);
+    }
+
+    @Test
+    public void testFetchNotificationsNegotiatesFormat() throws Exception {
+        assertFormat(null, MediaType.APPLICATION_JSON_UTF8);
+        assertFormat("application/json", MediaType.APPLICATION_JSON_UTF8);
+        assertFormat("*/*", MediaType.APPLICATION_JSON_UTF8);
+        assertFormat("application/x-jackson-smile", SmileHttpMessageConverter.APPLICATION_SMILE);
+        assertFormat("application/json;q=0.5, application/x-jackson-smile",
+                SmileHttpMessageConverter.APPLICATION_SMILE);
+        assertFormat("application/x-jackson-smile;q=0.5, application/json", MediaType.APPLICATION_JSON_UTF8);
+        assertFormat("not a media type", MediaType.APPLICATION_JSON_UTF8);
+    }
+
+    @Test
+    public void testFetchNotificationsSkipsRefusedFormats() throws Exception {
+        // Neither choice is blocked by a type the client refuses
+        assertFormat("application/json;q=0, application/x-jackson-smile;q=0.1",
+                SmileHttpMessageConverter.APPLICATION_SMILE);
+        assertFormat("application/json;q=0, */*", SmileHttpMessageConverter.APPLICATION_SMILE);
+        assertFormat("application/x-jackson-smile;q=0, */*", MediaType.APPLICATION_JSON_UTF8);
+        assertFormat("application/x-jackson-smile;q=0", MediaType.APPLICATION_JSON_UTF8);
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * The response must have the expected format, vary by <code>Accept</code>, and come from the
+     * serialized responses cached for that format.
+     */
+    private void assertFormat(String accept, MediaType expected) throws Exception {
+        reset(repository);
+        final byte[] body = expected.toString().getBytes("UTF-8");
+        when(repository.fetch(any(HttpServletRequest.class), any(MediaType.class),
+                any(INotificationRepository.ResponseSerializer.class))).thenReturn(body);
+
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        if (accept != null) {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+        final ResponseEntity<byte[]> rslt = controller.fetchNotifications(request,
+                new ServletWebRequest(request, new MockHttpServletResponse()), null);
+
+        assertEquals(accept, HttpStatus.OK, rslt.getStatusCode());
+        assertEquals(accept, expected, rslt.getHeaders().getContentType());
+        assertEquals(accept, Collections.singletonList(HttpHeaders.ACCEPT), rslt.getHeaders().getVary());
+        assertEquals(accept, body, rslt.getBody());
+        verify(repository).fetch(eq(request), eq(expected), any(INotificationRepository.ResponseSerializer.class));
+    }
+
+    private NotificationAction mockAction() throws CloneNotSupportedException {
+        final NotificationAction rslt = mock(NotificationAction.class);
+        when(rslt.getId()).thenReturn(ACTION_ID);
+        when(rslt.clone()).thenReturn(rslt);  // NotificationResponse copies its entries
+        return rslt;
+    }
+
+    private NotificationEntry createEntry(String id, NotificationAction action) {
+        final NotificationEntry rslt = new NotificationEntry();
+        rslt.setId(id);
+        rslt.setAvailableActions(Collections.singletonList(action));
+        return rslt;
+    }
+
+    private NotificationCategory createCategory(NotificationEntry entry) {
+        final NotificationCategory rslt = new NotificationCategory();
+        rslt.setEntries(Collections.singletonList(entry));
+        return rslt;
+    }
+
+    private ActionInvocationDTO createInvocation(String notificationId) {
+        final ActionInvocationDTO rslt = new ActionInvocationDTO();
+        rslt.setActionId(ACTION_ID);
+        rslt.setNotificationId(notificationId);
+        return rslt;
+    }
+
+}
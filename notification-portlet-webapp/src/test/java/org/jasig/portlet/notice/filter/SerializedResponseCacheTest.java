@@ -0,0 +1,198 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import net.sf.ehcache.Cache;
+import org.jasig.portlet.notice.INotificationRepository;
+import org.jasig.portlet.notice.INotificationService;
+import org.jasig.portlet.notice.IVersioned;
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.action.acknowledge.AcknowledgeAction;
+import org.jasig.portlet.notice.controller.SmileHttpMessageConverter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * The serialized response is reused only for the same user, query, content type, filter state
+ * (e.g. acknowledgements and tokens) and data.
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SerializedResponseCacheTest {
+
+    private static final String USERNAME = "serialized-response";
+
+    @Autowired
+    private NotificationServiceFilterConfiguration configuration;
+
+    @Autowired
+    private ApiUrlSupportFilter apiUrlSupportFilter;
+
+    @Autowired
+    private AcknowledgePerSessionFilter acknowledgePerSessionFilter;
+
+    private final AtomicInteger serializations = new AtomicInteger();
+    private final AtomicInteger version = new AtomicInteger();
+    private INotificationService service;
+    private INotificationRepository repository;
+
+    @Before
+    public void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(USERNAME, null));
+
+        // A versioned data source;  its responses are reused until the version changes
+        service = mock(INotificationService.class,
+                withSettings().extraInterfaces(IVersioned.class));
+        when(service.getName()).thenReturn(USERNAME);
+        final Answer<NotificationResponse> response = invocation -> {
+            final NotificationCategory category = new NotificationCategory();
+            category.setTitle(USERNAME);
+            final NotificationResponse rslt = new NotificationResponse();
+            rslt.setCategories(Collections.singletonList(category));
+            return rslt;
+        };
+        when(service.fetch(any(HttpServletRequest.class))).thenAnswer(response);
+        when(((IVersioned) service).fetch(any(HttpServletRequest.class), any())).thenAnswer(response);
+        when(((IVersioned) service).getVersion(any(HttpServletRequest.class))).thenAnswer(invocation -> version.get());
+
+        // Start from nothing
+        for (String cache : new String[] { "responseCache", "countCache", "serializedResponseCache" }) {
+            ((Cache) ReflectionTestUtils.getField(configuration, cache)).removeAll();
+        }
+
+        // The same collaborators as the application's repository, but only this data source
+        final NotificationServiceFilterConfiguration testConfiguration = new NotificationServiceFilterConfiguration();
+        for (String field : new String[] { "usernameFinder", "responseCache", "countCache", "serializedResponseCache",
+                "responseInvalidationWheel", "notificationChangeBroadcaster", "requestThrottle" }) {
+            ReflectionTestUtils.setField(testConfiguration, field, ReflectionTestUtils.getField(configuration, field));
+        }
+        ReflectionTestUtils.setField(testConfiguration, "filters", Arrays.asList(apiUrlSupportFilter, acknowledgePerSessionFilter));
+        ReflectionTestUtils.setField(testConfiguration, "services", Collections.singleton(service));
+        ReflectionTestUtils.setField(testConfiguration, "cacheSerializedResponses", true);
+        repository = testConfiguration.notificationRepository();
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v2/notifications");
+        request.setQueryString("fields=title");
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(1, serializations.get());
+
+        // Nothing has changed
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(1, serializations.get());
+
+        request.setQueryString("fields=title,body");
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(2, serializations.get());
+
+        fetch(request, SmileHttpMessageConverter.APPLICATION_SMILE);
+        assertEquals(3, serializations.get());
+
+        request.getSession().setAttribute(AcknowledgeAction.SESSION_ATTR_PREFIX + "1", Boolean.TRUE);
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(4, serializations.get());
+
+        // Action URLs carry the tokens
+        request.setQueryString(null);
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(5, serializations.get());
+
+        request.setAttribute(CsrfToken.class.getName(), new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "first"));
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(6, serializations.get());
+
+        request.setAttribute(CsrfToken.class.getName(), new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "second"));
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(7, serializations.get());
+
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer token");
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(8, serializations.get());
+
+        // Nothing has changed
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(8, serializations.get());
+    }
+
+    @Test
+    public void testFingerprint() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v2/notifications");
+        fetch(request, MediaType.APPLICATION_JSON);
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(1, serializations.get());
+
+        // New data
+        version.incrementAndGet();
+        fetch(request, MediaType.APPLICATION_JSON);
+        assertEquals(2, serializations.get());
+
+        // The service receives the version the repository obtained, rather than obtaining it again
+        verify(service, never()).fetch(any(HttpServletRequest.class));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private void fetch(HttpServletRequest request, MediaType contentType) throws Exception {
+        repository.fetch(request, contentType, response -> {
+            serializations.incrementAndGet();
+            return new byte[0];
+        });
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Requests that issue events to the same new users at once must all succeed;  see
+ * {@link INotificationDao#createMissingUsers(java.util.Collection)}.
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ConcurrentUserCreationTest {
+
+    private static final int THREADS = 12;
+    private static final int USERS = 200;
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testCreateEventsForNewUsersConcurrently() throws Exception {
+        final EntryDTO entry = new EntryDTO();
+        entry.setTitle("Concurrent");
+        entry.setSource("concurrent-users");
+        final long entryId = restService.createNotification(entry).getId();
+
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            usernames.add("concurrent-user-" + i);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final List<String> shuffled = new ArrayList<>(usernames);
+                Collections.shuffle(shuffled);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    // As callers do:  create the users first, then write the events
+                    notificationDao.createMissingUsers(shuffled);
+                    return notificationDao.createEvents(entryId, shuffled, NotificationState.ISSUED,
+                            new Timestamp(System.currentTimeMillis()));
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(USERS), result.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals(Integer.valueOf(USERS), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "USER WHERE USERNAME LIKE 'concurrent-user-%'",
+                Integer.class));
+        assertEquals(Integer.valueOf(USERS * THREADS), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "EVENT WHERE ENTRY_ID = ?", Integer.class, entryId));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EventCompactionJobTest {
+
+    private static final String USERNAME = "event-compaction";
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private EventCompactionJob eventCompactionJob;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testArchivesOnlySupersededEvents() {
+        final long entryId = restService.createNotification(TestEntries.createEntry("compaction", USERNAME)).getId();
+        final long now = System.currentTimeMillis();
+        for (int days : new int[] { 40, 39, 38, 2, 1 }) {
+            notificationDao.createEvents(entryId, Collections.singleton(USERNAME), NotificationState.READ,
+                    new Timestamp(now - TimeUnit.DAYS.toMillis(days)));
+        }
+
+        // Walk the table a few ids at a time
+        ReflectionTestUtils.setField(eventCompactionJob, "batchSize", 3);
+        assertTrue(eventCompactionJob.compact() >= 2L);
+
+        // The first and last READ survive, as do those within the retention period
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals(Integer.valueOf(3), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "EVENT WHERE ENTRY_ID = ? AND STATE = ?",
+                Integer.class, entryId, NotificationState.READ.ordinal()));
+        assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "EVENT_ARCHIVE WHERE ENTRY_ID = ?",
+                Integer.class, entryId));
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Simulates an upgrade from a version in which events drew their ids from
+ * <code>hibernate_sequence</code>:  events with ids beyond the generator must not collide with
+ * new ones.
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EventIdSeederTest {
+
+    private static final String USERNAME = "event-id-seeder";
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private EventIdSeeder eventIdSeeder;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+    private long entryId;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        entryId = restService.createNotification(TestEntries.createEntry("seeder", USERNAME)).getId();
+    }
+
+    @Test
+    public void testLegacyEventsBeyondGenerator() {
+        // Beyond the block of ids this JVM already holds (a new node holds none)
+        final long legacyId = eventIdSeeder.seed() + JpaNotificationDao.EVENT_BATCH_SIZE * 10;
+        insertLegacyEvent(legacyId);
+
+        assertEquals(legacyId + 1L, eventIdSeeder.seed());
+        createEvents(JpaNotificationDao.EVENT_BATCH_SIZE * 2);
+        assertTrue(getMaxEventId() > legacyId);
+
+        // The generator never goes backwards
+        final long nextValue = eventIdSeeder.seed();
+        assertTrue(nextValue > getMaxEventId());
+        assertTrue(eventIdSeeder.seed() >= nextValue);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private void insertLegacyEvent(long id) {
+        final Integer userId = jdbcTemplate.queryForObject("SELECT ID FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "USER WHERE USERNAME = ?", Integer.class, USERNAME);
+        jdbcTemplate.update("INSERT INTO " + JpaNotificationService.TABLENAME_PREFIX + "EVENT"
+                + " (ID, ENTRY_ID, USER_ID, TIMESTAMP, STATE) VALUES (?, ?, ?, ?, ?)",
+                id, entryId, userId, new Timestamp(System.currentTimeMillis()), NotificationState.ISSUED.ordinal());
+    }
+
+    private void createEvents(int count) {
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            usernames.add(USERNAME + i);
+        }
+        assertEquals(count, notificationDao.createEvents(entryId, usernames, NotificationState.ISSUED,
+                new Timestamp(System.currentTimeMillis())));
+    }
+
+    private long getMaxEventId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(ID) FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "EVENT", Long.class);
+    }
+
+}
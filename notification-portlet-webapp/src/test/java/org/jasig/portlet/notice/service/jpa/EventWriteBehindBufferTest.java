@@ -0,0 +1,200 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @since 4.8
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class EventWriteBehindBufferTest {
+
+    private static final long ENTRY_ID = 1L;
+    private static final String USERNAME = "write-behind";
+
+    @Mock
+    private INotificationDao notificationDao;
+
+    @InjectMocks
+    private EventWriteBehindBuffer buffer;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "capacity", 1);
+        ReflectionTestUtils.setField(buffer, "batchSize", 500);
+        // Every failed event is due again at once
+        ReflectionTestUtils.setField(buffer, "flushIntervalMillis", 0L);
+        ReflectionTestUtils.setField(buffer, "maxRetryDelayMillis", 0L);
+        when(notificationDao.getEvents(anyLong(), anyString())).thenReturn(Collections.emptyList());
+        when(notificationDao.getEntry(ENTRY_ID)).thenReturn(new JpaEntry());
+    }
+
+    @Test
+    public void testFailedEventsAreRetried() {
+        doThrow(new DataAccessResourceFailureException("Unavailable"))
+                .doThrow(new DataAccessResourceFailureException("Unavailable"))
+                .doThrow(new DataAccessResourceFailureException("Unavailable"))
+                .doReturn(1)
+                .when(notificationDao).createEvents(anyListOf(JpaEvent.class));
+
+        final JpaEvent event = newEvent();
+        buffer.add(event);
+        buffer.flush();  // Batch, then individually
+        assertEquals(Collections.singletonList(event), buffer.getEvents(ENTRY_ID, USERNAME));
+        assertEquals(1, buffer.size());
+
+        buffer.flush();  // Fails again
+        assertEquals(Collections.singletonList(event), buffer.getEvents(ENTRY_ID, USERNAME));
+
+        buffer.flush();  // Written
+        assertEquals(Collections.emptyList(), buffer.getEvents(ENTRY_ID, USERNAME));
+        assertEquals(0, buffer.size());
+        assertEquals(0L, buffer.getVersion(USERNAME));
+        verify(notificationDao, times(4)).createEvents(anyListOf(JpaEvent.class));
+    }
+
+    @Test
+    public void testEventsForRemovedEntriesAreDiscarded() {
+        doThrow(new DataAccessResourceFailureException("Constraint"))
+                .when(notificationDao).createEvents(anyListOf(JpaEvent.class));
+        when(notificationDao.getEntry(ENTRY_ID)).thenReturn(null);
+
+        buffer.add(newEvent());
+        buffer.flush();
+        assertEquals(Collections.emptyList(), buffer.getEvents(ENTRY_ID, USERNAME));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testFailedEventsCountTowardCapacity() {
+        doThrow(new DataAccessResourceFailureException("Unavailable"))
+                .doThrow(new DataAccessResourceFailureException("Unavailable"))
+                .doReturn(1)
+                .when(notificationDao).createEvents(anyListOf(JpaEvent.class));
+
+        final JpaEvent failed = newEvent();
+        buffer.add(failed);
+        buffer.flush();
+
+        // The buffer is full, so the next event is written at once;  the failed one stays
+        final JpaEvent next = newEvent();
+        buffer.add(next);
+        verify(notificationDao).createEvents(Collections.singletonList(next));
+        final List<JpaEvent> pending = buffer.getEvents(ENTRY_ID, USERNAME);
+        assertEquals(Collections.singletonList(failed), pending);
+    }
+
+    @Test
+    public void testBatchedEventsAreVisibleWithinTheBatch() {
+        final JpaEvent first = newEvent();
+        final JpaEvent second = newEvent();
+        buffer.batch(() -> {
+            // Later actions in a bulk request see the events of earlier ones
+            buffer.add(first);
+            assertEquals(Collections.singletonList(first), buffer.getEvents(ENTRY_ID, USERNAME));
+            buffer.add(second);
+            assertEquals(Arrays.asList(first, second), buffer.getEvents(ENTRY_ID, USERNAME));
+            verify(notificationDao, never()).createEvents(anyListOf(JpaEvent.class));
+        });
+
+        // One fits in the buffer;  the other is written at once
+        verify(notificationDao).createEvents(Collections.singletonList(second));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void testBatchIsWrittenTogetherWhenDisabled() {
+        ReflectionTestUtils.setField(buffer, "enabled", false);
+
+        final JpaEvent first = newEvent();
+        final JpaEvent second = newEvent();
+        buffer.batch(() -> {
+            buffer.add(first);
+            buffer.add(second);
+            assertEquals(Arrays.asList(first, second), buffer.getEvents(ENTRY_ID, USERNAME));
+        });
+
+        verify(notificationDao).createEvents(Arrays.asList(first, second));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testBatchEndsWhenTheOperationFails() {
+        ReflectionTestUtils.setField(buffer, "enabled", false);
+
+        final JpaEvent recorded = newEvent();
+        try {
+            buffer.batch(() -> {
+                buffer.add(recorded);
+                throw new IllegalStateException("Failed part way");
+            });
+            fail("The exception should propagate");
+        } catch (IllegalStateException expected) {
+            // The events recorded before the failure are written
+            verify(notificationDao).createEvents(Collections.singletonList(recorded));
+        }
+
+        // The thread is no longer in a batch, so the next event is written at once
+        final JpaEvent next = newEvent();
+        buffer.add(next);
+        verify(notificationDao).createEvents(Collections.singletonList(next));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private JpaEvent newEvent() {
+        final JpaEntry entry = new JpaEntry();
+        entry.setId(ENTRY_ID);
+        final JpaEvent rslt = new JpaEvent();
+        rslt.setEntry(entry);
+        rslt.setUsername(USERNAME);
+        rslt.setState(NotificationState.READ);
+        rslt.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        return rslt;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Group fan-out must not issue a notification a second time to members who already have it
+ * (e.g. direct recipients who are also members of an addressed group).
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class GroupFanOutExclusionTest {
+
+    private static final String DIRECT = "fan-out-direct";
+    private static final String MEMBER = "fan-out-member";
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Test
+    public void testDirectRecipientExcluded() {
+        final long entryId = restService.createNotification(TestEntries.createEntry("fan-out", DIRECT)).getId();
+
+        assertEquals(Collections.singleton(DIRECT), notificationDao.getUsernamesWithEvent(entryId,
+                Arrays.asList(DIRECT, MEMBER), NotificationState.ISSUED));
+        assertEquals(Collections.emptySet(), notificationDao.getUsernamesWithEvent(entryId,
+                Arrays.asList(DIRECT, MEMBER), NotificationState.READ));
+
+        notificationDao.createEvents(entryId, Collections.singleton(MEMBER), NotificationState.ISSUED,
+                new Timestamp(System.currentTimeMillis()));
+        assertEquals(new HashSet<>(Arrays.asList(DIRECT, MEMBER)), notificationDao.getUsernamesWithEvent(entryId,
+                Arrays.asList(DIRECT, MEMBER), NotificationState.ISSUED));
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.jasig.portlet.notice.rest.RecipientDTO;
+import org.jasig.portlet.notice.rest.RecipientType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bodies are stored apart from the rest of the entry (see {@link JpaEntryBody}), possibly
+ * compressed, with a summary.
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class JpaEntryBodyTest {
+
+    private static final String USERNAME = "entry-body";
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private NotificationDTOMapper notificationMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testSummarize() {
+        assertNull(JpaEntryBody.summarize(null));
+        assertEquals("Fish & chips", JpaEntryBody.summarize("Fish &amp; chips"));
+        assertEquals("Apply to graduate by Friday.", JpaEntryBody.summarize(
+                "<style>p { color: red; }</style><p>Apply to <b>graduate</b>\n by Friday.</p>"
+                + "<script>alert('x < y');</script>"));
+
+        final String summary = JpaEntryBody.summarize(StringUtils.repeat("word ", 100));
+        assertTrue(summary.length() <= JpaEntryBody.SUMMARY_LENGTH);
+        assertTrue(summary.endsWith("word\u2026"));
+    }
+
+    @Test
+    public void testShortBody() {
+        final String body = "<p>Your <i>transcript</i> is ready.</p>";
+        final long entryId = createEntry(body);
+
+        assertEquals(body, notificationDao.getBody(entryId));
+        assertEquals("Your transcript is ready.", notificationDao.getEntry(entryId).getSummary());
+
+        // Entries carry the summary;  the body is read on demand
+        final EntryDTO listed = restService.getNotification(entryId, true);
+        assertNull(listed.getBody());
+        assertEquals("Your transcript is ready.", listed.getSummary());
+        assertEquals(body, restService.getBody(entryId));
+    }
+
+    @Test
+    public void testLongBodyIsCompressed() {
+        final String body = "<p>" + StringUtils.repeat("Registration opens soon. ", 500) + "</p>";
+        final JpaNotificationDao target = AopTestUtils.getTargetObject(notificationDao);
+        ReflectionTestUtils.setField(target, "compressBodies", true);
+        final long entryId;
+        try {
+            entryId = createEntry(body);
+        } finally {
+            ReflectionTestUtils.setField(target, "compressBodies", false);
+        }
+
+        final Map<String,Object> row = new JdbcTemplate(dataSource).queryForMap("SELECT BODY, COMPRESSED_BODY FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "ENTRY WHERE ID = ?", entryId);
+        assertNull(row.get("BODY"));
+        assertNotNull(row.get("COMPRESSED_BODY"));
+        assertEquals(body, notificationDao.getBody(entryId));
+        assertTrue(notificationDao.getEntry(entryId).getSummary().length() <= JpaEntryBody.SUMMARY_LENGTH);
+    }
+
+    @Test
+    public void testMissingBody() {
+        final long entryId = createEntry(null);
+
+        assertNull(notificationDao.getBody(entryId));
+        assertNull(notificationDao.getEntry(entryId).getSummary());
+    }
+
+    @Test
+    public void testUpdateBody() {
+        final long entryId = createEntry("Before");
+
+        // As the REST API does
+        final EntryDTO entry = restService.getNotification(entryId, true);
+        entry.setBody("After");
+        notificationDao.createOrUpdateEntry(notificationMapper.toJpaEntry(entry));
+
+        assertEquals("After", notificationDao.getBody(entryId));
+        assertEquals("After", notificationDao.getEntry(entryId).getSummary());
+    }
+
+    @Test
+    public void testGetBodies() {
+        final long first = createEntry("First");
+        final long second = createEntry("Second");
+        final long missing = createEntry(null);
+
+        final Map<Long,String> bodies = notificationDao.getBodies(Arrays.asList(first, second, missing));
+        assertEquals("First", bodies.get(first));
+        assertEquals("Second", bodies.get(second));
+        assertNull(bodies.get(missing));
+        assertFalse(notificationDao.getBodies(Arrays.asList(-1L)).containsKey(-1L));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private long createEntry(String body) {
+        final RecipientDTO recipient = new RecipientDTO();
+        recipient.setUsername(USERNAME);
+        final AddresseeDTO addressee = new AddresseeDTO();
+        addressee.setName(USERNAME);
+        addressee.setType(RecipientType.INDIVIDUAL);
+        addressee.setRecipients(Collections.singleton(recipient));
+        final EntryDTO entry = new EntryDTO();
+        entry.setTitle("Body");
+        entry.setSource(USERNAME);
+        entry.setBody(body);
+        entry.setAddressees(Collections.singleton(addressee));
+        return restService.createNotification(entry).getId();
+    }
+
+}
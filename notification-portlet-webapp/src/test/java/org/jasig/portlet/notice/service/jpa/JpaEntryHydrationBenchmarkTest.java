@@ -0,0 +1,192 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.AttributeDTO;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.jasig.portlet.notice.rest.RecipientDTO;
+import org.jasig.portlet.notice.rest.RecipientType;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that the packed attributes of {@link JpaEntry} match the normalized ones.  The
+ * benchmark (skipped unless <code>-Dbenchmark=true</code>) measures loading an inbox with and
+ * without the packed copy, both from the database (cold) and from the second-level cache (warm).
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class JpaEntryHydrationBenchmarkTest {
+
+    private static final String USERNAME = "hydration-benchmark";
+    private static final int ENTRY_COUNT = 200;
+    private static final int ATTRIBUTE_COUNT = 5;
+    private static final long BENCHMARK_MILLIS = 5000L;
+
+    private static boolean populated = false;
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Before
+    public void setUp() {
+        if (!populated) {
+            for (int i = 0; i < ENTRY_COUNT; i++) {
+                restService.createNotification(createEntry(i));
+            }
+            populated = true;
+        }
+    }
+
+    @Test
+    public void testPackedMatchesNormalized() {
+        // Only this test's entries;  others may have no packed copy
+        for (JpaEntry entry : notificationDao.getEntriesByRecipient(USERNAME)) {
+            // The REST API reads the normalized attributes
+            final Map<String,List<String>> normalized = new TreeMap<>();
+            restService.getNotification(entry.getId(), false).getAttributes()
+                    .forEach(attribute -> normalized.put(attribute.getName(), attribute.getValues()));
+            assertEquals(normalized, entry.getAttributeMap());
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Assume.assumeTrue("Benchmarks are disabled", Boolean.getBoolean("benchmark"));
+
+        final double packedCold = measure(true);
+        final double packedWarm = measure(false);
+
+        // Remove the packed copies, as for entries written before version 4.8
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        final List<Map<String,Object>> packed = jdbcTemplate.queryForList(
+                "SELECT ID, PACKED_ATTRIBUTES FROM NOTICE_ENTRY");
+        jdbcTemplate.update("UPDATE NOTICE_ENTRY SET PACKED_ATTRIBUTES = NULL");
+        try {
+            final double normalizedCold = measure(true);
+            final double normalizedWarm = measure(false);
+            logger.info("Inbox of {} entries with {} attributes each (cold):  normalized={} requests/second, packed={} requests/second",
+                    ENTRY_COUNT, ATTRIBUTE_COUNT, Math.round(normalizedCold), Math.round(packedCold));
+            logger.info("Inbox of {} entries with {} attributes each (warm):  normalized={} requests/second, packed={} requests/second",
+                    ENTRY_COUNT, ATTRIBUTE_COUNT, Math.round(normalizedWarm), Math.round(packedWarm));
+        } finally {
+            for (Map<String,Object> row : packed) {
+                jdbcTemplate.update("UPDATE NOTICE_ENTRY SET PACKED_ATTRIBUTES = ? WHERE ID = ?",
+                        row.get("PACKED_ATTRIBUTES"), row.get("ID"));
+            }
+            entityManagerFactory.getCache().evictAll();
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    private EntryDTO createEntry(int id) {
+        final EntryDTO rslt = new EntryDTO();
+        rslt.setTitle("Title " + id);
+        rslt.setSource("hydration");
+        rslt.setPriority(1);
+        rslt.setBody("Body of notification " + id);
+        final Set<AttributeDTO> attributes = new HashSet<>();
+        for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+            final AttributeDTO attribute = new AttributeDTO();
+            attribute.setName("attribute" + i);
+            attribute.setValues(Arrays.asList("a" + id, "b" + id, "c" + id));
+            attributes.add(attribute);
+        }
+        rslt.setAttributes(attributes);
+        final RecipientDTO recipient = new RecipientDTO();
+        recipient.setUsername(USERNAME);
+        final AddresseeDTO addressee = new AddresseeDTO();
+        addressee.setName(USERNAME);
+        addressee.setType(RecipientType.INDIVIDUAL);
+        addressee.setRecipients(Collections.singleton(recipient));
+        rslt.setAddressees(Collections.singleton(addressee));
+        return rslt;
+    }
+
+    /**
+     * Loads the inbox and reads the attributes of every entry.
+     *
+     * @param cold Evict the second-level cache before each request
+     * @return Requests per second
+     */
+    private double measure(boolean cold) {
+        // Warm up;  the JIT needs more than a few iterations to settle
+        final long warmUntil = System.currentTimeMillis() + BENCHMARK_MILLIS;
+        while (System.currentTimeMillis() < warmUntil) {
+            loadInbox(cold);
+        }
+        int count = 0;
+        final long start = System.currentTimeMillis();
+        long elapsed;
+        do {
+            loadInbox(cold);
+            ++count;
+            elapsed = System.currentTimeMillis() - start;
+        } while (elapsed < BENCHMARK_MILLIS);
+        return count * 1000.0 / elapsed;
+    }
+
+    private void loadInbox(boolean cold) {
+        if (cold) {
+            entityManagerFactory.getCache().evictAll();
+        }
+        final Set<JpaEntry> entries = notificationDao.getEntriesByRecipient(USERNAME);
+        assertEquals(ENTRY_COUNT, entries.size());
+        entries.forEach(entry -> assertEquals(ATTRIBUTE_COUNT, entry.getAttributeMap().size()));
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import javax.sql.DataSource;
+
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The revision of an updated entry must follow the one in the database, even if the
+ * second-level cache holds an older copy of the entry (e.g. because another node updated it).
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class JpaEntryRevisionTest {
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private NotificationDTOMapper notificationMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testRevisionIgnoresCachedEntry() {
+        final long entryId = restService.createNotification(TestEntries.createEntry("revision", "entry-revision")).getId();
+        final EntryDTO entry = restService.getNotification(entryId, true);
+        notificationDao.getEntry(entryId);  // Cached now
+
+        // As another node would
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("UPDATE " + JpaNotificationService.TABLENAME_PREFIX + "ENTRY SET REVISION = 5 WHERE ID = ?",
+                entryId);
+
+        entry.setTitle("Updated");
+        notificationDao.createOrUpdateEntry(notificationMapper.toJpaEntry(entry));
+
+        assertEquals(Integer.valueOf(6), jdbcTemplate.queryForObject("SELECT REVISION FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "ENTRY WHERE ID = ?", Integer.class, entryId));
+    }
+
+}
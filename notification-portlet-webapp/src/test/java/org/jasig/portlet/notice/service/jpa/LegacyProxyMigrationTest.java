@@ -0,0 +1,93 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.AttributeDTO;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Simulates an upgrade from a version in which proxies were identified only by a custom attribute.
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class LegacyProxyMigrationTest {
+
+    private static final String SOURCE = LegacyProxyMigrationTest.class.getName();
+    private static final String ID_ATTRIBUTE = SOURCE + ".ID";
+    private static final String USERNAME = "legacy-proxy";
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Test
+    public void testMapLegacyProxies() {
+        final long original = createLegacyProxy("external-1", NotificationState.READ);
+        final long duplicate = createLegacyProxy("external-1", NotificationState.SNOOZED);
+        final long other = createLegacyProxy("external-2", NotificationState.READ);
+
+        assertEquals(2, restService.mapLegacyProxyNotifications(SOURCE, ID_ATTRIBUTE));
+        assertEquals(original, restService.getProxyNotification(SOURCE, "external-1").getId());
+        assertEquals(other, restService.getProxyNotification(SOURCE, "external-2").getId());
+
+        // The events of the duplicate belong to the original now
+        assertNull(restService.getNotification(duplicate, false));
+        assertEquals(2, restService.getEventsByNotificationAndUser(original, USERNAME).size());
+
+        // Only once
+        createLegacyProxy("external-3", NotificationState.READ);
+        assertEquals(0, restService.mapLegacyProxyNotifications(SOURCE, ID_ATTRIBUTE));
+        assertNull(restService.getProxyNotification(SOURCE, "external-3"));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private long createLegacyProxy(String externalId, NotificationState state) {
+        final AttributeDTO attribute = new AttributeDTO();
+        attribute.setName(ID_ATTRIBUTE);
+        attribute.setValues(Collections.singletonList(externalId));
+        final EntryDTO entry = new EntryDTO();
+        entry.setTitle("Legacy proxy");
+        entry.setSource(SOURCE);
+        entry.setAttributes(Collections.singleton(attribute));
+        final long rslt = restService.createNotification(entry).getId();
+        notificationDao.createEvents(rslt, Collections.singleton(USERNAME), state,
+                new Timestamp(System.currentTimeMillis()));
+        return rslt;
+    }
+
+}
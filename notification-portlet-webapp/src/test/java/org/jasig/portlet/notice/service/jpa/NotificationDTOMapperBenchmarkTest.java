@@ -0,0 +1,214 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.dozer.DozerBeanMapper;
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.RecipientType;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link NotificationDTOMapper} to the Dozer-based mapping it replaced (using the
+ * original mapping file, which now lives in src/test/resources).  The output must be the same;
+ * the benchmark (skipped unless <code>-Dbenchmark=true</code>) measures the throughput of mapping
+ * and serializing the payloads of the v1 REST endpoints.
+ *
+ * @since 4.8
+ */
+public class NotificationDTOMapperBenchmarkTest {
+
+    private static final int ENTRY_COUNT = 500;
+    private static final int EVENT_COUNT = 5000;
+    private static final long BENCHMARK_MILLIS = 5000L;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final NotificationDTOMapper mapper = new NotificationDTOMapper();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private DozerBeanMapper dozer;
+    private List<JpaEntry> entries;
+    private List<JpaEvent> events;
+
+    @Before
+    public void setUp() {
+        dozer = new DozerBeanMapper(Collections.singletonList("mapping/jpa-mappings.xml"));
+
+        entries = new ArrayList<>(ENTRY_COUNT);
+        for (int i = 1; i <= ENTRY_COUNT; i++) {
+            entries.add(createEntry(i));
+        }
+        events = new ArrayList<>(EVENT_COUNT);
+        for (int i = 1; i <= EVENT_COUNT; i++) {
+            final JpaEvent event = new JpaEvent();
+            event.setId(i);
+            event.setEntry(entries.get(i % ENTRY_COUNT));
+            event.setUsername("user" + i);
+            event.setState(NotificationState.values()[i % NotificationState.values().length]);
+            event.setTimestamp(new Timestamp(1600000000000L + i));
+            events.add(event);
+        }
+    }
+
+    @Test
+    public void testSameOutputAsDozer() throws Exception {
+        for (JpaEntry entry : entries.subList(0, 10)) {
+            assertEquals(toCanonicalJson(dozer.map(entry, EntryDTO.class)),
+                    toCanonicalJson(mapper.toEntry(entry)));
+        }
+        for (JpaEvent event : events.subList(0, 10)) {
+            assertEquals(toCanonicalJson(dozer.map(event, EventDTO.class)),
+                    toCanonicalJson(mapper.toEvent(event)));
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Assume.assumeTrue("Benchmarks are disabled", Boolean.getBoolean("benchmark"));
+
+        // GET /api/v1/notifications
+        final double dozerEntries = measure(() -> {
+            final List<EntryDTO> rslt = new ArrayList<>();
+            entries.forEach(entry -> rslt.add(dozer.map(entry, EntryDTO.class)));
+            return rslt;
+        });
+        final double mapperEntries = measure(() -> mapper.toEntryList(entries));
+        logger.info("GET /api/v1/notifications ({} entries):  Dozer={} requests/second, NotificationDTOMapper={} requests/second",
+                ENTRY_COUNT, Math.round(dozerEntries), Math.round(mapperEntries));
+
+        // GET /api/v1/notifications/{notificationId}/events
+        final double dozerEvents = measure(() -> {
+            final List<EventDTO> rslt = new ArrayList<>();
+            events.forEach(event -> rslt.add(dozer.map(event, EventDTO.class)));
+            return rslt;
+        });
+        final double mapperEvents = measure(() -> mapper.toEventList(events));
+        logger.info("GET /api/v1/notifications/{id}/events ({} events):  Dozer={} requests/second, NotificationDTOMapper={} requests/second",
+                EVENT_COUNT, Math.round(dozerEvents), Math.round(mapperEvents));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private JpaEntry createEntry(int id) {
+        final JpaEntry rslt = new JpaEntry();
+        rslt.setId(id);
+        rslt.setTitle("Title " + id);
+        rslt.setSource("source");
+        rslt.setUrl("https://example.org/" + id);
+        rslt.setLinkText("More");
+        rslt.setPriority(id % 5);
+        rslt.setDueDate(new Timestamp(1600000000000L + id));
+        rslt.setBody("Body of notification " + id);
+        for (int i = 0; i < 3; i++) {
+            final JpaAttribute attribute = new JpaAttribute();
+            attribute.setId(id * 10L + i);
+            attribute.setName("attribute" + i);
+            attribute.setValues(Arrays.asList("a" + i, "b" + i));
+            attribute.setEntry(rslt);
+            rslt.addAttribute(attribute);
+        }
+        final JpaAction action = new JpaAction();
+        action.setId(id);
+        action.setLabel("Read");
+        action.setClazz("org.jasig.portlet.notice.action.read.ReadAction");
+        action.setEntry(rslt);
+        rslt.addAction(action);
+        final JpaAddressee addressee = new JpaAddressee();
+        addressee.setId(id);
+        addressee.setName("Students");
+        addressee.setType(RecipientType.INDIVIDUAL);
+        addressee.setEntry(rslt);
+        for (int i = 0; i < 5; i++) {
+            final JpaRecipient recipient = new JpaRecipient();
+            recipient.setId(id * 10L + i);
+            recipient.setUsername("student" + i);
+            recipient.setAddressee(addressee);
+            addressee.addRecipient(recipient);
+        }
+        rslt.addAddressee(addressee);
+        return rslt;
+    }
+
+    /**
+     * Mapping plus JSON serialization, as in the REST endpoint.
+     *
+     * @return Operations per second
+     */
+    private double measure(Supplier<List<?>> operation) throws Exception {
+        // Warm up
+        for (int i = 0; i < 20; i++) {
+            objectMapper.writeValueAsBytes(operation.get());
+        }
+        int count = 0;
+        final long start = System.currentTimeMillis();
+        long elapsed;
+        do {
+            objectMapper.writeValueAsBytes(operation.get());
+            ++count;
+            elapsed = System.currentTimeMillis() - start;
+        } while (elapsed < BENCHMARK_MILLIS);
+        return count * 1000.0 / elapsed;
+    }
+
+    /**
+     * JSON with the elements of arrays (which come from sets) in a predictable order.
+     */
+    private String toCanonicalJson(Object dto) {
+        return canonicalize(objectMapper.valueToTree(dto)).toString();
+    }
+
+    private JsonNode canonicalize(JsonNode node) {
+        if (node.isObject()) {
+            final ObjectNode rslt = objectMapper.createObjectNode();
+            node.fields().forEachRemaining(field -> rslt.set(field.getKey(), canonicalize(field.getValue())));
+            return rslt;
+        }
+        if (node.isArray()) {
+            final List<JsonNode> elements = new ArrayList<>();
+            node.forEach(element -> elements.add(canonicalize(element)));
+            elements.sort(Comparator.comparing(JsonNode::toString));
+            final ArrayNode rslt = objectMapper.createArrayNode();
+            rslt.addAll(elements);
+            return rslt;
+        }
+        return node;
+    }
+
+}
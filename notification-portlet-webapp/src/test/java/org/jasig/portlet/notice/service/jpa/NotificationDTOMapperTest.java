@@ -0,0 +1,282 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.collection.internal.PersistentSet;
+import org.jasig.portlet.notice.rest.ActionDTO;
+import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.AttributeDTO;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.jasig.portlet.notice.rest.RecipientDTO;
+import org.jasig.portlet.notice.rest.RecipientType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ReflectionUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Josh Helmer, jhelmer.unicon.net
+ * @since 3.0
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class NotificationDTOMapperTest {
+
+    @Autowired
+    private NotificationDTOMapper mapper;
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testMapJpaEntry() {
+        final EntryDTO dto = createEntry(1L, "title");
+        dto.setAttributes(new HashSet<>(Arrays.asList(
+                createAttribute("name1", "val1", "val2"),
+                createAttribute("name2", "val2", "val3", "val4"))));
+        dto.setAddressees(new HashSet<>(Arrays.asList(
+                createAddressee("user1", RecipientType.INDIVIDUAL,
+                        createRecipient(100L, "test-user1"), createRecipient(101L, "test-user2")),
+                createAddressee("group1", RecipientType.GROUP, createRecipient(200L, "test-group1")))));
+        dto.setActions(new HashSet<>(Arrays.asList(
+                createAction(1L, "action1", "org.jasig.test.Class1"),
+                createAction(2L, "action2", "org.jasig.test.Class2"))));
+
+        final JpaEntry jpa = mapper.toJpaEntry(dto);
+        assertMatches(jpa, dto);
+        jpa.getAttributes().forEach(attribute -> assertSame(jpa, attribute.getEntry()));
+        jpa.getActions().forEach(action -> assertSame(jpa, action.getEntryId()));
+        for (JpaAddressee addressee : jpa.getAddressees()) {
+            assertSame(jpa, addressee.getEntryId());
+            addressee.getRecipients().forEach(recipient -> assertSame(addressee, recipient.getAddressee()));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMapJpaEntryWithLazyCollections() {
+        final EntryDTO dto = createEntry(1L, "title");
+        // Not loaded, and (without a session) cannot be
+        dto.setAttributes(new PersistentSet());
+        dto.setAddressees(new PersistentSet());
+        dto.setActions(new PersistentSet());
+
+        final JpaEntry jpa = mapper.toJpaEntry(dto);
+        assertEquals(dto.getTitle(), jpa.getTitle());
+        assertTrue(jpa.getAttributes().isEmpty());
+        assertTrue(jpa.getAddressees().isEmpty());
+        assertTrue(jpa.getActions().isEmpty());
+    }
+
+    @Test
+    public void testMapAddresseeWithLazyRecipients() {
+        final JpaAddressee jpa = new JpaAddressee();
+        jpa.setId(1L);
+        jpa.setName("group1");
+        jpa.setType(RecipientType.GROUP);
+        setUnloaded(jpa, "recipients");
+
+        final AddresseeDTO dto = mapper.toAddressee(jpa);
+        assertEquals(jpa.getName(), dto.getName());
+        assertTrue(dto.getRecipients().isEmpty());
+    }
+
+    @Test
+    public void testMapDTOEntry() {
+        final JpaEntry jpa = mapper.toJpaEntry(createEntry(1L, "jpatitle"));
+        jpa.addAttribute(createJpaAttribute(jpa, "name1", "val1", "val2"));
+        jpa.addAttribute(createJpaAttribute(jpa, "name2", "jpa1", "jpa2", "jpa3"));
+        jpa.addAddressee(mapper.toJpaAddressee(createAddressee("user1", RecipientType.INDIVIDUAL,
+                createRecipient(100L, "test-user1"), createRecipient(101L, "test-user2"))));
+        jpa.addAddressee(mapper.toJpaAddressee(createAddressee("group1", RecipientType.GROUP,
+                createRecipient(200L, "test-group1"))));
+        jpa.addAction(createJpaAction(jpa, 1L, "label1", "org.jasig.test.Class1"));
+        jpa.addAction(createJpaAction(jpa, 2L, "label2", "org.jasig.test.Class2"));
+
+        final EntryDTO dto = mapper.toEntry(jpa);
+        assertMatches(jpa, dto);
+    }
+
+    @Test
+    public void testMapDTOEntryWithPackedAttributes() {
+        final JpaEntry jpa = mapper.toJpaEntry(createEntry(1L, "packed"));
+        jpa.setPackedAttributes(PackedAttributes.pack(Collections.singleton(
+                createJpaAttribute(jpa, "name1", "val1", "val2"))));
+        // As when the inbox loaded the entry
+        setUnloaded(jpa, "attributes");
+
+        final EntryDTO dto = mapper.toEntry(jpa);
+        assertEquals(Collections.singletonMap("name1", Arrays.asList("val1", "val2")), toMap(dto.getAttributes()));
+    }
+
+    /**
+     * Entries without a packed copy (e.g. written before version 4.8, or while packing is
+     * disabled) must still have their attributes in the REST API.
+     */
+    @Test
+    public void testMapDTOEntryWithoutPackedAttributes() {
+        final JpaNotificationDao target = AopTestUtils.getTargetObject(notificationDao);
+        final EntryDTO entry = TestEntries.createEntry("dto-mapper", "dto-mapper");
+        entry.setAttributes(Collections.singleton(createAttribute("name1", "val1", "val2")));
+        ReflectionTestUtils.setField(target, "packAttributes", false);
+        final long entryId;
+        try {
+            entryId = restService.createNotification(entry).getId();
+        } finally {
+            ReflectionTestUtils.setField(target, "packAttributes", true);
+        }
+        entityManagerFactory.getCache().evictAll();
+
+        final EntryDTO dto = restService.getNotification(entryId, false);
+        assertNotNull(dto);
+        assertEquals(Collections.singletonMap("name1", Arrays.asList("val1", "val2")), toMap(dto.getAttributes()));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private EntryDTO createEntry(long id, String title) {
+        final EntryDTO rslt = new EntryDTO();
+        rslt.setId(id);
+        rslt.setTitle(title);
+        rslt.setImage(title + "-image");
+        rslt.setBody(title + "-body");
+        return rslt;
+    }
+
+    private AttributeDTO createAttribute(String name, String... values) {
+        final AttributeDTO rslt = new AttributeDTO();
+        rslt.setName(name);
+        rslt.setValues(Arrays.asList(values));
+        return rslt;
+    }
+
+    private JpaAttribute createJpaAttribute(JpaEntry entry, String name, String... values) {
+        final JpaAttribute rslt = new JpaAttribute();
+        rslt.setEntry(entry);
+        rslt.setName(name);
+        rslt.setValues(Arrays.asList(values));
+        return rslt;
+    }
+
+    private JpaAction createJpaAction(JpaEntry entry, long id, String label, String clazz) {
+        final JpaAction rslt = new JpaAction();
+        rslt.setEntry(entry);
+        rslt.setId(id);
+        rslt.setLabel(label);
+        rslt.setClazz(clazz);
+        return rslt;
+    }
+
+    private AddresseeDTO createAddressee(String name, RecipientType type, RecipientDTO... recipients) {
+        final AddresseeDTO rslt = new AddresseeDTO();
+        rslt.setName(name);
+        rslt.setType(type);
+        rslt.setRecipients(new HashSet<>(Arrays.asList(recipients)));
+        return rslt;
+    }
+
+    private RecipientDTO createRecipient(long id, String username) {
+        final RecipientDTO rslt = new RecipientDTO();
+        rslt.setId(id);
+        rslt.setUsername(username);
+        return rslt;
+    }
+
+    private ActionDTO createAction(long id, String label, String clazz) {
+        final ActionDTO rslt = new ActionDTO();
+        rslt.setId(id);
+        rslt.setLabel(label);
+        rslt.setClazz(clazz);
+        return rslt;
+    }
+
+    private void assertMatches(JpaEntry jpa, EntryDTO dto) {
+        assertEquals(jpa.getId(), dto.getId());
+        assertEquals(jpa.getTitle(), dto.getTitle());
+        assertEquals(jpa.getImage(), dto.getImage());
+        assertEquals(jpa.getBody(), dto.getBody());
+
+        assertEquals(PackedAttributes.toMap(jpa.getAttributes()), toMap(dto.getAttributes()));
+
+        final Map<String,JpaAddressee> addressees = new HashMap<>();
+        jpa.getAddressees().forEach(addressee -> addressees.put(addressee.getName(), addressee));
+        assertEquals(addressees.size(), dto.getAddressees().size());
+        for (AddresseeDTO addressee : dto.getAddressees()) {
+            final JpaAddressee match = addressees.get(addressee.getName());
+            assertNotNull(addressee.getName(), match);
+            assertEquals(match.getType(), addressee.getType());
+            final Map<Long,String> recipients = new HashMap<>();
+            match.getRecipients().forEach(recipient -> recipients.put(recipient.getId(), recipient.getUsername()));
+            final Map<Long,String> expected = new HashMap<>();
+            addressee.getRecipients().forEach(recipient -> expected.put(recipient.getId(), recipient.getUsername()));
+            assertEquals(expected, recipients);
+        }
+
+        final Map<Long,String> actions = new HashMap<>();
+        jpa.getActions().forEach(action -> actions.put(action.getId(), action.getLabel() + "/" + action.getClazz()));
+        final Map<Long,String> expected = new HashMap<>();
+        dto.getActions().forEach(action -> expected.put(action.getId(), action.getLabel() + "/" + action.getClazz()));
+        assertEquals(expected, actions);
+    }
+
+    /**
+     * Replaces the specified collection with one that is not loaded, and (without a session)
+     * cannot be.  (Not with <code>ReflectionTestUtils</code>, which logs the old value.)
+     */
+    private void setUnloaded(Object target, String fieldName) {
+        final Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, new PersistentSet());
+    }
+
+    private Map<String,List<String>> toMap(Set<AttributeDTO> attributes) {
+        final Map<String,List<String>> rslt = new HashMap<>();
+        attributes.forEach(attribute -> rslt.put(attribute.getName(), attribute.getValues()));
+        return rslt;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.Collections;
+
+import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.jasig.portlet.notice.rest.RecipientDTO;
+import org.jasig.portlet.notice.rest.RecipientType;
+
+/**
+ * Entries for the tests of this package.
+ *
+ * @since 4.8
+ */
+/* package-private */ final class TestEntries {
+
+    private TestEntries() {}
+
+    /**
+     * @return An entry from the specified source, addressed to the specified user (and no one else)
+     */
+    public static EntryDTO createEntry(String source, String username) {
+        final RecipientDTO recipient = new RecipientDTO();
+        recipient.setUsername(username);
+        final AddresseeDTO addressee = new AddresseeDTO();
+        addressee.setName(username);
+        addressee.setType(RecipientType.INDIVIDUAL);
+        addressee.setRecipients(Collections.singleton(recipient));
+        final EntryDTO rslt = new EntryDTO();
+        rslt.setTitle("Test entry from " + source);
+        rslt.setSource(source);
+        rslt.setAddressees(Collections.singleton(addressee));
+        return rslt;
+    }
+
+}
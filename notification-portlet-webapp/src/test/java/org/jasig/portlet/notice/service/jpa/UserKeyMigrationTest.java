@@ -0,0 +1,110 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tables created before version 4.8 keep their (NOT NULL) USERNAME columns after the migration;
+ * they must not prevent startup, nor the creation of new rows.
+ *
+ * @since 4.8
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class UserKeyMigrationTest {
+
+    private static final String EVENT_TABLE = JpaNotificationService.TABLENAME_PREFIX + "EVENT";
+    private static final String RECIPIENT_TABLE = JpaNotificationService.TABLENAME_PREFIX + "RECIPIENT";
+    private static final String LEGACY_USERNAME = "user-key-migration-legacy";
+    private static final long LEGACY_EVENT_ID = 999999999L;
+
+    @Autowired
+    private UserKeyMigration userKeyMigration;
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private long entryId;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        entryId = restService.createNotification(TestEntries.createEntry("migration", "user-key-migration")).getId();
+
+        // As in a schema created before version 4.8 (the default only fills existing rows)
+        for (String table : new String[] { EVENT_TABLE, RECIPIENT_TABLE }) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN USERNAME VARCHAR(255) DEFAULT '' NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN USERNAME DROP DEFAULT");
+        }
+        jdbcTemplate.update("INSERT INTO " + EVENT_TABLE + " (ID, ENTRY_ID, TIMESTAMP, STATE, USERNAME)"
+                + " VALUES (?, ?, ?, ?, ?)", LEGACY_EVENT_ID, entryId, new Timestamp(System.currentTimeMillis()),
+                NotificationState.ISSUED.ordinal(), LEGACY_USERNAME);
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM " + EVENT_TABLE + " WHERE ID = ?", LEGACY_EVENT_ID);
+        for (String table : new String[] { EVENT_TABLE, RECIPIENT_TABLE }) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN USERNAME");
+        }
+    }
+
+    @Test
+    public void testMigrationLeavesLegacyColumnsWritable() {
+        userKeyMigration.init();
+
+        final Long userId = jdbcTemplate.queryForObject("SELECT ID FROM "
+                + JpaNotificationService.TABLENAME_PREFIX + "USER WHERE USERNAME = ?", Long.class, LEGACY_USERNAME);
+        assertEquals(userId, jdbcTemplate.queryForObject("SELECT USER_ID FROM " + EVENT_TABLE + " WHERE ID = ?",
+                Long.class, LEGACY_EVENT_ID));
+
+        // New rows leave the legacy columns empty
+        assertEquals(1, notificationDao.createEvents(entryId, Collections.singleton("user-key-migration-new"),
+                NotificationState.READ, new Timestamp(System.currentTimeMillis())));
+        restService.createNotification(TestEntries.createEntry("migration", "user-key-migration-new"));
+
+        // Idempotent
+        userKeyMigration.init();
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestThrottleTest {
+
+    private static final String USERNAME = "student";
+    private static final String ENDPOINT = "fetchNotifications";
+
+    /**
+     * Slow enough that no token comes back during a test.
+     */
+    private static final double NO_REFILL = 0.0001;
+
+    private CacheManager cacheManager;
+    private RequestThrottle throttle;
+
+    @Before
+    public void setUp() {
+        cacheManager = new CacheManager(new Configuration().name(getClass().getSimpleName()));
+        final Cache bucketCache = new Cache("RequestThrottle.bucketCache", 100, false, false, 0L, 0L);
+        cacheManager.addCache(bucketCache);
+
+        throttle = new RequestThrottle();
+        ReflectionTestUtils.setField(throttle, "enabled", true);
+        ReflectionTestUtils.setField(throttle, "burst", 5);
+        ReflectionTestUtils.setField(throttle, "requestsPerSecond", NO_REFILL);
+        ReflectionTestUtils.setField(throttle, "refreshBurst", 2);
+        ReflectionTestUtils.setField(throttle, "refreshesPerMinute", NO_REFILL);
+        ReflectionTestUtils.setField(throttle, "bucketCache", bucketCache);
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testBurst() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue("Request " + i, throttle.tryAcquire(USERNAME, ENDPOINT));
+        }
+        assertFalse(throttle.tryAcquire(USERNAME, ENDPOINT));
+        assertEquals(1L, throttle.getRejectedRequests(ENDPOINT));
+        assertEquals(1L, throttle.getRejectedRequests());
+
+        // Each user and endpoint has its own bucket
+        assertTrue(throttle.tryAcquire("faculty", ENDPOINT));
+        assertTrue(throttle.tryAcquire(USERNAME, "invokeActions"));
+        assertEquals(0L, throttle.getRejectedRequests("invokeActions"));
+    }
+
+    @Test
+    public void testRefill() throws InterruptedException {
+        ReflectionTestUtils.setField(throttle, "burst", 1);
+        ReflectionTestUtils.setField(throttle, "requestsPerSecond", 10.0);
+
+        assertTrue(throttle.tryAcquire(USERNAME, ENDPOINT));
+        assertFalse(throttle.tryAcquire(USERNAME, ENDPOINT));
+
+        // Enough time for several tokens, but the bucket holds only one
+        Thread.sleep(300L);
+        assertTrue(throttle.tryAcquire(USERNAME, ENDPOINT));
+        assertFalse(throttle.tryAcquire(USERNAME, ENDPOINT));
+        assertEquals(2L, throttle.getRejectedRequests(ENDPOINT));
+        assertEquals(1L, throttle.getRetryAfterSeconds());
+    }
+
+    @Test
+    public void testRefreshDowngrade() {
+        assertTrue(throttle.tryAcquireRefresh(USERNAME));
+        assertTrue(throttle.tryAcquireRefresh(USERNAME));
+        assertFalse(throttle.tryAcquireRefresh(USERNAME));
+        assertEquals(1L, throttle.getDowngradedRefreshes());
+
+        // Downgraded refreshes neither count as rejections nor use up the budget for requests
+        assertEquals(0L, throttle.getRejectedRequests());
+        for (int i = 0; i < 5; i++) {
+            assertTrue("Request " + i, throttle.tryAcquire(USERNAME, ENDPOINT));
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        ReflectionTestUtils.setField(throttle, "enabled", false);
+        for (int i = 0; i < 10; i++) {
+            assertTrue("Request " + i, throttle.tryAcquire(USERNAME, ENDPOINT));
+            assertTrue("Refresh " + i, throttle.tryAcquireRefresh(USERNAME));
+        }
+        assertEquals(0L, throttle.getRejectedRequests());
+        assertEquals(0L, throttle.getDowngradedRefreshes());
+    }
+
+}
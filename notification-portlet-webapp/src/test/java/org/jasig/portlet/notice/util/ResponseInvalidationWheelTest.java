@@ -0,0 +1,105 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseInvalidationWheelTest {
+
+    private ResponseInvalidationWheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new ResponseInvalidationWheel();
+        ReflectionTestUtils.setField(wheel, "tickMillis", 10L);
+        ReflectionTestUtils.setField(wheel, "slots", 8);  // Deadlines below span several revolutions
+        ReflectionTestUtils.setField(wheel, "maxDelayMillis", 60000L);
+        wheel.init();
+    }
+
+    @After
+    public void tearDown() {
+        wheel.destroy();
+    }
+
+    @Test
+    public void testNextChange() {
+        final long now = System.currentTimeMillis();
+        final NotificationResponse response = createResponse(now - 1000L, now + 5000L, now + 2000L);
+        assertEquals(now + 2000L, ResponseInvalidationWheel.getNextChange(response, now));
+        assertEquals(Long.MAX_VALUE, ResponseInvalidationWheel.getNextChange(createResponse(now - 1000L), now));
+    }
+
+    @Test
+    public void testInvalidatesWhenDue() throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long[] invalidated = new long[1];
+        wheel.schedule("key", createResponse(start + 250L), () -> {
+            invalidated[0] = System.currentTimeMillis();
+            latch.countDown();
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue("Invalidated early", invalidated[0] >= start + 250L);
+    }
+
+    @Test
+    public void testRescheduleAndCancel() throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final AtomicInteger count = new AtomicInteger();
+        wheel.schedule("replaced", createResponse(start + 50L), count::incrementAndGet);
+        wheel.schedule("replaced", createResponse(start + 100L), count::incrementAndGet);
+        wheel.schedule("cancelled", createResponse(start + 50L), count::incrementAndGet);
+        wheel.cancel("cancelled");
+        wheel.schedule("timeless", createResponse(), count::incrementAndGet);
+        Thread.sleep(500L);
+        assertEquals(1, count.get());
+    }
+
+    private NotificationResponse createResponse(long... dueDates) {
+        final NotificationEntry[] entries = new NotificationEntry[dueDates.length];
+        for (int i = 0; i < dueDates.length; i++) {
+            entries[i] = new NotificationEntry();
+            entries[i].setId("entry" + i);
+            entries[i].setTitle("Entry " + i);
+            entries[i].setDueDate(new Date(dueDates[i]));
+        }
+        final NotificationCategory category = new NotificationCategory();
+        category.setTitle("Category");
+        category.setEntries(Arrays.asList(entries));
+        return new NotificationResponse(Collections.singletonList(category), Collections.emptyList());
+    }
+
+}